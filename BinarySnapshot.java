@@ -0,0 +1,427 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Chunked binary format IUDoubleLinkedList saves itself in with writeTo
+ * and loads with readFrom.
+ *
+ * A header (magic, format version, element count) is followed by blocks
+ * of encoded elements, each behind a block header giving its raw length,
+ * stored length, element count and a CRC32C of the raw bytes and those
+ * three lengths. A block is
+ * stored compressed only when that makes it smaller, which a stored
+ * length below the raw length shows. An empty block ends the stream.
+ *
+ * Blocks are staged in direct buffers, so the channel reads and writes
+ * them without another copy, and a snapshot of any length is streamed
+ * through a few blocks of memory.
+ *
+ * The compression is a small LZ77 in the style of LZ4: runs of literals
+ * and copies of up to 64 KB back, found through a hash of 4-byte
+ * sequences. It finds the zero bytes and repeats fixed-width codecs are
+ * full of, and skips ahead quickly through bytes it can do nothing with.
+ *
+ * @author seema
+ */
+final class BinarySnapshot {
+	private static final int MAGIC = 0x49554453; //snapshot signature
+	private static final byte VERSION = 1;
+	private static final int HEADER = Integer.BYTES + 1 + Long.BYTES; //magic, version, count
+	private static final int BLOCK_HEADER = 4 * Integer.BYTES; //raw length, stored length, count, crc
+	private static final int BLOCK_BYTES = 1 << 16; //raw bytes per block, unless one element is bigger
+	private static final int MIN_MATCH = 4;
+	private static final int MAX_OFFSET = 0xFFFF;
+	private static final int HASH_BITS = 12;
+
+	private BinarySnapshot() {
+	}
+
+	/**
+	 * Encodes elements into blocks and writes them out as they fill
+	 */
+	static class Writer<T> {
+		private final WritableByteChannel channel;
+		private final ElementCodec<T> codec;
+		private final int[] table; //compression hash table, null if not compressing
+		private final CRC32C crc;
+		private final ByteBuffer header; //header of the block being written
+		private ByteBuffer raw; //block being filled
+		private ByteBuffer stored; //raw compressed, if compressing
+		private int count; //elements in raw
+
+		/**
+		 * Writes the snapshot header
+		 * @param channel blocking channel to write to
+		 * @param codec codec for the elements
+		 * @param compress true to compress blocks it makes smaller
+		 * @param size number of elements that will be added
+		 * @throws IOException if the channel fails
+		 */
+		public Writer(WritableByteChannel channel, ElementCodec<T> codec, boolean compress, long size) throws IOException {
+			this.channel = channel;
+			this.codec = codec;
+			table = compress ? new int[1 << HASH_BITS] : null;
+			crc = new CRC32C();
+			header = ByteBuffer.allocateDirect(Math.max(HEADER, BLOCK_HEADER));
+			raw = ByteBuffer.allocateDirect(BLOCK_BYTES);
+			stored = compress ? ByteBuffer.allocateDirect(BLOCK_BYTES) : null;
+			header.putInt(MAGIC).put(VERSION).putLong(size).flip();
+			writeFully(channel, header);
+		}
+
+		/**
+		 * Adds element to the current block, writing the block first if
+		 * element does not fit
+		 * @param element element to add
+		 * @throws IOException if the channel fails
+		 */
+		public void add(T element) throws IOException {
+			int bytes = codec.size(element);
+			if(bytes > raw.remaining()) {
+				flush();
+				if(bytes > raw.capacity()) { //a block of its own
+					raw = ByteBuffer.allocateDirect(bytes);
+					stored = (table == null) ? null : ByteBuffer.allocateDirect(bytes);
+				}
+			}
+			codec.encode(element, raw);
+			count++;
+		}
+
+		/**
+		 * Writes the last block and the end of the stream
+		 * @throws IOException if the channel fails
+		 */
+		public void finish() throws IOException {
+			flush();
+			raw.limit(0); //an empty block
+			writeHeader(0, 0, 0);
+		}
+
+		/**
+		 * Writes the current block, compressed if that makes it smaller
+		 * @throws IOException if the channel fails
+		 */
+		private void flush() throws IOException {
+			if(count == 0) {
+				return;
+			}
+			raw.flip();
+			int rawLength = raw.limit();
+			int storedLength = (table == null) ? -1 : compress(raw, rawLength, stored.clear(), table);
+			if(storedLength < 0) {
+				writeHeader(rawLength, rawLength, count);
+				writeFully(channel, raw);
+			} else {
+				writeHeader(rawLength, storedLength, count);
+				writeFully(channel, stored.limit(storedLength));
+			}
+			raw.clear();
+			count = 0;
+		}
+
+		/**
+		 * Writes a block header, checksumming raw and the lengths
+		 */
+		private void writeHeader(int rawLength, int storedLength, int count) throws IOException {
+			header.clear();
+			header.putInt(rawLength).putInt(storedLength).putInt(count);
+			crc.reset();
+			crc.update(raw.duplicate().rewind());
+			crc.update(header.duplicate().flip());
+			header.putInt((int) crc.getValue()).flip();
+			writeFully(channel, header);
+		}
+	}
+
+	/**
+	 * Reads blocks in as their elements are asked for
+	 */
+	static class Reader<T> {
+		private final ReadableByteChannel channel;
+		private final ElementCodec<T> codec;
+		private final CRC32C crc;
+		private final long size;
+		private final ByteBuffer header; //header of the block being read
+		private ByteBuffer raw; //block being decoded
+		private ByteBuffer stored; //compressed block being read
+		private int left; //elements left in raw
+
+		/**
+		 * Reads and checks the snapshot header
+		 * @param channel blocking channel to read from
+		 * @param codec codec the elements were written with
+		 * @throws IOException if the channel fails or holds no snapshot
+		 */
+		public Reader(ReadableByteChannel channel, ElementCodec<T> codec) throws IOException {
+			this.channel = channel;
+			this.codec = codec;
+			crc = new CRC32C();
+			header = ByteBuffer.allocateDirect(Math.max(HEADER, BLOCK_HEADER));
+			raw = ByteBuffer.allocateDirect(BLOCK_BYTES);
+			stored = ByteBuffer.allocateDirect(BLOCK_BYTES);
+			header.limit(HEADER);
+			readFully(channel, header);
+			header.flip();
+			if(header.getInt() != MAGIC || header.get() != VERSION) {
+				throw new IOException("not a list snapshot");
+			}
+			size = header.getLong();
+			if(size < 0 || size > Integer.MAX_VALUE) {
+				throw new IOException("bad element count " + size);
+			}
+			raw.limit(0);
+		}
+
+		/**
+		 * Returns the number of elements in the snapshot
+		 * @return element count from the header
+		 */
+		public int size() {
+			return (int) size;
+		}
+
+		/**
+		 * Decodes the next element, reading the next block if need be.
+		 * Only size() elements may be read.
+		 * @return next element
+		 * @throws IOException if the channel fails or the snapshot is damaged
+		 */
+		public T next() throws IOException {
+			if(left == 0) {
+				if(raw.hasRemaining()) {
+					throw new IOException("block has bytes past its elements");
+				}
+				if(!nextBlock()) {
+					throw new IOException("snapshot has fewer elements than its header says");
+				}
+			}
+			left--;
+			return codec.decode(raw);
+		}
+
+		/**
+		 * Reads the end of the stream, after the last element
+		 * @throws IOException if the channel fails or the snapshot goes on
+		 */
+		public void finish() throws IOException {
+			if(left > 0 || raw.hasRemaining() || nextBlock()) {
+				throw new IOException("snapshot has more elements than its header says");
+			}
+		}
+
+		/**
+		 * Reads the next block into raw
+		 * @return false if it was the empty block ending the stream
+		 * @throws IOException if the channel fails or the block is damaged
+		 */
+		private boolean nextBlock() throws IOException {
+			header.clear().limit(BLOCK_HEADER);
+			readFully(channel, header);
+			header.flip();
+			int rawLength = header.getInt();
+			int storedLength = header.getInt();
+			int count = header.getInt();
+			int checksum = header.getInt();
+			if(rawLength < 0 || storedLength < 0 || storedLength > rawLength || count < 0
+					|| (count == 0) != (rawLength == 0)) {
+				throw new IOException("bad block header");
+			}
+			if(rawLength > raw.capacity()) {
+				raw = ByteBuffer.allocateDirect(rawLength);
+				stored = ByteBuffer.allocateDirect(rawLength);
+			}
+			raw.clear().limit(rawLength);
+			if(storedLength == rawLength) {
+				readFully(channel, raw);
+			} else {
+				stored.clear().limit(storedLength);
+				readFully(channel, stored);
+				expand(stored, storedLength, raw, rawLength);
+			}
+			raw.rewind();
+			crc.reset();
+			crc.update(raw);
+			crc.update(header.rewind().limit(BLOCK_HEADER - Integer.BYTES));
+			if((int) crc.getValue() != checksum) {
+				throw new IOException("block checksum mismatch");
+			}
+			raw.rewind();
+			left = count;
+			return count > 0;
+		}
+	}
+
+	/**
+	 * Compresses src[0, length) into dst from index 0
+	 * @param src bytes to compress
+	 * @param length number of bytes
+	 * @param dst buffer with room for at least length bytes
+	 * @param table hash table of recent positions, overwritten
+	 * @return compressed length, or -1 if it would not be below length
+	 */
+	static int compress(ByteBuffer src, int length, ByteBuffer dst, int[] table) {
+		Arrays.fill(table, -1);
+		int limit = length; //the output has to stay under this to be worth it
+		int out = 0;
+		int anchor = 0; //first byte not yet written as a literal or match
+		int in = 0;
+		while(in + MIN_MATCH <= length) {
+			int sequence = src.getInt(in);
+			int slot = (sequence * 0x9E3779B1) >>> (32 - HASH_BITS);
+			int candidate = table[slot];
+			table[slot] = in;
+			if(candidate < 0 || in - candidate > MAX_OFFSET || src.getInt(candidate) != sequence) {
+				in += 1 + ((in - anchor) >>> 6); //step up through bytes without matches
+				continue;
+			}
+			int matched = MIN_MATCH;
+			while(in + matched < length && src.get(candidate + matched) == src.get(in + matched)) {
+				matched++;
+			}
+			out = sequence(src, anchor, in - anchor, in - candidate, matched, dst, out, limit);
+			if(out < 0) {
+				return -1;
+			}
+			in += matched;
+			anchor = in;
+		}
+		out = sequence(src, anchor, length - anchor, 0, 0, dst, out, limit);
+		return out;
+	}
+
+	/**
+	 * Writes one sequence: a token holding both lengths, any extra length
+	 * bytes, the literals, then the match offset and extra match length
+	 * bytes unless this is the last sequence
+	 * @param src bytes being compressed
+	 * @param literals index of the first literal in src
+	 * @param literalLength number of literals
+	 * @param offset distance back to the match, or 0 for the last sequence
+	 * @param matchLength length of the match, or 0 for the last sequence
+	 * @param dst buffer being written
+	 * @param out index in dst to write at
+	 * @param limit index in dst the sequence must end before
+	 * @return index in dst after the sequence, or -1 if it would reach limit
+	 */
+	private static int sequence(ByteBuffer src, int literals, int literalLength, int offset, int matchLength,
+			ByteBuffer dst, int out, int limit) {
+		int extraMatch = (offset == 0) ? 0 : matchLength - MIN_MATCH;
+		int bytes = 1 + literalLength + literalLength / 255 + 1 + ((offset == 0) ? 0 : 2 + extraMatch / 255 + 1);
+		if(out + bytes >= limit) { //a rough bound, only ever too high
+			return -1;
+		}
+		dst.put(out++, (byte) ((Math.min(literalLength, 15) << 4) | Math.min(extraMatch, 15)));
+		out = putLength(dst, out, literalLength);
+		dst.put(out, src, literals, literalLength);
+		out += literalLength;
+		if(offset != 0) {
+			dst.putShort(out, (short) offset);
+			out = putLength(dst, out + 2, extraMatch);
+		}
+		return out;
+	}
+
+	/**
+	 * Writes what a token nibble could not hold of length
+	 * @return index in dst after the extra bytes
+	 */
+	private static int putLength(ByteBuffer dst, int out, int length) {
+		if(length >= 15) {
+			for(length -= 15; length >= 255; length -= 255) {
+				dst.put(out++, (byte) 255);
+			}
+			dst.put(out++, (byte) length);
+		}
+		return out;
+	}
+
+	/**
+	 * Expands what compress wrote
+	 * @param src compressed bytes from index 0
+	 * @param length number of compressed bytes
+	 * @param dst buffer to expand into from index 0
+	 * @param rawLength number of bytes compress was given
+	 * @throws IOException if src is not a valid compressed block
+	 */
+	static void expand(ByteBuffer src, int length, ByteBuffer dst, int rawLength) throws IOException {
+		int in = 0;
+		int out = 0;
+		while(in < length) {
+			int token = src.get(in++) & 0xFF;
+			int literalLength = token >>> 4;
+			if(literalLength == 15) {
+				for(int b = 255; b == 255; literalLength += b) {
+					if(in == length) {
+						throw new IOException("compressed block is damaged");
+					}
+					b = src.get(in++) & 0xFF;
+				}
+			}
+			if(literalLength > length - in || literalLength > rawLength - out) {
+				throw new IOException("compressed block is damaged");
+			}
+			dst.put(out, src, in, literalLength);
+			in += literalLength;
+			out += literalLength;
+			if(in == length) { //the last sequence has no match
+				break;
+			}
+			if(length - in < 2) {
+				throw new IOException("compressed block is damaged");
+			}
+			int offset = src.getShort(in) & 0xFFFF;
+			in += 2;
+			int matchLength = token & 15;
+			if(matchLength == 15) {
+				for(int b = 255; b == 255; matchLength += b) {
+					if(in == length) {
+						throw new IOException("compressed block is damaged");
+					}
+					b = src.get(in++) & 0xFF;
+				}
+			}
+			matchLength += MIN_MATCH;
+			if(offset == 0 || offset > out || matchLength > rawLength - out) {
+				throw new IOException("compressed block is damaged");
+			}
+			if(offset >= matchLength) {
+				dst.put(out, dst, out - offset, matchLength);
+			} else { //the match overlaps what it is copying, so it goes byte by byte
+				for(int i = 0; i < matchLength; i++) {
+					dst.put(out + i, dst.get(out + i - offset));
+				}
+			}
+			out += matchLength;
+		}
+		if(out != rawLength) {
+			throw new IOException("compressed block is damaged");
+		}
+	}
+
+	/**
+	 * Writes all of buffer's remaining bytes
+	 */
+	private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Reads until buffer is full
+	 * @throws EOFException if the channel ends first
+	 */
+	private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer) < 0) {
+				throw new EOFException("snapshot ends early");
+			}
+		}
+	}
+}
@@ -0,0 +1,191 @@
+import java.util.HashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Cache holding at most a fixed number of entries, evicting one whenever
+ * a new key would go over. A HashMap finds each entry, and the entries
+ * themselves are LinearNodes chained in recency order by the eviction
+ * policy, so get, put, remove and eviction are all O(1).
+ *
+ * Policies:
+ *  LRU - evicts the least recently used entry
+ *  SEGMENTED_LRU - keeps entries hit more than once apart from new ones,
+ *   so a scan of one-off keys only evicts other new entries
+ *  WINDOW_TINY_LFU - admits entries into the main area by estimated
+ *   frequency, for workloads where popularity matters more than recency
+ *
+ * Hits, misses and evictions are counted, and an eviction listener can be
+ * told about each evicted entry. Keys and values may not be null. A cache
+ * is not thread-safe.
+ *
+ * @author seema
+ *
+ * @param <K> type of key
+ * @param <V> type of value
+ */
+public class BoundedCache<K, V> {
+	/**
+	 * Eviction policies a cache can use
+	 */
+	public enum Policy {
+		LRU, SEGMENTED_LRU, WINDOW_TINY_LFU
+	}
+
+	private final int capacity;
+	private final HashMap<K, EvictionPolicy.Entry<K, V>> entries;
+	private final EvictionPolicy<K, V> policy;
+	private BiConsumer<? super K, ? super V> evictionListener; //null if nobody is listening
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Creates an empty LRU cache
+	 * @param capacity most entries to hold
+	 * @throws IllegalArgumentException if capacity is not positive
+	 */
+	public BoundedCache(int capacity) {
+		this(capacity, Policy.LRU);
+	}
+
+	/**
+	 * Creates an empty cache
+	 * @param capacity most entries to hold
+	 * @param policy how to choose entries to evict
+	 * @throws IllegalArgumentException if capacity is not positive
+	 */
+	public BoundedCache(int capacity, Policy policy) {
+		if(capacity <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.capacity = capacity;
+		entries = new HashMap<K, EvictionPolicy.Entry<K, V>>();
+		this.policy = EvictionPolicy.create(policy, capacity);
+	}
+
+	/**
+	 * Returns the value for key, counting a hit or a miss
+	 * @param key key to look up
+	 * @return value, or null if key is not cached
+	 * @throws NullPointerException if key is null
+	 */
+	public V get(K key) {
+		if(key == null) {
+			throw new NullPointerException();
+		}
+		policy.recorded(key);
+		EvictionPolicy.Entry<K, V> entry = entries.get(key);
+		if(entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		policy.accessed(entry);
+		return entry.getElement();
+	}
+
+	/**
+	 * Caches value for key, evicting an entry if key is new and the
+	 * cache is full. Under WINDOW_TINY_LFU the entry evicted may be the
+	 * new one, if the policy judges it less useful than what is cached.
+	 * @param key key to cache under
+	 * @param value value to cache
+	 * @return value key had before, or null if it was not cached
+	 * @throws NullPointerException if key or value is null
+	 */
+	public V put(K key, V value) {
+		if(key == null || value == null) {
+			throw new NullPointerException();
+		}
+		policy.recorded(key);
+		EvictionPolicy.Entry<K, V> entry = entries.get(key);
+		if(entry != null) {
+			V retVal = entry.getElement();
+			entry.setElement(value);
+			policy.accessed(entry);
+			return retVal;
+		}
+		entry = new EvictionPolicy.Entry<K, V>(key, value);
+		entries.put(key, entry);
+		policy.added(entry);
+		if(entries.size() > capacity) {
+			EvictionPolicy.Entry<K, V> victim = policy.victim();
+			policy.removed(victim);
+			entries.remove(victim.key);
+			evictions++;
+			if(evictionListener != null) {
+				evictionListener.accept(victim.key, victim.getElement());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Removes key's entry. The eviction listener is not told.
+	 * @param key key to remove
+	 * @return value key had, or null if it was not cached
+	 */
+	public V remove(K key) {
+		EvictionPolicy.Entry<K, V> entry = entries.remove(key);
+		if(entry == null) {
+			return null;
+		}
+		policy.removed(entry);
+		return entry.getElement();
+	}
+
+	/**
+	 * Returns true if key is cached, without counting a hit or a miss or
+	 * changing what gets evicted next
+	 * @param key key to look for
+	 * @return true if key is cached
+	 */
+	public boolean containsKey(K key) {
+		return entries.containsKey(key);
+	}
+
+	/**
+	 * Sets the listener told about every evicted entry, after it has
+	 * left the cache
+	 * @param listener listener given each evicted key and value, or null
+	 *  for none
+	 */
+	public void setEvictionListener(BiConsumer<? super K, ? super V> listener) {
+		evictionListener = listener;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public long hitCount() {
+		return hits;
+	}
+
+	public long missCount() {
+		return misses;
+	}
+
+	public long evictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the fraction of gets that were hits
+	 * @return hits / (hits + misses), or 0 before any get
+	 */
+	public double hitRate() {
+		long requests = hits + misses;
+		return (requests == 0) ? 0 : (double) hits / requests;
+	}
+
+	@Override
+	public String toString() {
+		return "BoundedCache[size=" + entries.size() + "/" + capacity + ", hits=" + hits
+				+ ", misses=" + misses + ", evictions=" + evictions + "]";
+	}
+}
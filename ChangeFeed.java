@@ -0,0 +1,319 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publisher of the changes made to an IUDoubleLinkedList, so a mirror can
+ * apply them one by one instead of re-reading the whole list.
+ *
+ * Each Change is an insert, remove or set with the index it happened at,
+ * as the list was at that moment, so applying them in order to a copy
+ * taken when subscribing keeps the copy equal to the list. Subscribers see
+ * changes made after they subscribed.
+ *
+ * Changes are buffered per subscriber and delivered on an Executor in
+ * batches, one batch per unit of demand. Whatever piles up while a
+ * subscriber is busy or has no demand goes out together, up to the batch
+ * limit. The list never waits for a subscriber. One that lets the buffer
+ * fill is sent onError with an IllegalStateException and dropped, and has
+ * to re-read the list and subscribe again.
+ *
+ * @author seema
+ *
+ * @param <T> type stored in the list
+ */
+public class ChangeFeed<T> implements Flow.Publisher<List<ChangeFeed.Change<T>>> {
+	/** Largest batch handed to onNext */
+	public static final int MAX_BATCH = 256;
+	/** Most changes buffered for one subscriber before it is dropped */
+	public static final int MAX_BUFFERED = 1 << 16;
+
+	private final Executor executor;
+	private final CopyOnWriteArrayList<FeedSubscription> subscriptions;
+
+	/**
+	 * Creates a feed with no subscribers
+	 * @param executor runs deliveries to subscribers
+	 */
+	ChangeFeed(Executor executor) {
+		this.executor = executor;
+		subscriptions = new CopyOnWriteArrayList<FeedSubscription>();
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super List<Change<T>>> subscriber) {
+		if(subscriber == null) {
+			throw new NullPointerException();
+		}
+		FeedSubscription subscription = new FeedSubscription(subscriber);
+		subscriptions.add(subscription);
+		subscription.schedule(); //onSubscribe runs on the executor like every other signal
+	}
+
+	/**
+	 * Completes every current subscriber once it has been sent what is
+	 * buffered for it. Later subscribers are not affected.
+	 */
+	public void close() {
+		for(FeedSubscription subscription : subscriptions) {
+			subscription.complete();
+		}
+	}
+
+	/**
+	 * Returns true if anyone is subscribed, so the list can skip building
+	 * changes nobody will see
+	 * @return true if there are subscribers
+	 */
+	boolean isActive() {
+		return !subscriptions.isEmpty();
+	}
+
+	/**
+	 * Publishes an insert
+	 * @param index index the element now occupies
+	 * @param element inserted element
+	 */
+	void inserted(int index, T element) {
+		publish(new Change<T>(Kind.INSERT, index, element));
+	}
+
+	/**
+	 * Publishes a remove
+	 * @param index index the element occupied
+	 * @param element removed element
+	 */
+	void removed(int index, T element) {
+		publish(new Change<T>(Kind.REMOVE, index, element));
+	}
+
+	/**
+	 * Publishes a set
+	 * @param index index of the element
+	 * @param element new element
+	 */
+	void set(int index, T element) {
+		publish(new Change<T>(Kind.SET, index, element));
+	}
+
+	private void publish(Change<T> change) {
+		for(FeedSubscription subscription : subscriptions) {
+			subscription.offer(change);
+		}
+	}
+
+	/**
+	 * Kinds of change
+	 */
+	public enum Kind {
+		INSERT, REMOVE, SET
+	}
+
+	/**
+	 * One change to the list
+	 */
+	public static class Change<T> {
+		private final Kind kind;
+		private final int index;
+		private final T element;
+
+		public Change(Kind kind, int index, T element) {
+			this.kind = kind;
+			this.index = index;
+			this.element = element;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public T getElement() {
+			return element;
+		}
+
+		/**
+		 * Applies this change to list
+		 * @param list list to change, equal to the published list as it
+		 *  was just before the change
+		 */
+		public void applyTo(IndexedUnsortedList<T> list) {
+			switch(kind) {
+			case INSERT:
+				list.add(index, element);
+				break;
+			case REMOVE:
+				list.remove(index);
+				break;
+			default:
+				list.set(index, element);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return kind + " " + index + " " + element;
+		}
+	}
+
+	/**
+	 * A subscriber's buffer and demand. Every signal to the subscriber is
+	 * sent from run(), which the wip count keeps to one thread at a time.
+	 */
+	private class FeedSubscription implements Flow.Subscription, Runnable {
+		private final Flow.Subscriber<? super List<Change<T>>> subscriber;
+		private final AtomicInteger wip; //schedule() calls run() has not yet caught up with
+		private ArrayList<Change<T>> buffer; //guarded by this
+		private long demand; //guarded by this
+		private boolean subscribed; //onSubscribe has been sent, only touched by run()
+		private boolean completing; //guarded by this
+		private Throwable error; //guarded by this, sent before anything else still buffered
+		private boolean done; //no more signals, guarded by this
+
+		public FeedSubscription(Flow.Subscriber<? super List<Change<T>>> subscriber) {
+			this.subscriber = subscriber;
+			wip = new AtomicInteger();
+			buffer = new ArrayList<Change<T>>();
+		}
+
+		@Override
+		public void request(long n) {
+			synchronized(this) {
+				if(n <= 0) {
+					fail(new IllegalArgumentException("non-positive request"));
+				} else {
+					demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n;
+				}
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			synchronized(this) {
+				done = true;
+				buffer = null;
+			}
+			subscriptions.remove(this);
+		}
+
+		/**
+		 * Buffers change, dropping the subscriber if its buffer is full
+		 * @param change change to buffer
+		 */
+		public void offer(Change<T> change) {
+			synchronized(this) {
+				if(done || completing || error != null) {
+					return;
+				}
+				if(buffer.size() == MAX_BUFFERED) {
+					fail(new IllegalStateException("subscriber fell too far behind"));
+				} else {
+					buffer.add(change);
+				}
+			}
+			schedule();
+		}
+
+		/**
+		 * Sends onComplete once the buffer has been delivered
+		 */
+		public void complete() {
+			synchronized(this) {
+				completing = true;
+			}
+			subscriptions.remove(this);
+			schedule();
+		}
+
+		/**
+		 * Records error to be sent in place of anything still buffered.
+		 * Caller holds the lock.
+		 * @param e error for onError
+		 */
+		private void fail(Throwable e) {
+			if(error == null) {
+				error = e;
+				buffer = null;
+				subscriptions.remove(this);
+			}
+		}
+
+		public void schedule() {
+			if(wip.getAndIncrement() == 0) {
+				executor.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			if(!subscribed) {
+				subscribed = true;
+				subscriber.onSubscribe(this);
+			}
+			int missed = 1;
+			while(true) {
+				while(deliver()) {
+					//keep going while there is demand and something to send
+				}
+				missed = wip.addAndGet(-missed);
+				if(missed == 0) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Sends the next signal, if one is due
+		 * @return true if a signal was sent
+		 */
+		private boolean deliver() {
+			List<Change<T>> batch = null;
+			Throwable failure = null;
+			boolean finished = false;
+			synchronized(this) {
+				if(done) {
+					return false;
+				}
+				if(error != null) {
+					failure = error;
+					done = true;
+				} else if(demand > 0 && !buffer.isEmpty()) {
+					if(buffer.size() <= MAX_BATCH) {
+						batch = buffer;
+						buffer = new ArrayList<Change<T>>();
+					} else {
+						List<Change<T>> front = buffer.subList(0, MAX_BATCH);
+						batch = new ArrayList<Change<T>>(front);
+						front.clear();
+					}
+					demand--;
+				} else if(completing && buffer.isEmpty()) {
+					finished = true;
+					done = true;
+				} else {
+					return false;
+				}
+			}
+			if(failure != null) {
+				subscriber.onError(failure);
+			} else if(finished) {
+				subscriber.onComplete();
+			} else {
+				try {
+					subscriber.onNext(batch);
+				} catch(Throwable e) { //a broken subscriber is cancelled
+					cancel();
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
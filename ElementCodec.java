@@ -0,0 +1,88 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts elements to and from variable-length byte records, for lists
+ * that write their elements to files or channels.
+ *
+ * @author seema
+ *
+ * @param <T> type of element encoded
+ */
+public interface ElementCodec<T> {
+	/** Codec for Integer elements, 4 bytes each */
+	public static final ElementCodec<Integer> INTEGER = fixed(FixedWidthCodec.INTEGER);
+
+	/** Codec for Long elements, 8 bytes each */
+	public static final ElementCodec<Long> LONG = fixed(FixedWidthCodec.LONG);
+
+	/** Codec for String elements, as a length followed by UTF-8 bytes */
+	public static final ElementCodec<String> STRING = new ElementCodec<String>() {
+		public int size(String element) {
+			return Integer.BYTES + element.getBytes(StandardCharsets.UTF_8).length;
+		}
+
+		public void encode(String element, ByteBuffer buffer) {
+			byte[] bytes = element.getBytes(StandardCharsets.UTF_8);
+			buffer.putInt(bytes.length);
+			buffer.put(bytes);
+		}
+
+		public String decode(ByteBuffer buffer) {
+			byte[] bytes = new byte[buffer.getInt()];
+			buffer.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	};
+
+	/**
+	 * Returns the number of bytes encode will write for element.
+	 *
+	 * @param element element to measure
+	 * @return record size in bytes
+	 */
+	public int size(T element);
+
+	/**
+	 * Writes element as a record at the buffer's position, moving the
+	 * position past it. The buffer has at least size(element) bytes left.
+	 *
+	 * @param element element to encode
+	 * @param buffer buffer to write into
+	 */
+	public void encode(T element, ByteBuffer buffer);
+
+	/**
+	 * Reads the record at the buffer's position, moving the position past
+	 * it. The whole record is in the buffer.
+	 *
+	 * @param buffer buffer to read from
+	 * @return decoded element
+	 */
+	public T decode(ByteBuffer buffer);
+
+	/**
+	 * Returns a codec writing the records of a FixedWidthCodec
+	 *
+	 * @param codec fixed-width codec to wrap
+	 * @return codec writing codec.width() bytes per element
+	 */
+	public static <T> ElementCodec<T> fixed(FixedWidthCodec<T> codec) {
+		return new ElementCodec<T>() {
+			public int size(T element) {
+				return codec.width();
+			}
+
+			public void encode(T element, ByteBuffer buffer) {
+				codec.encode(element, buffer, buffer.position());
+				buffer.position(buffer.position() + codec.width());
+			}
+
+			public T decode(ByteBuffer buffer) {
+				T element = codec.decode(buffer, buffer.position());
+				buffer.position(buffer.position() + codec.width());
+				return element;
+			}
+		};
+	}
+}
@@ -0,0 +1,337 @@
+/**
+ * Decides which entry a BoundedCache evicts. Entries are LinearNodes kept
+ * in one or more Chains ordered from most to least recently used, so
+ * every step is O(1): linking a new entry, moving an entry up on a hit,
+ * unlinking it and picking a victim.
+ *
+ * @author seema
+ *
+ * @param <K> type of key
+ * @param <V> type of value
+ */
+abstract class EvictionPolicy<K, V> {
+
+	/**
+	 * Creates the policy a cache asked for
+	 * @param policy kind of policy
+	 * @param capacity most entries the cache holds
+	 * @return new policy with no entries
+	 */
+	static <K, V> EvictionPolicy<K, V> create(BoundedCache.Policy policy, int capacity) {
+		switch(policy) {
+		case LRU:
+			return new Lru<K, V>();
+		case SEGMENTED_LRU:
+			return new SegmentedLru<K, V>(capacity);
+		default:
+			return new WindowTinyLfu<K, V>(capacity);
+		}
+	}
+
+	/**
+	 * Takes in an entry just added to the cache
+	 * @param entry new entry, in no chain
+	 */
+	abstract void added(Entry<K, V> entry);
+
+	/**
+	 * Notes a hit on entry
+	 * @param entry entry that was read or replaced
+	 */
+	abstract void accessed(Entry<K, V> entry);
+
+	/**
+	 * Picks the entry to evict once the cache holds one too many. It
+	 * stays linked until removed is called for it.
+	 * @return entry to evict, possibly the one just added
+	 */
+	abstract Entry<K, V> victim();
+
+	/**
+	 * Notes a lookup of key, hit or miss, for policies that count them
+	 * @param key key looked up
+	 */
+	void recorded(K key) {
+	}
+
+	/**
+	 * Lets go of an entry that is leaving the cache
+	 * @param entry entry being removed or evicted
+	 */
+	void removed(Entry<K, V> entry) {
+		entry.chain.remove(entry);
+	}
+
+	/**
+	 * Cache entry: the value as the node's element, plus its key and the
+	 * chain it is in
+	 */
+	static class Entry<K, V> extends LinearNode<V> {
+		final K key;
+		Chain<K, V> chain;
+
+		public Entry(K key, V value) {
+			super(value);
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Chain of entries from most recently used at the head to least
+	 * recently used at the tail
+	 */
+	static class Chain<K, V> {
+		private Entry<K, V> head;
+		private Entry<K, V> tail;
+		private int size;
+
+		/**
+		 * Links entry at the head
+		 * @param entry entry in no chain
+		 */
+		public void addFirst(Entry<K, V> entry) {
+			entry.setPrevious(null);
+			entry.setNext(head);
+			if(head == null) {
+				tail = entry;
+			} else {
+				head.setPrevious(entry);
+			}
+			head = entry;
+			entry.chain = this;
+			size++;
+		}
+
+		/**
+		 * Unlinks entry
+		 * @param entry entry in this chain
+		 */
+		@SuppressWarnings("unchecked")
+		public void remove(Entry<K, V> entry) {
+			Entry<K, V> previous = (Entry<K, V>) entry.getPrevious();
+			Entry<K, V> next = (Entry<K, V>) entry.getNext();
+			if(previous == null) {
+				head = next;
+			} else {
+				previous.setNext(next);
+			}
+			if(next == null) {
+				tail = previous;
+			} else {
+				next.setPrevious(previous);
+			}
+			entry.setPrevious(null);
+			entry.setNext(null);
+			entry.chain = null;
+			size--;
+		}
+
+		/**
+		 * Moves entry, which is in this chain, to the head
+		 * @param entry entry to move
+		 */
+		public void moveToFront(Entry<K, V> entry) {
+			if(entry != head) {
+				remove(entry);
+				addFirst(entry);
+			}
+		}
+
+		public Entry<K, V> first() {
+			return head;
+		}
+
+		public Entry<K, V> last() {
+			return tail;
+		}
+
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Least recently used: one chain, evicting from its tail
+	 */
+	static class Lru<K, V> extends EvictionPolicy<K, V> {
+		private final Chain<K, V> chain = new Chain<K, V>();
+
+		@Override
+		void added(Entry<K, V> entry) {
+			chain.addFirst(entry);
+		}
+
+		@Override
+		void accessed(Entry<K, V> entry) {
+			chain.moveToFront(entry);
+		}
+
+		@Override
+		Entry<K, V> victim() {
+			return chain.last();
+		}
+	}
+
+	/**
+	 * Segmented LRU: new entries go on probation, and a hit there
+	 * promotes an entry to the protected segment, which holds about 80%
+	 * of the cache. Entries pushed out of the protected segment go back
+	 * on probation, and victims come from the probation tail, so one scan
+	 * through many keys can't flush out entries used more than once.
+	 */
+	static class SegmentedLru<K, V> extends EvictionPolicy<K, V> {
+		final Chain<K, V> probation = new Chain<K, V>();
+		final Chain<K, V> protectedChain = new Chain<K, V>();
+		private final int protectedCapacity;
+
+		public SegmentedLru(int capacity) {
+			protectedCapacity = Math.max(1, capacity - capacity / 5);
+		}
+
+		@Override
+		void added(Entry<K, V> entry) {
+			probation.addFirst(entry);
+		}
+
+		@Override
+		void accessed(Entry<K, V> entry) {
+			if(entry.chain == protectedChain) {
+				protectedChain.moveToFront(entry);
+				return;
+			}
+			probation.remove(entry);
+			protectedChain.addFirst(entry);
+			if(protectedChain.size() > protectedCapacity) {
+				Entry<K, V> demoted = protectedChain.last();
+				protectedChain.remove(demoted);
+				probation.addFirst(demoted);
+			}
+		}
+
+		@Override
+		Entry<K, V> victim() {
+			return (probation.size() > 0) ? probation.last() : protectedChain.last();
+		}
+	}
+
+	/**
+	 * W-TinyLFU: new entries pass through a small LRU window, about 1% of
+	 * the cache, in front of a segmented LRU main area. An entry leaving
+	 * the window only displaces the main area's victim if a count-min
+	 * sketch of recent lookups says it is used more often, otherwise it
+	 * is evicted itself. The window lets bursts of new keys settle in,
+	 * and the frequency test keeps one-off keys out of the main area.
+	 */
+	static class WindowTinyLfu<K, V> extends SegmentedLru<K, V> {
+		private final Chain<K, V> window = new Chain<K, V>();
+		private final int windowCapacity;
+		private final FrequencySketch sketch;
+
+		public WindowTinyLfu(int capacity) {
+			super(capacity - Math.max(1, capacity / 100));
+			windowCapacity = Math.max(1, capacity / 100);
+			sketch = new FrequencySketch(capacity);
+		}
+
+		@Override
+		void recorded(K key) {
+			sketch.increment(key.hashCode());
+		}
+
+		@Override
+		void added(Entry<K, V> entry) {
+			window.addFirst(entry);
+			if(window.size() > windowCapacity) { //the window's oldest entry becomes the candidate
+				Entry<K, V> candidate = window.last();
+				window.remove(candidate);
+				probation.addFirst(candidate);
+			}
+		}
+
+		@Override
+		void accessed(Entry<K, V> entry) {
+			if(entry.chain == window) {
+				window.moveToFront(entry);
+			} else {
+				super.accessed(entry);
+			}
+		}
+
+		@Override
+		Entry<K, V> victim() {
+			if(probation.size() == 0) {
+				return (protectedChain.size() > 0) ? protectedChain.last() : window.last();
+			}
+			Entry<K, V> candidate = probation.first(); //just left the window
+			Entry<K, V> victim = probation.last();
+			if(candidate != victim && sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())) {
+				return victim;
+			}
+			return candidate;
+		}
+	}
+
+	/**
+	 * Count-min sketch of 4-bit counters estimating how often each hash
+	 * was seen lately. Every counter is halved once ten times as many
+	 * increments as there are counters per row have been made, so old
+	 * popularity fades.
+	 */
+	static class FrequencySketch {
+		private static final int DEPTH = 4;
+		private static final long[] SEEDS = { 0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL,
+				0x165667B19E3779F9L, 0xD6E8FEB86659FD93L };
+		private static final int MAX_COUNT = 15;
+
+		private final byte[] counters; //DEPTH rows of width counters
+		private final int mask;
+		private final int sampleSize;
+		private int additions;
+
+		public FrequencySketch(int capacity) {
+			int width = Integer.highestOneBit(Math.max(16, Math.min(capacity, 1 << 26)) - 1) << 1;
+			counters = new byte[DEPTH * width];
+			mask = width - 1;
+			sampleSize = 10 * width;
+		}
+
+		/**
+		 * Counts one more sighting of hash
+		 * @param hash key's hash code
+		 */
+		public void increment(int hash) {
+			boolean added = false;
+			for(int row = 0; row < DEPTH; row++) {
+				int index = indexOf(hash, row);
+				if(counters[index] < MAX_COUNT) {
+					counters[index]++;
+					added = true;
+				}
+			}
+			if(added && ++additions == sampleSize) {
+				for(int i = 0; i < counters.length; i++) {
+					counters[i] >>= 1;
+				}
+				additions /= 2;
+			}
+		}
+
+		/**
+		 * Estimates how often hash was seen, never too low before aging
+		 * @param hash key's hash code
+		 * @return estimated count, 0 to 15
+		 */
+		public int frequency(int hash) {
+			int retVal = MAX_COUNT;
+			for(int row = 0; row < DEPTH; row++) {
+				retVal = Math.min(retVal, counters[indexOf(hash, row)]);
+			}
+			return retVal;
+		}
+
+		private int indexOf(int hash, int row) {
+			long mixed = (hash + SEEDS[row]) * SEEDS[row];
+			return row * (mask + 1) + ((int) (mixed >>> 32) & mask);
+		}
+	}
+}
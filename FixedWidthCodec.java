@@ -0,0 +1,70 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Converts elements to and from records of a fixed number of bytes,
+ * for lists that keep their elements outside the Java heap.
+ * Equal elements must encode to equal bytes, since those lists compare
+ * records byte by byte instead of decoding them.
+ *
+ * @author seema
+ *
+ * @param <T> type of element encoded
+ */
+public interface FixedWidthCodec<T> {
+	/** Codec for Integer elements, 4 bytes each */
+	public static final FixedWidthCodec<Integer> INTEGER = new FixedWidthCodec<Integer>() {
+		public int width() {
+			return Integer.BYTES;
+		}
+
+		public void encode(Integer element, ByteBuffer buffer, int offset) {
+			buffer.putInt(offset, element);
+		}
+
+		public Integer decode(ByteBuffer buffer, int offset) {
+			return buffer.getInt(offset);
+		}
+	};
+
+	/** Codec for Long elements, 8 bytes each */
+	public static final FixedWidthCodec<Long> LONG = new FixedWidthCodec<Long>() {
+		public int width() {
+			return Long.BYTES;
+		}
+
+		public void encode(Long element, ByteBuffer buffer, int offset) {
+			buffer.putLong(offset, element);
+		}
+
+		public Long decode(ByteBuffer buffer, int offset) {
+			return buffer.getLong(offset);
+		}
+	};
+
+	/**
+	 * Returns the number of bytes every record takes.
+	 *
+	 * @return record width in bytes
+	 */
+	public int width();
+
+	/**
+	 * Writes element as a record at the given absolute offset,
+	 * without moving the buffer's position.
+	 *
+	 * @param element element to encode
+	 * @param buffer buffer to write into
+	 * @param offset absolute offset of the record
+	 */
+	public void encode(T element, ByteBuffer buffer, int offset);
+
+	/**
+	 * Reads the record at the given absolute offset,
+	 * without moving the buffer's position.
+	 *
+	 * @param buffer buffer to read from
+	 * @param offset absolute offset of the record
+	 * @return decoded element
+	 */
+	public T decode(ByteBuffer buffer, int offset);
+}
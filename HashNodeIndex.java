@@ -0,0 +1,235 @@
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+/**
+ * Element to node multimap kept beside the LinearNode chain of an
+ * IUDoubleLinkedList, so lookups by value are O(1) expected instead of a
+ * linear equals() scan.
+ *
+ * Every node of an indexed list is an OrderedNode carrying a label that
+ * grows from head to tail. Labels let a SkipListIndex turn a node back into
+ * its index, and order the bucket of an element held more than once: a
+ * TreeSet by label, so finding the first occurrence, adding or removing one
+ * of k equal elements costs O(log k). A unique element's bucket is the
+ * node itself, and contains is O(1) expected whatever the buckets hold.
+ * A new node takes the midpoint of its neighbours' labels; when there is no
+ * room, a window of neighbours around it is spread out again, doubling the
+ * window until the labels in it are sparse enough.
+ *
+ * Elements must not change their hashCode while they are in the list.
+ *
+ * @author seema
+ *
+ * @param <T> type stored in the owning list
+ */
+class HashNodeIndex<T> {
+	private static final long SPACING = 1L << 32; //label gap left by appends and prepends
+
+	private static final Comparator<OrderedNode<?>> BY_ORDER = Comparator.comparingLong(node -> node.order);
+
+	private HashMap<T, Object> buckets; //a single OrderedNode, or a TreeSet of them by label for duplicates
+
+	public HashNodeIndex() {
+		buckets = new HashMap<T, Object>();
+	}
+
+	/**
+	 * Labels node, which must already be linked between its neighbours,
+	 * and adds it to the bucket for its element.
+	 * @param node newly linked node
+	 */
+	public void linked(LinearNode<T> node) {
+		OrderedNode<T> ordered = (OrderedNode<T>) node;
+		long low = (node.getPrevious() == null) ? 0 : order(node.getPrevious());
+		long high = (node.getNext() == null) ? Long.MAX_VALUE : order(node.getNext());
+		if(node.getNext() == null && Long.MAX_VALUE - low > SPACING) {
+			ordered.order = low + SPACING;
+		} else if(node.getPrevious() == null && high > SPACING) {
+			ordered.order = high - SPACING;
+		} else if(high - low > 1) {
+			ordered.order = low + (high - low) / 2;
+		} else {
+			relabel(node, node, 1);
+		}
+		add(ordered);
+	}
+
+	/**
+	 * Labels a run of nodes spliced in from another list, and adds
+	 * them to the buckets for their elements.
+	 * @param first first node of the run, already linked
+	 * @param last last node of the run, already linked
+	 */
+	public void linked(LinearNode<T> first, LinearNode<T> last) {
+		long count = 1;
+		for(LinearNode<T> current = first; current != last; current = current.getNext()) {
+			count++;
+		}
+		long low = (first.getPrevious() == null) ? 0 : order(first.getPrevious());
+		LinearNode<T> current = first;
+		if(last.getNext() == null && (Long.MAX_VALUE - low) / count > SPACING) {
+			for(long i = 1; i <= count; i++) {
+				((OrderedNode<T>) current).order = low + SPACING * i;
+				current = current.getNext();
+			}
+		} else {
+			relabel(first, last, count);
+		}
+		for(current = first; ; current = current.getNext()) { //labelled first, as buckets are ordered by label
+			add((OrderedNode<T>) current);
+			if(current == last) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Moves the run of nodes from first to last out of this index into
+	 * other, after they have been split off into other's list. Their
+	 * labels stay valid there.
+	 * @param other index of the list the run now belongs to
+	 * @param first first node of the run
+	 * @param last last node of the run
+	 */
+	public void moveTo(HashNodeIndex<T> other, LinearNode<T> first, LinearNode<T> last) {
+		LinearNode<T> current = first;
+		while(true) {
+			remove(current, current.getElement());
+			other.add((OrderedNode<T>) current);
+			if(current == last) {
+				break;
+			}
+			current = current.getNext();
+		}
+	}
+
+	/**
+	 * Removes node, which is about to be unlinked, from its bucket.
+	 * @param node node being unlinked
+	 */
+	public void unlinked(LinearNode<T> node) {
+		remove(node, node.getElement());
+	}
+
+	/**
+	 * Moves node to the bucket for its new element after a set.
+	 * @param node node whose element was replaced
+	 * @param oldElement element node held before
+	 */
+	public void changed(LinearNode<T> node, T oldElement) {
+		remove(node, oldElement);
+		add((OrderedNode<T>) node);
+	}
+
+	/**
+	 * Finds the first node, in list order, holding an element equal to element.
+	 * @param element element to look for
+	 * @return first matching node, or null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public LinearNode<T> first(T element) {
+		Object bucket = buckets.get(element);
+		if(bucket instanceof TreeSet) {
+			return ((TreeSet<OrderedNode<T>>) bucket).first();
+		}
+		return (LinearNode<T>) bucket;
+	}
+
+	/**
+	 * Tells whether any node holds an element equal to element.
+	 * @param element element to look for
+	 * @return true if there is a matching node
+	 */
+	public boolean contains(T element) {
+		return buckets.containsKey(element);
+	}
+
+	/**
+	 * Returns the label of a node of an indexed list
+	 * @param node node of the owning list
+	 * @return label, larger than the labels of all nodes before it
+	 */
+	public static long order(LinearNode<?> node) {
+		return ((OrderedNode<?>) node).order;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void add(OrderedNode<T> node) {
+		Object bucket = buckets.get(node.getElement());
+		if(bucket == null) {
+			buckets.put(node.getElement(), node);
+		} else if(bucket instanceof TreeSet) {
+			((TreeSet<OrderedNode<T>>) bucket).add(node);
+		} else {
+			TreeSet<OrderedNode<T>> nodes = new TreeSet<OrderedNode<T>>(BY_ORDER);
+			nodes.add((OrderedNode<T>) bucket);
+			nodes.add(node);
+			buckets.put(node.getElement(), nodes);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void remove(LinearNode<T> node, T element) {
+		Object bucket = buckets.get(element);
+		if(bucket == node) {
+			buckets.remove(element);
+		} else {
+			TreeSet<OrderedNode<T>> nodes = (TreeSet<OrderedNode<T>>) bucket;
+			nodes.remove(node); //found by its label, which no other node of the list has
+			if(nodes.size() == 1) {
+				buckets.put(element, nodes.first());
+			}
+		}
+	}
+
+	/**
+	 * Spreads out the labels from first to last and, if there is not enough
+	 * room between their neighbours, around them. The window of relabeled
+	 * nodes doubles until the gap around it leaves at least as much room per
+	 * node as it holds nodes, or until it covers the whole list.
+	 * @param first first node to label
+	 * @param last last node to label
+	 * @param count number of nodes from first to last
+	 */
+	private void relabel(LinearNode<T> first, LinearNode<T> last, long count) {
+		long low;
+		long high;
+		while(true) {
+			low = (first.getPrevious() == null) ? 0 : order(first.getPrevious());
+			high = (last.getNext() == null) ? Long.MAX_VALUE : order(last.getNext());
+			if((high - low) / (count + 1) > count
+					|| (first.getPrevious() == null && last.getNext() == null)) {
+				break;
+			}
+			long target = count * 2;
+			while(count < target && (first.getPrevious() != null || last.getNext() != null)) {
+				if(first.getPrevious() != null) {
+					first = first.getPrevious();
+					count++;
+				}
+				if(last.getNext() != null && count < target) {
+					last = last.getNext();
+					count++;
+				}
+			}
+		}
+		long gap = (high - low) / (count + 1);
+		LinearNode<T> current = first;
+		for(long i = 1; i <= count; i++) {
+			((OrderedNode<T>) current).order = low + gap * i;
+			current = current.getNext();
+		}
+	}
+
+	/**
+	 * LinearNode with the label an indexed list orders its nodes by
+	 */
+	static class OrderedNode<T> extends LinearNode<T> {
+		private long order;
+
+		public OrderedNode(T elem) {
+			super(elem);
+		}
+	}
+}
@@ -0,0 +1,626 @@
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Counted B+-tree (rope) implementation of IndexedUnsortedList.
+ * Elements live in small array leaves that are linked left to right,
+ * and every node records how many elements are below it, so any index
+ * is found in O(log n) and insert/remove anywhere only shifts one leaf.
+ * Scans (contains, indexOf, toString, iteration) walk the leaf chain.
+ *
+ * @author seema
+ *
+ * @param <T> type to store
+ */
+public class IUBTreeList<T> implements IndexedUnsortedList<T> {
+	private static final int LEAF_CAPACITY = 64;
+	private static final int MAX_CHILDREN = 32;
+	private static final int MIN_LEAF = LEAF_CAPACITY / 4; //smaller leaves get merged or topped up
+	private static final int MIN_CHILDREN = MAX_CHILDREN / 4;
+
+	private Node<T> root;
+	private Leaf<T> firstLeaf;
+	private Leaf<T> lastLeaf;
+	private int modCount; //useful for iterator class
+
+	public IUBTreeList() {
+		Leaf<T> leaf = new Leaf<T>();
+		root = firstLeaf = lastLeaf = leaf;
+		modCount = 0;
+	}
+
+	@Override
+	public void addToFront(T element) {
+		insertAt(0, element);
+	}
+
+	@Override
+	public void addToRear(T element) {
+		insertAt(size(), element);
+	}
+
+	@Override
+	public void add(T element) {
+		addToRear(element);
+	}
+
+	@Override
+	public void addAfter(T element, T target) {
+		int index = indexOf(target);
+		if(index < 0) {
+			throw new NoSuchElementException();
+		}
+		insertAt(index + 1, element);
+	}
+
+	@Override
+	public void add(int index, T element) {
+		if(index < 0 || index > size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		insertAt(index, element);
+	}
+
+	@Override
+	public T removeFirst() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return removeAt(0);
+	}
+
+	@Override
+	public T removeLast() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return removeAt(size() - 1);
+	}
+
+	@Override
+	public T remove(T element) {
+		int index = indexOf(element);
+		if(index < 0) {
+			throw new NoSuchElementException();
+		}
+		return removeAt(index);
+	}
+
+	@Override
+	public T remove(int index) {
+		if(index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		return removeAt(index);
+	}
+
+	@Override
+	public void set(int index, T element) {
+		if(index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		Node<T> node = root;
+		while(node instanceof Internal) {
+			Internal<T> internal = (Internal<T>) node;
+			int child = 0;
+			while(index >= internal.children[child].size) {
+				index -= internal.children[child].size;
+				child++;
+			}
+			node = internal.children[child];
+		}
+		((Leaf<T>) node).elements[index] = element;
+		modCount++;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T get(int index) {
+		if(index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		Node<T> node = root;
+		while(node instanceof Internal) {
+			Internal<T> internal = (Internal<T>) node;
+			int child = 0;
+			while(index >= internal.children[child].size) {
+				index -= internal.children[child].size;
+				child++;
+			}
+			node = internal.children[child];
+		}
+		return (T) ((Leaf<T>) node).elements[index];
+	}
+
+	@Override
+	public int indexOf(T element) {
+		int base = 0;
+		for(Leaf<T> leaf = firstLeaf; leaf != null; leaf = leaf.next) {
+			Object[] elements = leaf.elements;
+			for(int i = 0; i < leaf.size; i++) {
+				if(elements[i].equals(element)) {
+					return base + i;
+				}
+			}
+			base += leaf.size;
+		}
+		return -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T first() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return (T) firstLeaf.elements[0];
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T last() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return (T) lastLeaf.elements[lastLeaf.size - 1];
+	}
+
+	@Override
+	public boolean contains(T target) {
+		return (indexOf(target) >= 0);
+	}
+
+	/**
+	 * Appends proper syntax for given list
+	 */
+	public String toString() {
+		StringBuilder str = new StringBuilder();
+		str.append("[");
+		for(Leaf<T> leaf = firstLeaf; leaf != null; leaf = leaf.next) {
+			for(int i = 0; i < leaf.size; i++) {
+				str.append(leaf.elements[i].toString());
+				str.append(", ");
+			}
+		}
+		if(!isEmpty()) {
+			str.delete(str.length()-2, str.length());
+		}
+		str.append("]");
+		return str.toString();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (root.size == 0);
+	}
+
+	@Override
+	public int size() {
+		return root.size;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return listIterator();
+	}
+
+	@Override
+	public ListIterator<T> listIterator() {
+		return new BTreeIterator(0);
+	}
+
+	@Override
+	public ListIterator<T> listIterator(int startingIndex) {
+		return new BTreeIterator(startingIndex);
+	}
+
+	/**
+	 * Inserts element at a valid index, splitting nodes on the way back up as needed
+	 * @param index 0 <= index <= size
+	 * @param element element to insert
+	 */
+	private void insertAt(int index, T element) {
+		Node<T> split = insert(root, index, element);
+		if(split != null) { //tree grows one level
+			Internal<T> newRoot = new Internal<T>();
+			newRoot.insertChild(0, root);
+			newRoot.insertChild(1, split);
+			newRoot.recount();
+			root = newRoot;
+		}
+		modCount++;
+	}
+
+	/**
+	 * Inserts element into the subtree under node
+	 * @param node subtree root
+	 * @param index index within the subtree
+	 * @param element element to insert
+	 * @return new right sibling if node had to split, else null
+	 */
+	private Node<T> insert(Node<T> node, int index, T element) {
+		if(node instanceof Leaf) {
+			Leaf<T> leaf = (Leaf<T>) node;
+			if(leaf.size < LEAF_CAPACITY) {
+				leaf.insert(index, element);
+				return null;
+			}
+			Leaf<T> right = splitLeaf(leaf);
+			if(index <= leaf.size) {
+				leaf.insert(index, element);
+			} else {
+				right.insert(index - leaf.size, element);
+			}
+			return right;
+		}
+		Internal<T> internal = (Internal<T>) node;
+		int child = 0;
+		while(child < internal.childCount - 1 && index > internal.children[child].size) {
+			index -= internal.children[child].size;
+			child++;
+		}
+		Node<T> split = insert(internal.children[child], index, element);
+		internal.size++;
+		if(split == null) {
+			return null;
+		}
+		if(internal.childCount < MAX_CHILDREN) {
+			internal.insertChild(child + 1, split);
+			return null;
+		}
+		Internal<T> right = new Internal<T>();
+		int half = internal.childCount / 2;
+		for(int i = half; i < internal.childCount; i++) {
+			right.insertChild(right.childCount, internal.children[i]);
+			internal.children[i] = null;
+		}
+		internal.childCount = half;
+		if(child + 1 <= half) {
+			internal.insertChild(child + 1, split);
+		} else {
+			right.insertChild(child + 1 - half, split);
+		}
+		internal.recount();
+		right.recount();
+		return right;
+	}
+
+	/**
+	 * Moves the upper half of a full leaf into a new leaf linked after it
+	 * @param leaf full leaf
+	 * @return new right leaf
+	 */
+	private Leaf<T> splitLeaf(Leaf<T> leaf) {
+		Leaf<T> right = new Leaf<T>();
+		int half = leaf.size / 2;
+		System.arraycopy(leaf.elements, half, right.elements, 0, leaf.size - half);
+		Arrays.fill(leaf.elements, half, leaf.size, null);
+		right.size = leaf.size - half;
+		leaf.size = half;
+		right.next = leaf.next;
+		right.previous = leaf;
+		if(leaf.next != null) {
+			leaf.next.previous = right;
+		} else {
+			lastLeaf = right;
+		}
+		leaf.next = right;
+		return right;
+	}
+
+	/**
+	 * Removes the element at a valid index, merging or topping up nodes
+	 * on the way back up as needed
+	 * @param index 0 <= index < size
+	 * @return removed element
+	 */
+	private T removeAt(int index) {
+		T retVal = remove(root, index);
+		if(root instanceof Internal && ((Internal<T>) root).childCount == 1) { //tree shrinks one level
+			root = ((Internal<T>) root).children[0];
+		}
+		modCount++;
+		return retVal;
+	}
+
+	/**
+	 * Removes an element from the subtree under node
+	 * @param node subtree root
+	 * @param index index within the subtree
+	 * @return removed element
+	 */
+	private T remove(Node<T> node, int index) {
+		if(node instanceof Leaf) {
+			return ((Leaf<T>) node).remove(index);
+		}
+		Internal<T> internal = (Internal<T>) node;
+		int child = 0;
+		while(index >= internal.children[child].size) {
+			index -= internal.children[child].size;
+			child++;
+		}
+		T retVal = remove(internal.children[child], index);
+		internal.size--;
+		if(internal.childCount > 1 && isUnderfull(internal.children[child])) {
+			rebalance(internal, child);
+		}
+		return retVal;
+	}
+
+	/**
+	 * @param node node to check
+	 * @return true if node is below its minimum occupancy
+	 */
+	private boolean isUnderfull(Node<T> node) {
+		if(node instanceof Leaf) {
+			return (node.size < MIN_LEAF);
+		}
+		return (((Internal<T>) node).childCount < MIN_CHILDREN);
+	}
+
+	/**
+	 * Merges an underfull child with a neighbour, or evens them out
+	 * when both together would not fit in one node
+	 * @param parent parent with at least two children
+	 * @param child index of the underfull child
+	 */
+	private void rebalance(Internal<T> parent, int child) {
+		int left = (child + 1 < parent.childCount) ? child : child - 1;
+		Node<T> leftNode = parent.children[left];
+		Node<T> rightNode = parent.children[left + 1];
+		if(leftNode instanceof Leaf) {
+			Leaf<T> leftLeaf = (Leaf<T>) leftNode;
+			Leaf<T> rightLeaf = (Leaf<T>) rightNode;
+			if(leftLeaf.size + rightLeaf.size <= LEAF_CAPACITY) {
+				System.arraycopy(rightLeaf.elements, 0, leftLeaf.elements, leftLeaf.size, rightLeaf.size);
+				leftLeaf.size += rightLeaf.size;
+				leftLeaf.next = rightLeaf.next;
+				if(rightLeaf.next != null) {
+					rightLeaf.next.previous = leftLeaf;
+				} else {
+					lastLeaf = leftLeaf;
+				}
+				parent.removeChild(left + 1);
+			} else {
+				int total = leftLeaf.size + rightLeaf.size;
+				Object[] all = new Object[total];
+				System.arraycopy(leftLeaf.elements, 0, all, 0, leftLeaf.size);
+				System.arraycopy(rightLeaf.elements, 0, all, leftLeaf.size, rightLeaf.size);
+				Arrays.fill(leftLeaf.elements, null);
+				Arrays.fill(rightLeaf.elements, null);
+				leftLeaf.size = total / 2;
+				rightLeaf.size = total - leftLeaf.size;
+				System.arraycopy(all, 0, leftLeaf.elements, 0, leftLeaf.size);
+				System.arraycopy(all, leftLeaf.size, rightLeaf.elements, 0, rightLeaf.size);
+			}
+		} else {
+			Internal<T> leftInternal = (Internal<T>) leftNode;
+			Internal<T> rightInternal = (Internal<T>) rightNode;
+			if(leftInternal.childCount + rightInternal.childCount <= MAX_CHILDREN) {
+				for(int i = 0; i < rightInternal.childCount; i++) {
+					leftInternal.insertChild(leftInternal.childCount, rightInternal.children[i]);
+				}
+				leftInternal.recount();
+				parent.removeChild(left + 1);
+			} else {
+				while(leftInternal.childCount < rightInternal.childCount - 1) {
+					leftInternal.insertChild(leftInternal.childCount, rightInternal.children[0]);
+					rightInternal.removeChild(0);
+				}
+				while(rightInternal.childCount < leftInternal.childCount - 1) {
+					rightInternal.insertChild(0, leftInternal.children[leftInternal.childCount - 1]);
+					leftInternal.removeChild(leftInternal.childCount - 1);
+				}
+				leftInternal.recount();
+				rightInternal.recount();
+			}
+		}
+	}
+
+	/**
+	 * A node of the tree; size counts the elements below it
+	 */
+	private static abstract class Node<T> {
+		protected int size;
+	}
+
+	/**
+	 * Bottom level node holding up to LEAF_CAPACITY elements
+	 */
+	private static class Leaf<T> extends Node<T> {
+		private Object[] elements = new Object[LEAF_CAPACITY];
+		private Leaf<T> next;
+		private Leaf<T> previous;
+
+		private void insert(int index, T element) {
+			System.arraycopy(elements, index, elements, index + 1, size - index);
+			elements[index] = element;
+			size++;
+		}
+
+		@SuppressWarnings("unchecked")
+		private T remove(int index) {
+			T retVal = (T) elements[index];
+			System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+			size--;
+			elements[size] = null;
+			return retVal;
+		}
+	}
+
+	/**
+	 * Upper level node holding up to MAX_CHILDREN children
+	 */
+	private static class Internal<T> extends Node<T> {
+		@SuppressWarnings("unchecked")
+		private Node<T>[] children = (Node<T>[]) new Node<?>[MAX_CHILDREN];
+		private int childCount;
+
+		private void insertChild(int index, Node<T> child) { //size is left to the caller, see recount()
+			System.arraycopy(children, index, children, index + 1, childCount - index);
+			children[index] = child;
+			childCount++;
+		}
+
+		private void removeChild(int index) { //size is left to the caller, see recount()
+			System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+			childCount--;
+			children[childCount] = null;
+		}
+
+		private void recount() {
+			size = 0;
+			for(int i = 0; i < childCount; i++) {
+				size += children[i].size;
+			}
+		}
+	}
+
+	/**
+	 * ListIterator for IUBTreeList
+	 * Walks the leaf chain directly; add() and remove() go through the
+	 * tree and then find their place again.
+	 * @author seema
+	 *
+	 */
+	private class BTreeIterator implements ListIterator<T> {
+		private Leaf<T> leaf; //leaf holding the next element, or the last leaf at the end
+		private int offset; //position of the next element within leaf
+		private int nextIndex;
+		private int iterModCount;
+		private int lastReturnedIndex; //-1 if next()/previous() hasn't been called since the last change
+
+		public BTreeIterator(int startingIndex) {
+			if(startingIndex < 0 || startingIndex > size()) {
+				throw new IndexOutOfBoundsException();
+			}
+			seek(startingIndex);
+			iterModCount = modCount;
+			lastReturnedIndex = -1;
+		}
+
+		/**
+		 * Positions the cursor before the given index
+		 * @param index 0 <= index <= size
+		 */
+		private void seek(int index) {
+			nextIndex = index;
+			if(index == size()) {
+				leaf = lastLeaf;
+				offset = lastLeaf.size;
+				return;
+			}
+			Node<T> node = root;
+			while(node instanceof Internal) {
+				Internal<T> internal = (Internal<T>) node;
+				int child = 0;
+				while(index >= internal.children[child].size) {
+					index -= internal.children[child].size;
+					child++;
+				}
+				node = internal.children[child];
+			}
+			leaf = (Leaf<T>) node;
+			offset = index;
+		}
+
+		@Override
+		public void add(T element) {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			insertAt(nextIndex, element);
+			seek(nextIndex + 1);
+			lastReturnedIndex = -1;
+			iterModCount++;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			return (nextIndex < size());
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			return (nextIndex > 0);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			if(offset == leaf.size) {
+				leaf = leaf.next;
+				offset = 0;
+			}
+			lastReturnedIndex = nextIndex;
+			nextIndex++;
+			return (T) leaf.elements[offset++];
+		}
+
+		@Override
+		public int nextIndex() {
+			return nextIndex;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T previous() {
+			if(!hasPrevious()) {
+				throw new NoSuchElementException();
+			}
+			if(offset == 0) {
+				leaf = leaf.previous;
+				offset = leaf.size;
+			}
+			nextIndex--;
+			lastReturnedIndex = nextIndex;
+			return (T) leaf.elements[--offset];
+		}
+
+		@Override
+		public int previousIndex() {
+			return (nextIndex - 1);
+		}
+
+		@Override
+		public void remove() {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(lastReturnedIndex < 0) {
+				throw new IllegalStateException();
+			}
+			removeAt(lastReturnedIndex);
+			if(lastReturnedIndex < nextIndex) { //last move was next()
+				nextIndex--;
+			}
+			seek(nextIndex);
+			lastReturnedIndex = -1;
+			iterModCount++;
+		}
+
+		@Override
+		public void set(T element) {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(lastReturnedIndex < 0) {
+				throw new IllegalStateException();
+			}
+			IUBTreeList.this.set(lastReturnedIndex, element);
+			iterModCount++;
+		}
+	}
+}
@@ -0,0 +1,502 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded, thread-safe IndexedUnsortedList for producer/consumer work
+ * queues, wrapping an IUDoubleLinkedList behind one ReentrantLock.
+ *
+ * Producers put or offer at the rear and consumers take or poll from the
+ * front, waiting on Conditions rather than in synchronized blocks, so
+ * virtual threads can unmount while they wait. drainTo cuts a whole batch
+ * off the front with splitAt under one lock acquisition, and hands the
+ * elements to the target collection after the lock is released.
+ *
+ * The other IndexedUnsortedList methods never wait. Adding to a full
+ * deque through them throws IllegalStateException. Iterators, list
+ * iterators and spliterators work on a snapshot copied under the lock and
+ * do not support changes.
+ *
+ * @author seema
+ *
+ * @param <T> type to store
+ */
+public class IUBlockingDeque<T> implements IndexedUnsortedList<T> {
+	private IUDoubleLinkedList<T> list; //replaced by the remainder after a drain
+	private final int capacity;
+	private final ReentrantLock lock;
+	private final Condition notEmpty; //signalled when an element is added
+	private final Condition notFull; //signalled when elements are removed
+
+	public IUBlockingDeque() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates an empty deque
+	 * @param capacity most elements the deque may hold
+	 * @throws IllegalArgumentException if capacity is not positive
+	 */
+	public IUBlockingDeque(int capacity) {
+		if(capacity <= 0) {
+			throw new IllegalArgumentException();
+		}
+		list = new IUDoubleLinkedList<T>();
+		this.capacity = capacity;
+		lock = new ReentrantLock();
+		notEmpty = lock.newCondition();
+		notFull = lock.newCondition();
+	}
+
+	/**
+	 * Adds element at the rear, waiting for room if the deque is full
+	 * @param element element to add
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void put(T element) throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while(list.size() == capacity) {
+				notFull.await();
+			}
+			linkLast(element);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds element at the rear if there is room
+	 * @param element element to add
+	 * @return true if element was added, false if the deque was full
+	 */
+	public boolean offer(T element) {
+		lock.lock();
+		try {
+			if(list.size() == capacity) {
+				return false;
+			}
+			linkLast(element);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds element at the rear, waiting up to timeout for room
+	 * @param element element to add
+	 * @param timeout how long to wait
+	 * @param unit unit of timeout
+	 * @return true if element was added, false if time ran out
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean offer(T element, long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while(list.size() == capacity) {
+				if(nanos <= 0) {
+					return false;
+				}
+				nanos = notFull.awaitNanos(nanos);
+			}
+			linkLast(element);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the front element, waiting for one if the deque is empty
+	 * @return removed element
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public T take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while(list.isEmpty()) {
+				notEmpty.await();
+			}
+			return unlinkFirst();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the front element if there is one
+	 * @return removed element, or null if the deque was empty
+	 */
+	public T poll() {
+		lock.lock();
+		try {
+			return list.isEmpty() ? null : unlinkFirst();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the front element, waiting up to timeout for one
+	 * @param timeout how long to wait
+	 * @param unit unit of timeout
+	 * @return removed element, or null if time ran out
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while(list.isEmpty()) {
+				if(nanos <= 0) {
+					return null;
+				}
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			return unlinkFirst();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes every element and adds them to target in order
+	 * @param target collection to add to
+	 * @return number of elements moved
+	 */
+	public int drainTo(Collection<? super T> target) {
+		return drainTo(target, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Removes up to max elements from the front and adds them to target in
+	 * order. The batch is split off under one lock acquisition and added
+	 * to target after the lock is released, so producers are not held up
+	 * by target. If target throws, the elements not yet added are lost.
+	 * @param target collection to add to
+	 * @param max most elements to move
+	 * @return number of elements moved
+	 * @throws NullPointerException if target is null
+	 */
+	public int drainTo(Collection<? super T> target, int max) {
+		if(target == null) {
+			throw new NullPointerException();
+		}
+		if(max <= 0) {
+			return 0;
+		}
+		IUDoubleLinkedList<T> batch;
+		lock.lock();
+		try {
+			batch = list;
+			if(max < list.size()) {
+				list = batch.splitAt(max);
+			} else {
+				list = new IUDoubleLinkedList<T>();
+			}
+			if(!batch.isEmpty()) {
+				notFull.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+		batch.forEach(target::add);
+		return batch.size();
+	}
+
+	/**
+	 * Returns how many more elements fit
+	 * @return capacity minus size
+	 */
+	public int remainingCapacity() {
+		lock.lock();
+		try {
+			return capacity - list.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds element at the rear of a deque known to have room, and wakes a
+	 * waiting consumer. Caller holds the lock.
+	 * @param element element to add
+	 */
+	private void linkLast(T element) {
+		list.addToRear(element);
+		notEmpty.signal();
+	}
+
+	/**
+	 * Removes the front element of a deque known not to be empty, and
+	 * wakes a waiting producer. Caller holds the lock.
+	 * @return removed element
+	 */
+	private T unlinkFirst() {
+		T retVal = list.removeFirst();
+		notFull.signal();
+		return retVal;
+	}
+
+	/**
+	 * Throws if the deque is full. Caller holds the lock.
+	 * @throws IllegalStateException if there is no room
+	 */
+	private void checkRoom() {
+		if(list.size() == capacity) {
+			throw new IllegalStateException();
+		}
+	}
+
+	@Override
+	public void addToFront(T element) {
+		lock.lock();
+		try {
+			checkRoom();
+			list.addToFront(element);
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void addToRear(T element) {
+		lock.lock();
+		try {
+			checkRoom();
+			linkLast(element);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void add(T element) {
+		addToRear(element);
+	}
+
+	@Override
+	public void addAfter(T element, T target) {
+		lock.lock();
+		try {
+			checkRoom();
+			list.addAfter(element, target);
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void add(int index, T element) {
+		lock.lock();
+		try {
+			checkRoom();
+			list.add(index, element);
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T removeFirst() {
+		lock.lock();
+		try {
+			if(list.isEmpty()) {
+				throw new NoSuchElementException();
+			}
+			return unlinkFirst();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T removeLast() {
+		lock.lock();
+		try {
+			T retVal = list.removeLast();
+			notFull.signal();
+			return retVal;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T remove(T element) {
+		lock.lock();
+		try {
+			T retVal = list.remove(element);
+			notFull.signal();
+			return retVal;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T remove(int index) {
+		lock.lock();
+		try {
+			T retVal = list.remove(index);
+			notFull.signal();
+			return retVal;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void set(int index, T element) {
+		lock.lock();
+		try {
+			list.set(index, element);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T get(int index) {
+		lock.lock();
+		try {
+			return list.get(index);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int indexOf(T element) {
+		lock.lock();
+		try {
+			return list.indexOf(element);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T first() {
+		lock.lock();
+		try {
+			return list.first();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T last() {
+		lock.lock();
+		try {
+			return list.last();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean contains(T target) {
+		return (indexOf(target) >= 0);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		lock.lock();
+		try {
+			return list.isEmpty();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return list.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Appends proper syntax for given list
+	 */
+	public String toString() {
+		lock.lock();
+		try {
+			return list.toString();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Copies the elements under the lock
+	 * @return unmodifiable copy of the list
+	 */
+	private List<T> snapshot() {
+		lock.lock();
+		try {
+			ArrayList<T> copy = new ArrayList<T>(list.size());
+			list.forEach(copy::add);
+			return Collections.unmodifiableList(copy);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns an Iterator over a snapshot of the list, which does not support remove
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return snapshot().iterator();
+	}
+
+	/**
+	 * Returns a ListIterator over a snapshot of the list, which does not
+	 * support add, remove or set
+	 */
+	@Override
+	public ListIterator<T> listIterator() {
+		return snapshot().listIterator();
+	}
+
+	/**
+	 * Returns a ListIterator over a snapshot of the list, which does not
+	 * support add, remove or set
+	 */
+	@Override
+	public ListIterator<T> listIterator(int startingIndex) {
+		List<T> snapshot = snapshot();
+		if(startingIndex < 0 || startingIndex > snapshot.size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		return snapshot.listIterator(startingIndex);
+	}
+
+	/**
+	 * Returns a Spliterator over a snapshot of the list
+	 */
+	@Override
+	public Spliterator<T> spliterator() {
+		return Spliterators.spliterator(snapshot(), Spliterator.ORDERED | Spliterator.IMMUTABLE);
+	}
+}
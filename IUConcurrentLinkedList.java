@@ -0,0 +1,676 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free linked implementation of IndexedUnsortedList, safe to share
+ * between threads without any locking. Every change is a compare-and-set
+ * on a node's item or next link, in the style of ConcurrentLinkedDeque
+ * and the bottom level of ConcurrentSkipListMap.
+ *
+ * An element is removed by setting its node's item to null. That CAS
+ * decides which thread removed it. A marker node is then put after the
+ * dead node, so nothing can be inserted after it, and the node is cut out
+ * of the chain. Any thread that walks past a dead node helps with those
+ * steps, so no operation waits for another. The next links are
+ * authoritative. The prev links are hints for reaching the rear quickly.
+ * They always point at an earlier node and are checked before being
+ * trusted.
+ *
+ * Guarantees of each operation:
+ * <ul>
+ * <li>addToFront, addToRear and add(T) are linearizable at the CAS that
+ *  links the new node.</li>
+ * <li>removeFirst, removeLast, remove(T), remove(int) and set are
+ *  linearizable at the CAS on the item. removeFirst, removeLast, first and
+ *  last act on the first or last element as of that instant, unless an
+ *  add at the same end runs at the same time. Then they may act on the
+ *  element that add has just displaced, as ConcurrentLinkedDeque may.</li>
+ * <li>first, last, contains, indexOf, get and iteration are weakly
+ *  consistent. They never fail, they see every element that is present
+ *  throughout the call, and they see no element that is absent
+ *  throughout it.</li>
+ * <li>add(int, T), addAfter and the index operations count positions
+ *  while walking, so under concurrent changes an index is only
+ *  approximate.</li>
+ * <li>size is a running count and may be briefly off while changes are
+ *  in flight. isEmpty does not use it and is exact.</li>
+ * </ul>
+ * Iterators are weakly consistent and never throw
+ * ConcurrentModificationException. listIterator is not supported.
+ * Null elements are not allowed, since a null item marks a removed node.
+ *
+ * @author seema
+ *
+ * @param <T> type to store
+ */
+public class IUConcurrentLinkedList<T> implements IndexedUnsortedList<T> {
+	private final Node<T> head; //sentinel, never removed
+	private volatile Node<T> tail; //hint: some node at or before the last
+	private final LongAdder size;
+
+	public IUConcurrentLinkedList() {
+		head = new Node<T>(null);
+		tail = head;
+		size = new LongAdder();
+	}
+
+	/**
+	 * Adds element at the front. Linearizable, lock-free.
+	 */
+	@Override
+	public void addToFront(T element) {
+		Node<T> newNode = newNode(element);
+		newNode.prev = head;
+		while(true) {
+			Node<T> first = head.next;
+			newNode.next = first;
+			if(head.casNext(first, newNode)) {
+				if(first != null) {
+					first.prev = newNode;
+				}
+				size.increment();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Adds element at the rear. Linearizable, lock-free.
+	 */
+	@Override
+	public void addToRear(T element) {
+		Node<T> newNode = newNode(element);
+		Node<T> last = end();
+		while(true) {
+			newNode.prev = last;
+			if(last.casNext(null, newNode)) {
+				tail = newNode;
+				size.increment();
+				return;
+			}
+			last = walkToEnd(last);
+		}
+	}
+
+	@Override
+	public void add(T element) {
+		addToRear(element);
+	}
+
+	/**
+	 * Adds element after the first element equal to target. If target is
+	 * removed at the same time, element may end up where target was.
+	 */
+	@Override
+	public void addAfter(T element, T target) {
+		Node<T> newNode = newNode(element);
+		while(true) {
+			Node<T> node = find(target);
+			if(node == null) {
+				throw new NoSuchElementException();
+			}
+			if(linkAfter(node, newNode)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Adds element at index, counting the elements passed on the way there
+	 */
+	@Override
+	public void add(int index, T element) {
+		if(index < 0) {
+			throw new IndexOutOfBoundsException();
+		}
+		Node<T> newNode = newNode(element);
+		while(true) {
+			Node<T> node = head;
+			for(int i = 0; i < index; i++) {
+				node = succ(node);
+				if(node == null) {
+					throw new IndexOutOfBoundsException();
+				}
+			}
+			if(linkAfter(node, newNode)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes the first element. Linearizable, lock-free.
+	 */
+	@Override
+	public T removeFirst() {
+		while(true) {
+			Node<T> node = succ(head);
+			if(node == null) {
+				throw new NoSuchElementException();
+			}
+			T retVal = node.item;
+			if(retVal != null && node.casItem(retVal, null)) {
+				unlink(node);
+				size.decrement();
+				return retVal;
+			}
+		}
+	}
+
+	/**
+	 * Removes the last element. Linearizable, lock-free.
+	 */
+	@Override
+	public T removeLast() {
+		while(true) {
+			Node<T> node = lastLive();
+			if(node == head) {
+				throw new NoSuchElementException();
+			}
+			T retVal = node.item;
+			if(retVal != null && node.casItem(retVal, null)) {
+				unlink(node);
+				size.decrement();
+				return retVal;
+			}
+		}
+	}
+
+	@Override
+	public T remove(T element) {
+		while(true) {
+			Node<T> node = find(element);
+			if(node == null) {
+				throw new NoSuchElementException();
+			}
+			T retVal = node.item;
+			if(retVal != null && retVal.equals(element) && node.casItem(retVal, null)) {
+				unlink(node);
+				size.decrement();
+				return retVal;
+			}
+		}
+	}
+
+	@Override
+	public T remove(int index) {
+		while(true) {
+			Node<T> node = nodeAt(index);
+			T retVal = node.item;
+			if(retVal != null && node.casItem(retVal, null)) {
+				unlink(node);
+				size.decrement();
+				return retVal;
+			}
+		}
+	}
+
+	@Override
+	public void set(int index, T element) {
+		if(element == null) {
+			throw new NullPointerException();
+		}
+		while(true) {
+			Node<T> node = nodeAt(index);
+			T oldElement = node.item;
+			if(oldElement != null && node.casItem(oldElement, element)) {
+				return;
+			}
+		}
+	}
+
+	@Override
+	public T get(int index) {
+		while(true) {
+			T retVal = nodeAt(index).item;
+			if(retVal != null) {
+				return retVal;
+			}
+		}
+	}
+
+	@Override
+	public int indexOf(T element) {
+		if(element == null) {
+			return -1;
+		}
+		int index = 0;
+		for(Node<T> node = succ(head); node != null; node = succ(node)) {
+			T item = node.item;
+			if(item != null && item.equals(element)) {
+				return index;
+			}
+			index++;
+		}
+		return -1;
+	}
+
+	@Override
+	public T first() {
+		for(Node<T> node = succ(head); node != null; node = succ(node)) {
+			T item = node.item;
+			if(item != null) {
+				return item;
+			}
+		}
+		throw new NoSuchElementException();
+	}
+
+	@Override
+	public T last() {
+		while(true) {
+			Node<T> node = lastLive();
+			if(node == head) {
+				throw new NoSuchElementException();
+			}
+			T item = node.item;
+			if(item != null) {
+				return item;
+			}
+		}
+	}
+
+	@Override
+	public boolean contains(T target) {
+		return (find(target) != null);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (succ(head) == null);
+	}
+
+	/**
+	 * Returns a running count of the elements. While other threads are
+	 * adding or removing it may be briefly off.
+	 */
+	@Override
+	public int size() {
+		long count = size.sum();
+		return (int) Math.max(0, Math.min(count, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Appends proper syntax for given list
+	 */
+	public String toString() {
+		StringBuilder str = new StringBuilder();
+		str.append("[");
+		for(Node<T> node = succ(head); node != null; node = succ(node)) {
+			T item = node.item;
+			if(item != null) {
+				str.append(item.toString());
+				str.append(", ");
+			}
+		}
+		if(str.length() > 1) {
+			str.delete(str.length()-2, str.length());
+		}
+		str.append("]");
+		return str.toString();
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return new CLLIterator();
+	}
+
+	/**
+	 * Not supported; positions cannot be held still while other threads change the list
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public ListIterator<T> listIterator() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Not supported; positions cannot be held still while other threads change the list
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public ListIterator<T> listIterator(int startingIndex) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns a weakly consistent Spliterator. It does not report a size,
+	 * since the size can change while it is in use.
+	 */
+	@Override
+	public Spliterator<T> spliterator() {
+		return Spliterators.spliteratorUnknownSize(iterator(),
+				Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.CONCURRENT);
+	}
+
+	/**
+	 * Creates an unlinked node for element
+	 * @param element element to store, not null
+	 * @return new node
+	 */
+	private Node<T> newNode(T element) {
+		if(element == null) {
+			throw new NullPointerException();
+		}
+		return new Node<T>(element);
+	}
+
+	/**
+	 * Tries once to link newNode right after node
+	 * @param node node to follow, which may have been removed but not yet marked
+	 * @param newNode node to link
+	 * @return true if linked, false if node was marked and the caller must look again
+	 */
+	private boolean linkAfter(Node<T> node, Node<T> newNode) {
+		while(true) {
+			Node<T> next = node.next;
+			if(next != null && next.marker) {
+				return false;
+			}
+			newNode.prev = node;
+			newNode.next = next;
+			if(node.casNext(next, newNode)) {
+				if(next != null) {
+					next.prev = newNode;
+				} else {
+					tail = newNode;
+				}
+				size.increment();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Finishes removing a node whose item has been set to null: marks it
+	 * so nothing can be linked after it, then cuts it out if its prev
+	 * hint is still right. Otherwise the next walk past it cuts it out.
+	 * @param node removed node
+	 */
+	private void unlink(Node<T> node) {
+		Node<T> next;
+		while(true) {
+			next = node.next;
+			if(next != null && next.marker) {
+				break;
+			}
+			if(node.casNext(next, new Node<T>(next, node))) {
+				next = node.next;
+				break;
+			}
+		}
+		Node<T> previous = node.prev;
+		Node<T> successor = next.next;
+		if(previous.next == node && previous.casNext(node, successor) && successor != null) {
+			successor.prev = previous;
+		}
+	}
+
+	/**
+	 * Returns the first live node after node, helping to mark and cut out
+	 * removed nodes on the way
+	 * @param node node to start after, live or not
+	 * @return first live node after node, or null if there is none
+	 */
+	private Node<T> succ(Node<T> node) {
+		Node<T> previous = node; //last non-marker node passed
+		Node<T> current = node.next;
+		while(current != null) {
+			if(current.marker) { //previous is being cut out, just step over
+				current = current.next;
+			} else if(current.item != null) {
+				return current;
+			} else if(!help(previous, current)) {
+				previous = current;
+				current = current.next;
+			} else {
+				current = previous.next;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Does one step of removing dead, a node whose item is null
+	 * @param previous node believed to be just before dead
+	 * @param dead removed node
+	 * @return true if a step was made and dead should be looked at again,
+	 *  false if previous is not just before dead any more
+	 */
+	private boolean help(Node<T> previous, Node<T> dead) {
+		Node<T> next = dead.next;
+		if(next != null && next.marker) {
+			if(previous.casNext(dead, next.next)) {
+				if(next.next != null) {
+					next.next.prev = previous;
+				}
+				return true;
+			}
+			return false;
+		}
+		return dead.casNext(next, new Node<T>(next, dead));
+	}
+
+	/**
+	 * Walks back along prev hints to a node that has not been removed.
+	 * Such a node is still in the chain.
+	 * @param node node to start from
+	 * @return node or an earlier live node, or head
+	 */
+	private Node<T> live(Node<T> node) {
+		while(node != head && (node.marker || node.item == null)) {
+			node = node.prev;
+		}
+		return node;
+	}
+
+	/**
+	 * Walks from node to the physical end of the chain, cutting out
+	 * removed nodes on the way. When the chain ends in a marker, its
+	 * node has to be cut out first, so the walk goes back to a live node
+	 * and comes forward again.
+	 * @param node node to start from, not a marker
+	 * @return node whose next is null, which nothing can have marked
+	 */
+	private Node<T> walkToEnd(Node<T> node) {
+		Node<T> previous = node;
+		while(true) {
+			Node<T> current = previous.next;
+			if(current == null) {
+				return previous;
+			}
+			if(current.marker) { //previous is removed
+				if(current.next == null) {
+					previous = live(previous);
+				} else {
+					previous = current.next;
+				}
+			} else if(current.item != null || !help(previous, current)) {
+				previous = current;
+			}
+		}
+	}
+
+	/**
+	 * Finds the physical end of the chain, starting from the tail hint
+	 * @return node whose next is null
+	 */
+	private Node<T> end() {
+		Node<T> last = walkToEnd(tail);
+		tail = last;
+		return last;
+	}
+
+	/**
+	 * Finds the last live node, stepping back from the physical end
+	 * along prev hints and then checking forward that nothing live follows
+	 * @return last live node, or head if there is none
+	 */
+	private Node<T> lastLive() {
+		Node<T> node = live(end());
+		Node<T> later;
+		while((later = succ(node)) != null) {
+			node = later;
+		}
+		return node;
+	}
+
+	/**
+	 * Finds the first live node holding an element equal to target
+	 * @param target element to look for
+	 * @return matching node, or null if there is none
+	 */
+	private Node<T> find(T target) {
+		if(target == null) {
+			return null;
+		}
+		for(Node<T> node = succ(head); node != null; node = succ(node)) {
+			T item = node.item;
+			if(item != null && item.equals(target)) {
+				return node;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds the live node at index, counting while walking
+	 * @param index index to find
+	 * @return node that was at index when reached
+	 */
+	private Node<T> nodeAt(int index) {
+		if(index < 0) {
+			throw new IndexOutOfBoundsException();
+		}
+		Node<T> node = succ(head);
+		for(int i = 0; i < index && node != null; i++) {
+			node = succ(node);
+		}
+		if(node == null) {
+			throw new IndexOutOfBoundsException();
+		}
+		return node;
+	}
+
+	/**
+	 * Node of an IUConcurrentLinkedList. A marker is a node with no item
+	 * that follows a removed node and stops anything being linked after it.
+	 */
+	private static class Node<T> {
+		private static final VarHandle ITEM;
+		private static final VarHandle NEXT;
+		static {
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				ITEM = lookup.findVarHandle(Node.class, "item", Object.class);
+				NEXT = lookup.findVarHandle(Node.class, "next", Node.class);
+			} catch (ReflectiveOperationException e) {
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+
+		private volatile T item; //null once removed
+		private volatile Node<T> next;
+		private volatile Node<T> prev; //hint only
+		private final boolean marker;
+
+		public Node(T item) {
+			this.item = item;
+			marker = false;
+		}
+
+		/**
+		 * Creates a marker for a removed node
+		 * @param next node the removed node was followed by
+		 * @param removed node being marked, kept as prev for walking back
+		 */
+		public Node(Node<T> next, Node<T> removed) {
+			this.next = next;
+			prev = removed;
+			marker = true;
+		}
+
+		public boolean casItem(T expected, T item) {
+			return ITEM.compareAndSet(this, expected, item);
+		}
+
+		public boolean casNext(Node<T> expected, Node<T> next) {
+			return NEXT.compareAndSet(this, expected, next);
+		}
+	}
+
+	/**
+	 * Weakly consistent Iterator for IUConcurrentLinkedList.
+	 * It holds on to the next element as well as its node, so
+	 * hasNext and next always agree.
+	 * @author seema
+	 *
+	 */
+	private class CLLIterator implements Iterator<T> {
+		private Node<T> nextNode;
+		private T nextItem;
+		private Node<T> lastReturnedNode;
+
+		public CLLIterator() {
+			advance(head);
+		}
+
+		/**
+		 * Moves nextNode to the first live node after node
+		 * @param node node to start after
+		 */
+		private void advance(Node<T> node) {
+			while(true) {
+				nextNode = succ(node);
+				if(nextNode == null) {
+					nextItem = null;
+					return;
+				}
+				nextItem = nextNode.item;
+				if(nextItem != null) {
+					return;
+				}
+				node = nextNode;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return (nextNode != null);
+		}
+
+		@Override
+		public T next() {
+			if(nextNode == null) {
+				throw new NoSuchElementException();
+			}
+			T retVal = nextItem;
+			lastReturnedNode = nextNode;
+			advance(nextNode);
+			return retVal;
+		}
+
+		/**
+		 * Removes the node of the last element returned, if no other
+		 * thread has removed it already
+		 */
+		@Override
+		public void remove() {
+			if(lastReturnedNode == null) {
+				throw new IllegalStateException();
+			}
+			T item = lastReturnedNode.item;
+			if(item != null && lastReturnedNode.casItem(item, null)) {
+				unlink(lastReturnedNode);
+				size.decrement();
+			}
+			lastReturnedNode = null;
+		}
+	}
+}
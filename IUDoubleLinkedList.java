@@ -1,7 +1,17 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
 
 
 /**
@@ -17,11 +27,88 @@ public class IUDoubleLinkedList<T> implements IndexedUnsortedList<T> {
 	private LinearNode<T> tail;
 	private int size;
 	private int modCount; //useful for iterator class
+	private LinearNode<T> finger; //last node reached by index
+	private int fingerIndex;
+	private int fingerModCount; //finger is only trusted while this matches modCount
+	private SkipListIndex<T> skipIndex; //null unless indexed access was asked for
+	private static final int SKIP_DISTANCE = 16; //walks longer than this use skipIndex
+	private static final int PARALLEL_RUN = 1 << 13; //parallelSort sorts runs this long on one thread
+	private static final int RENDER_CHUNK = 1 << 13; //characters renderTo gathers before writing
+	/** Most elements toString shows, half from each end */
+	public static final int TO_STRING_LIMIT = 1000;
+	private HashNodeIndex<T> hashIndex; //null unless lookup by value was asked for
+	private final SnapshotVersions<T> versions; //null unless snapshot iterators were asked for
+	private final SnapshotVersions.VersionedNode<T> front; //records head for snapshot iterators
+	private ChangeFeed<T> feed; //null until someone asks for changes
 	
 	public IUDoubleLinkedList() {
+		this(false, false);
+	}
+	
+	/**
+	 * Creates an empty list, optionally with a skip-list index layered over
+	 * its nodes. The index makes get, set, add(int, T) and remove(int) cost
+	 * O(log n) instead of O(n), for about one extra index entry per three
+	 * nodes, so it is only worth it for long lists.
+	 * @param skipIndexed true to maintain the skip-list index
+	 */
+	public IUDoubleLinkedList(boolean skipIndexed) {
+		this(skipIndexed, false);
+	}
+	
+	/**
+	 * Creates an empty list, optionally with a skip-list index layered over
+	 * its nodes. The index makes get, set, add(int, T) and remove(int) cost
+	 * O(log n) instead of O(n), for about one extra index entry per three
+	 * nodes, so it is only worth it for long lists.
+	 * 
+	 * With hashIndexed, elements are also kept in a hash multimap from
+	 * element to node, making contains O(1) expected, and remove(T) and
+	 * addAfter O(1) expected plus O(log k) for an element held k times.
+	 * indexOf then finds the node that way and its position by
+	 * walking to the nearer end, or in O(log n) when skipIndexed as well.
+	 * Elements must not change their hashCode while in a hash-indexed list.
+	 * @param skipIndexed true to maintain the skip-list index
+	 * @param hashIndexed true to maintain the element to node index
+	 */
+	public IUDoubleLinkedList(boolean skipIndexed, boolean hashIndexed) {
+		this(skipIndexed, hashIndexed, false);
+	}
+	
+	/**
+	 * Creates an empty list with the optional indexes described above,
+	 * and optionally in snapshot mode.
+	 * 
+	 * In snapshot mode iterator() returns an iterator over the list as it
+	 * was when the iterator was created, which can run on another thread
+	 * while one writer keeps changing the list. It never throws
+	 * ConcurrentModificationException and does not support remove, and
+	 * spliterator(), stream() and forEach() are built on it. Nodes carry the version
+	 * history such iterators need, which costs an object per changed node
+	 * per change, and unlinked nodes are kept until no iterator can still
+	 * reach them. listIterator() stays fail-fast and single-threaded.
+	 * Lists appended to one another must have been split from one another.
+	 * @param skipIndexed true to maintain the skip-list index
+	 * @param hashIndexed true to maintain the element to node index
+	 * @param snapshots true for snapshot iterators
+	 */
+	public IUDoubleLinkedList(boolean skipIndexed, boolean hashIndexed, boolean snapshots) {
+		this(skipIndexed, hashIndexed, snapshots ? new SnapshotVersions<T>() : null);
+	}
+	
+	private IUDoubleLinkedList(boolean skipIndexed, boolean hashIndexed, SnapshotVersions<T> versions) {
 		head = tail = null;
 		size = 0;
 		modCount = 0;
+		finger = null;
+		if(skipIndexed) {
+			skipIndex = new SkipListIndex<T>();
+		}
+		if(hashIndexed) {
+			hashIndex = new HashNodeIndex<T>();
+		}
+		this.versions = versions;
+		front = (versions == null) ? null : versions.newFront();
 	}
 	
 	@Override
@@ -32,16 +119,7 @@ public class IUDoubleLinkedList<T> implements IndexedUnsortedList<T> {
 
 	@Override
 	public void addToRear(T element) {
-		LinearNode<T> newNode = new LinearNode<T>(element);
-		newNode.setPrevious(tail);
-		if(isEmpty()) {
-			head = newNode;
-		} else {
-			tail.setNext(newNode);
-		}
-		tail = newNode;
-		size++;
-		modCount++; //incremented each time the list is modified
+		linkBefore(newNode(element), null, size);
 	}
 
 	@Override
@@ -51,17 +129,22 @@ public class IUDoubleLinkedList<T> implements IndexedUnsortedList<T> {
 
 	@Override
 	public void addAfter(T element, T target) {
-		ListIterator<T> lit = listIterator();
-		boolean foundIt = false;
-		while(lit.hasNext() && !foundIt) { //loop ends if element is found in list
-			if(lit.next().equals(target)) {
-				foundIt = true;
+		LinearNode<T> current;
+		int index = -1; //unknown when found through hashIndex
+		if(hashIndex != null) {
+			current = hashIndex.first(target);
+		} else {
+			current = head;
+			index = 0;
+			while(current != null && !current.getElement().equals(target)) { //loop ends if target is found in list
+				current = current.getNext();
+				index++;
 			}
 		}
-		if(!foundIt) { //element doesn't exist in the list
+		if(current == null) { //target doesn't exist in the list
 			throw new NoSuchElementException();
 		}
-		lit.add(element);
+		linkBefore(newNode(element), current.getNext(), (index < 0) ? -1 : index + 1);
 	}
 
 	@Override
@@ -87,46 +170,29 @@ public class IUDoubleLinkedList<T> implements IndexedUnsortedList<T> {
 			throw new NoSuchElementException();
 		}
 		T retVal = tail.getElement();
-		if(head == tail) {
-			head = tail = null;
-		} else {
-			tail = tail.getPrevious();
-			tail.setNext(null);
-		}
-		size--; //incremented/decremented based on how list is being modified
-		modCount++;
+		unlink(tail, size - 1);
 		return retVal;
 	}
 
 	@Override
 	public T remove(T element) {
-		if(isEmpty()){
-			throw new NoSuchElementException();
-		}
-		LinearNode<T> current = head;
-		T retVal = null;
-		
-		while(current != null && !current.getElement().equals(element)){
-			current = current.getNext();
+		LinearNode<T> current;
+		int index = -1; //unknown when found through hashIndex
+		if(hashIndex != null) {
+			current = hashIndex.first(element);
+		} else {
+			current = head;
+			index = 0;
+			while(current != null && !current.getElement().equals(element)) {
+				current = current.getNext();
+				index++;
+			}
 		}
-		
-		//scenarios for where the element is
-		if(current == null){
+		if(current == null) {
 			throw new NoSuchElementException();
-		} else if(current == head){
-			retVal = head.getElement();
-			head = head.getNext();
-		} else if(current == tail){
-			retVal = tail.getElement();
-			tail = tail.getPrevious();
-		} else {
-			retVal = current.getElement();
-			current.getPrevious().setNext(current.getNext());
-			current.getPrevious().setPrevious(current.getPrevious());
 		}
-		modCount++;
-		size--;
-		return retVal;
+		unlink(current, index);
+		return current.getElement();
 	}
 
 	@Override
@@ -145,17 +211,9 @@ public class IUDoubleLinkedList<T> implements IndexedUnsortedList<T> {
 		if((index < 0 || index >= size || isEmpty())){
 			throw new IndexOutOfBoundsException();
 		}
-		
-		if(index == 0){
-			head.setElement(element);
-		} else {
-			LinearNode<T> current = head;
-			for (int i = 0; i < index; i++) {
-				current = current.getNext();
-			}
-			current.setElement(element);
-		}
+		replace(nodeAt(index), index, element);
 		modCount++;
+		fingerModCount = modCount; //set() doesn't move any nodes
 	}
 
 	@Override
@@ -163,22 +221,731 @@ public class IUDoubleLinkedList<T> implements IndexedUnsortedList<T> {
 		if((index < 0 || index >= size)){
 			throw new IndexOutOfBoundsException();
 		}
-		
-		T retVal = null;
-		if(index == 0){
-			retVal = head.getElement();
+		return nodeAt(index).getElement();
+	}
+
+	/**
+	 * Returns the element at index like get, but without moving the finger,
+	 * for readers that must not write to the list. It walks at most half
+	 * the list, so it ends even if a writer is changing the chain under
+	 * it. Its answer is then meaningless and the caller has to discard it.
+	 * @param index index of element
+	 * @return element at index
+	 * @throws IndexOutOfBoundsException if index is out of range
+	 */
+	T peek(int index) {
+		int count = size;
+		if(index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException();
+		}
+		LinearNode<T> current;
+		if(skipIndex != null && index > SKIP_DISTANCE && count - 1 - index > SKIP_DISTANCE) {
+			current = skipIndex.find(index, head);
+		} else if(index < count / 2) {
+			current = head;
+			for(int i = 0; i < index; i++) {
+				current = current.getNext();
+			}
+		} else {
+			current = tail;
+			for(int i = count - 1; i > index; i--) {
+				current = current.getPrevious();
+			}
+		}
+		return current.getElement();
+	}
+
+	/**
+	 * Returns the index of element like indexOf, but without moving the
+	 * finger or consulting the hash index, for readers that must not write
+	 * to the list. It walks at most size nodes, for the same reason as peek.
+	 * @param element element to look for
+	 * @return index of the first equal element, or -1
+	 */
+	int scan(T element) {
+		int count = size;
+		LinearNode<T> current = head;
+		for(int index = 0; index < count && current != null; index++) {
+			if(current.getElement().equals(element)) {
+				return index;
+			}
+			current = current.getNext();
+		}
+		return -1;
+	}
+
+	/**
+	 * Moves every node of other to the end of this list, leaving other
+	 * empty. Only the boundary links are touched, so this is O(1), or
+	 * O(log n) with a skip-list index. With a hash index it is O(k) in
+	 * the number of nodes moved, which all have to be added to it.
+	 * @param other list to empty into this one
+	 * @throws IllegalArgumentException if other is this list, this list
+	 *  is hash-indexed and other is not, or the two lists were not split
+	 *  from one another in snapshot mode
+	 */
+	public void appendAll(IUDoubleLinkedList<T> other) {
+		insertAll(size, other);
+	}
+
+	/**
+	 * Moves every node of other into this list so the first of them ends
+	 * up at index, leaving other empty. Costs the seek to index plus what
+	 * appendAll costs.
+	 * @param index index for the first moved node, 0 <= index <= size
+	 * @param other list to empty into this one
+	 * @throws IndexOutOfBoundsException if index is out of range
+	 * @throws IllegalArgumentException if other is this list, this list
+	 *  is hash-indexed and other is not, or the two lists were not split
+	 *  from one another in snapshot mode
+	 */
+	public void insertAll(int index, IUDoubleLinkedList<T> other) {
+		if(index < 0 || index > size) {
+			throw new IndexOutOfBoundsException();
+		}
+		if(other == this || (hashIndex != null && other.hashIndex == null)) {
+			throw new IllegalArgumentException(); //other's nodes would have no order labels
+		}
+		if(other.versions != versions) {
+			throw new IllegalArgumentException(); //other's node histories are on another clock
+		}
+		if(other.isEmpty()) {
+			return;
+		}
+		LinearNode<T> first = other.head;
+		LinearNode<T> last = other.tail;
+		int count = other.size;
+		SkipListIndex<T> otherSkipIndex = other.skipIndex;
+		other.clear();
+		LinearNode<T> successor = (index == size) ? null : nodeAt(index);
+		LinearNode<T> predecessor = (successor == null) ? tail : successor.getPrevious();
+		first.setPrevious(predecessor);
+		last.setNext(successor);
+		if(predecessor == null) {
+			head = first;
 		} else {
-			LinearNode<T> current = head;			
-			for (int i = 0; i < index; i++) {
+			predecessor.setNext(first);
+		}
+		if(successor == null) {
+			tail = last;
+		} else {
+			successor.setPrevious(last);
+		}
+		versioned(last);
+		versioned(predecessor);
+		if(hashIndex != null) {
+			hashIndex.linked(first, last);
+		}
+		if(skipIndex != null) {
+			if(otherSkipIndex == null) {
+				otherSkipIndex = new SkipListIndex<T>();
+				otherSkipIndex.rebuild(first, count);
+			}
+			SkipListIndex<T> rest = skipIndex.split(index);
+			skipIndex.append(otherSkipIndex, index);
+			skipIndex.append(rest, index + count);
+		}
+		size += count;
+		modCount++;
+		published();
+		if(feeding()) {
+			LinearNode<T> current = first;
+			for(int i = 0; i < count; i++) {
+				feed.inserted(index + i, current.getElement());
 				current = current.getNext();
 			}
-			retVal = current.getElement();
 		}
-		return retVal;
+	}
+
+	/**
+	 * Moves the nodes from index to the end of this list into a new list,
+	 * which keeps the same optional indexes. Costs the seek to index, plus
+	 * O(log n) with a skip-list index, plus O(k) in the smaller of the two
+	 * parts with a hash index.
+	 * @param index index of the first node to move, 0 <= index <= size
+	 * @return new list holding the moved nodes
+	 * @throws IndexOutOfBoundsException if index is out of range
+	 */
+	public IUDoubleLinkedList<T> splitAt(int index) {
+		if(index < 0 || index > size) {
+			throw new IndexOutOfBoundsException();
+		}
+		IUDoubleLinkedList<T> rest = new IUDoubleLinkedList<T>(skipIndex != null, hashIndex != null, versions);
+		if(index == size) {
+			return rest;
+		}
+		LinearNode<T> first = nodeAt(index);
+		LinearNode<T> last = first.getPrevious();
+		if(feeding()) {
+			for(LinearNode<T> current = first; current != null; current = current.getNext()) {
+				feed.removed(index, current.getElement());
+			}
+		}
+		if(hashIndex != null) {
+			if(size - index <= index) {
+				hashIndex.moveTo(rest.hashIndex, first, tail);
+			} else { //cheaper to hand over the whole index and take back the front
+				HashNodeIndex<T> front = rest.hashIndex;
+				rest.hashIndex = hashIndex;
+				hashIndex = front;
+				if(last != null) {
+					rest.hashIndex.moveTo(hashIndex, head, last);
+				}
+			}
+		}
+		if(skipIndex != null) {
+			rest.skipIndex = skipIndex.split(index);
+		}
+		rest.head = first;
+		rest.tail = tail;
+		rest.size = size - index;
+		first.setPrevious(null);
+		if(last == null) {
+			head = null;
+		} else {
+			last.setNext(null);
+		}
+		tail = last;
+		size = index;
+		modCount++;
+		rest.versioned(null);
+		versioned(last);
+		published();
+		return rest;
+	}
+
+	/**
+	 * Writes every element to channel in the chunked binary format
+	 * readFrom loads, walking the chain once. Elements are encoded into
+	 * blocks of about 64 KB that are written as they fill, so memory use
+	 * does not grow with the list.
+	 * @param channel blocking channel to write to, left open
+	 * @param codec codec for the elements
+	 * @param compress true to compress each block that it makes smaller
+	 * @throws IOException if the channel fails
+	 */
+	public void writeTo(WritableByteChannel channel, ElementCodec<T> codec, boolean compress) throws IOException {
+		BinarySnapshot.Writer<T> writer = new BinarySnapshot.Writer<T>(channel, codec, compress, size);
+		for(LinearNode<T> current = head; current != null; current = current.getNext()) {
+			writer.add(current.getElement());
+		}
+		writer.finish();
+	}
+
+	/**
+	 * Appends the elements writeTo wrote to the rear of this list. The
+	 * nodes are chained in one pass as they are decoded, away from the
+	 * list, then moved in as by appendAll, so the list only changes once
+	 * the whole snapshot has been read.
+	 * @param channel blocking channel to read from, left open
+	 * @param codec codec the elements were written with
+	 * @throws IOException if the channel fails or does not hold a valid
+	 *  snapshot, in which case the list is unchanged
+	 */
+	public void readFrom(ReadableByteChannel channel, ElementCodec<T> codec) throws IOException {
+		BinarySnapshot.Reader<T> reader = new BinarySnapshot.Reader<T>(channel, codec);
+		IUDoubleLinkedList<T> loaded = new IUDoubleLinkedList<T>(false, hashIndex != null, versions); //insertAll builds the skip index in one go
+		LinearNode<T> last = null;
+		for(int i = reader.size(); i > 0; i--) {
+			LinearNode<T> node = newNode(reader.next());
+			node.setPrevious(last);
+			if(last == null) {
+				loaded.head = node;
+			} else {
+				last.setNext(node);
+				loaded.versioned(last);
+			}
+			last = node;
+		}
+		reader.finish();
+		loaded.tail = last;
+		loaded.size = reader.size();
+		insertAll(size, loaded);
+	}
+
+	/**
+	 * Sorts the list with a stable bottom-up merge sort that relinks the
+	 * existing nodes, in O(n log n) time and O(1) extra space. The
+	 * optional indexes are rebuilt afterwards in O(n). If the comparator
+	 * throws, the list is left as it was.
+	 * @param comparator order to sort by, or null for the elements'
+	 *  natural order
+	 * @throws ClassCastException if comparator is null and the elements
+	 *  are not mutually Comparable
+	 */
+	public void sort(Comparator<? super T> comparator) {
+		sortNodes(comparator, false);
+	}
+
+	/**
+	 * Sorts the list like sort, but splits the chain into runs that are
+	 * sorted on the common ForkJoin pool and merged as they finish. Only
+	 * lists of more than a few thousand elements are split at all.
+	 * @param comparator order to sort by, or null for the elements'
+	 *  natural order, called from several threads at once
+	 * @throws ClassCastException if comparator is null and the elements
+	 *  are not mutually Comparable
+	 */
+	public void parallelSort(Comparator<? super T> comparator) {
+		sortNodes(comparator, true);
+	}
+
+	/**
+	 * Relinks the nodes into sorted order, then brings everything that
+	 * depends on the order up to date. Only next links change while
+	 * sorting, so the previous links still hold the old order and can
+	 * put it back if the comparator throws.
+	 * @param comparator order to sort by, or null for natural order
+	 * @param parallel true to sort runs on the common pool
+	 */
+	@SuppressWarnings("unchecked")
+	private void sortNodes(Comparator<? super T> comparator, boolean parallel) {
+		if(comparator == null) {
+			comparator = (Comparator<? super T>) Comparator.naturalOrder();
+		}
+		if(size < 2) {
+			return;
+		}
+		LinearNode<T> first;
+		try {
+			if(parallel && size > PARALLEL_RUN) {
+				first = ForkJoinPool.commonPool().invoke(new SortTask<T>(head, size, comparator));
+			} else {
+				first = mergeSort(head, size, comparator);
+			}
+		} catch(RuntimeException e) {
+			tail.setNext(null);
+			for(LinearNode<T> current = tail; current != head; current = current.getPrevious()) {
+				current.getPrevious().setNext(current);
+			}
+			throw e;
+		}
+		if(feeding()) { //the old order is still there from tail back
+			int index = size;
+			for(LinearNode<T> current = tail; current != null; current = current.getPrevious()) {
+				feed.removed(--index, current.getElement());
+			}
+		}
+		LinearNode<T> previous = null;
+		for(LinearNode<T> current = first; current != null; current = current.getNext()) {
+			current.setPrevious(previous);
+			versioned(current);
+			previous = current;
+		}
+		head = first;
+		tail = previous;
+		modCount++;
+		if(hashIndex != null) {
+			hashIndex = new HashNodeIndex<T>();
+			hashIndex.linked(head, tail); //labels the nodes in their new order
+		}
+		if(skipIndex != null) {
+			skipIndex.rebuild(head, size);
+		}
+		versioned(null);
+		published();
+		if(feeding()) {
+			int index = 0;
+			for(LinearNode<T> current = head; current != null; current = current.getNext()) {
+				feed.inserted(index++, current.getElement());
+			}
+		}
+	}
+
+	/**
+	 * Sorts count nodes from first by their next links with a bottom-up
+	 * merge sort, leaving their previous links alone. Runs are merged as
+	 * soon as there are two of the same length, like carries in a binary
+	 * counter, so each merge works on nodes that were just visited.
+	 * @param first first node of a chain of count nodes ending in null
+	 * @param count number of nodes
+	 * @param comparator order to sort by
+	 * @return first node of the sorted chain, which ends in null
+	 */
+	private static <T> LinearNode<T> mergeSort(LinearNode<T> first, int count, Comparator<? super T> comparator) {
+		@SuppressWarnings("unchecked")
+		LinearNode<T>[] runs = (LinearNode<T>[]) new LinearNode<?>[Integer.SIZE]; //runs[i] is null or 2^i sorted nodes
+		LinearNode<T> current = first;
+		for(int i = 0; i < count; i++) {
+			LinearNode<T> run = current;
+			current = current.getNext();
+			run.setNext(null);
+			int level = 0;
+			while(runs[level] != null) {
+				run = merge(runs[level], run, comparator);
+				runs[level++] = null;
+			}
+			runs[level] = run;
+		}
+		LinearNode<T> sorted = null;
+		for(LinearNode<T> run : runs) { //longer runs hold earlier nodes
+			if(run != null) {
+				sorted = (sorted == null) ? run : merge(run, sorted, comparator);
+			}
+		}
+		return sorted;
+	}
+
+	/**
+	 * Ends a chain after count nodes
+	 * @param first first node of a chain of more than count nodes
+	 * @param count number of nodes to keep, at least 1
+	 * @return rest of the chain after them
+	 */
+	private static <T> LinearNode<T> cut(LinearNode<T> first, int count) {
+		for(int i = 1; i < count; i++) {
+			first = first.getNext();
+		}
+		LinearNode<T> rest = first.getNext();
+		first.setNext(null);
+		return rest;
+	}
+
+	/**
+	 * Merges two sorted chains, taking from left on ties so equal
+	 * elements keep their order
+	 * @param left sorted chain ending in null, holding the earlier nodes
+	 * @param right sorted chain ending in null
+	 * @param comparator order to merge by
+	 * @return first node of the merged chain
+	 */
+	private static <T> LinearNode<T> merge(LinearNode<T> left, LinearNode<T> right, Comparator<? super T> comparator) {
+		LinearNode<T> first = null;
+		LinearNode<T> last = null;
+		while(left != null && right != null) {
+			LinearNode<T> next;
+			if(comparator.compare(right.getElement(), left.getElement()) < 0) {
+				next = right;
+				right = right.getNext();
+			} else {
+				next = left;
+				left = left.getNext();
+			}
+			if(last == null) {
+				first = next;
+			} else {
+				last.setNext(next);
+			}
+			last = next;
+		}
+		last.setNext((left != null) ? left : right);
+		return first;
+	}
+
+	/**
+	 * Sorts a chain by sorting its halves in parallel and merging them,
+	 * down to runs of PARALLEL_RUN nodes sorted with mergeSort
+	 */
+	private static class SortTask<T> extends RecursiveTask<LinearNode<T>> {
+		private static final long serialVersionUID = 1L;
+		private final LinearNode<T> first;
+		private final int count;
+		private final Comparator<? super T> comparator;
+
+		public SortTask(LinearNode<T> first, int count, Comparator<? super T> comparator) {
+			this.first = first;
+			this.count = count;
+			this.comparator = comparator;
+		}
+
+		@Override
+		protected LinearNode<T> compute() {
+			if(count <= PARALLEL_RUN) {
+				return mergeSort(first, count, comparator);
+			}
+			int half = count / 2;
+			LinearNode<T> second = cut(first, half);
+			SortTask<T> left = new SortTask<T>(first, half, comparator);
+			left.fork();
+			LinearNode<T> right;
+			try {
+				right = new SortTask<T>(second, count - half, comparator).compute();
+			} catch(RuntimeException e) {
+				left.quietlyJoin(); //nothing may still be relinking when the caller restores the chain
+				throw e;
+			}
+			return merge(left.join(), right, comparator);
+		}
+	}
+
+	/**
+	 * Drops every node, and the optional indexes with them
+	 */
+	private void clear() {
+		if(feeding()) {
+			for(LinearNode<T> current = head; current != null; current = current.getNext()) {
+				feed.removed(0, current.getElement());
+			}
+		}
+		head = tail = null;
+		size = 0;
+		modCount++;
+		finger = null;
+		if(skipIndex != null) {
+			skipIndex = new SkipListIndex<T>();
+		}
+		if(hashIndex != null) {
+			hashIndex = new HashNodeIndex<T>();
+		}
+		versioned(null);
+		published();
+	}
+
+	/**
+	 * Finds the node at the given index, walking from whichever of head,
+	 * tail or the finger is closest, and leaves the finger on that node.
+	 * @param index valid index (0 <= index < size)
+	 * @return node at index
+	 */
+	private LinearNode<T> nodeAt(int index) {
+		LinearNode<T> current = head;
+		int position = 0;
+		if(size - 1 - index < index) {
+			current = tail;
+			position = size - 1;
+		}
+		if(finger != null && fingerModCount == modCount
+				&& Math.abs(index - fingerIndex) < Math.abs(index - position)) {
+			current = finger;
+			position = fingerIndex;
+		}
+		if(skipIndex != null && Math.abs(index - position) > SKIP_DISTANCE) {
+			current = skipIndex.find(index, head);
+			position = index;
+		}
+		while(position < index) {
+			current = current.getNext();
+			position++;
+		}
+		while(position > index) {
+			current = current.getPrevious();
+			position--;
+		}
+		setFinger(current, index);
+		return current;
+	}
+
+	/**
+	 * Remembers node as the finger for the current modCount
+	 * @param node node to remember, or null to drop the finger
+	 * @param index index of node
+	 */
+	private void setFinger(LinearNode<T> node, int index) {
+		finger = node;
+		fingerIndex = index;
+		fingerModCount = modCount;
+	}
+
+	/**
+	 * Creates a node of the kind the optional index structures expect
+	 * @param element element for the node
+	 * @return new unlinked node
+	 */
+	private LinearNode<T> newNode(T element) {
+		if(versions != null) {
+			return new SnapshotVersions.VersionedNode<T>(element); //an OrderedNode as well
+		}
+		if(hashIndex != null) {
+			return new HashNodeIndex.OrderedNode<T>(element);
+		}
+		return new LinearNode<T>(element);
+	}
+
+	/**
+	 * Links newNode into the chain just before successor
+	 * @param newNode node to link
+	 * @param successor node to link in front of, or null to link at the rear
+	 * @param index index newNode will occupy, or -1 if not known
+	 */
+	private void linkBefore(LinearNode<T> newNode, LinearNode<T> successor, int index) {
+		LinearNode<T> predecessor = (successor == null) ? tail : successor.getPrevious();
+		newNode.setPrevious(predecessor);
+		newNode.setNext(successor);
+		if(predecessor == null) {
+			head = newNode;
+		} else {
+			predecessor.setNext(newNode);
+		}
+		if(successor == null) {
+			tail = newNode;
+		} else {
+			successor.setPrevious(newNode);
+		}
+		size++;
+		modCount++; //incremented each time the list is modified
+		versioned(newNode);
+		versioned(predecessor);
+		linked(newNode, index);
+		published();
+	}
+
+	/**
+	 * Unlinks node from the chain. Its own links are left alone
+	 * so an iterator standing on it can still step off.
+	 * @param node node to unlink
+	 * @param index index node occupies, or -1 if not known
+	 */
+	private void unlink(LinearNode<T> node, int index) {
+		unlinked(node, index);
+		if(node == head) {
+			head = node.getNext();
+		} else {
+			node.getPrevious().setNext(node.getNext());
+		}
+		if(node == tail) {
+			tail = node.getPrevious();
+		} else {
+			node.getNext().setPrevious(node.getPrevious());
+		}
+		size--; //incremented/decremented based on how list is being modified
+		modCount++;
+		versioned(node.getPrevious()); //null, and so head, if node was head
+		published();
+	}
+
+	/**
+	 * Stores element in node, keeping hashIndex in step
+	 * @param node node to update
+	 * @param index index of node
+	 * @param element new element
+	 */
+	private void replace(LinearNode<T> node, int index, T element) {
+		T oldElement = node.getElement();
+		node.setElement(element);
+		if(hashIndex != null) {
+			hashIndex.changed(node, oldElement);
+		}
+		if(feeding()) {
+			feed.set(index, element);
+		}
+		versioned(node);
+		published();
+	}
+
+	/**
+	 * Records node's next node and element for snapshot iterators, if
+	 * this list hands them out
+	 * @param node node that changed, or null if head changed
+	 */
+	private void versioned(LinearNode<T> node) {
+		if(versions == null) {
+			return;
+		}
+		if(node == null) {
+			versions.changed(front, head, null);
+		} else {
+			versions.changed((SnapshotVersions.VersionedNode<T>) node, node.getNext(), node.getElement());
+		}
+	}
+
+	/**
+	 * Lets new snapshot iterators see the changes recorded so far
+	 */
+	private void published() {
+		if(versions != null) {
+			versions.publish();
+		}
+	}
+
+	/**
+	 * Brings the optional index structures up to date after a node
+	 * has been linked into the chain
+	 * @param node node that was linked
+	 * @param index index node now occupies, or -1 if not known
+	 */
+	private void linked(LinearNode<T> node, int index) {
+		if(hashIndex != null) {
+			hashIndex.linked(node); //labels node, which skipIndex may need
+		}
+		if(index < 0 && (skipIndex != null || feeding())) {
+			index = positionOf(node);
+		}
+		if(skipIndex != null) {
+			skipIndex.inserted(node, index);
+		}
+		if(feeding()) {
+			feed.inserted(index, node.getElement());
+		}
+	}
+
+	/**
+	 * Brings the optional index structures up to date for a node
+	 * that is being unlinked from the chain
+	 * @param node node being unlinked
+	 * @param index index node occupied, or -1 if not known
+	 */
+	private void unlinked(LinearNode<T> node, int index) {
+		if(index < 0 && (skipIndex != null || feeding())) {
+			index = positionOf(node);
+		}
+		if(skipIndex != null) {
+			skipIndex.removed(index);
+		}
+		if(hashIndex != null) {
+			hashIndex.unlinked(node);
+		}
+		if(feeding()) {
+			feed.removed(index, node.getElement());
+		}
+	}
+
+	/**
+	 * Returns true if changes have to be published
+	 * @return true if the change feed has subscribers
+	 */
+	private boolean feeding() {
+		return (feed != null && feed.isActive());
+	}
+
+	/**
+	 * Returns the feed of changes made to this list from now on, for
+	 * mirrors that would otherwise re-read it. Subscribe from the thread
+	 * that changes the list, right after copying it, so the copy and the
+	 * first change line up. Changes are delivered on the common pool.
+	 * @return change feed of this list
+	 */
+	public ChangeFeed<T> changes() {
+		if(feed == null) {
+			feed = new ChangeFeed<T>(ForkJoinPool.commonPool());
+		}
+		return feed;
+	}
+
+	/**
+	 * Finds the index of a node of a hash-indexed list, through skipIndex
+	 * if there is one, otherwise by walking both ways until an end is reached
+	 * @param node node in the chain
+	 * @return index of node
+	 */
+	private int positionOf(LinearNode<T> node) {
+		if(skipIndex != null) {
+			return skipIndex.indexOf(node, head);
+		}
+		LinearNode<T> back = node;
+		LinearNode<T> forward = node;
+		int steps = 0;
+		while(back.getPrevious() != null && forward.getNext() != null) {
+			back = back.getPrevious();
+			forward = forward.getNext();
+			steps++;
+		}
+		if(back.getPrevious() == null) {
+			return steps;
+		}
+		return size - 1 - steps;
 	}
 
 	@Override
 	public int indexOf(T element) {
+		if(hashIndex != null) {
+			LinearNode<T> node = hashIndex.first(element);
+			if(node == null) {
+				return -1;
+			}
+			int index = positionOf(node);
+			setFinger(node, index);
+			return index;
+		}
 		int retVal = 0;
 		if(isEmpty()){
 			retVal = -1;
@@ -216,6 +983,9 @@ public class IUDoubleLinkedList<T> implements IndexedUnsortedList<T> {
 
 	@Override
 	public boolean contains(T target) {
+		if(hashIndex != null) {
+			return hashIndex.contains(target);
+		}
 		LinearNode<T> current = head;
 		
 		while(current != null && !current.getElement().equals(target)){
@@ -225,23 +995,79 @@ public class IUDoubleLinkedList<T> implements IndexedUnsortedList<T> {
 	}
 	
 	/**
-	 * Appends proper syntax for given list
+	 * Appends proper syntax for given list, with at most TO_STRING_LIMIT
+	 * elements as renderTo shows them
 	 */
 	public String toString() {
 		StringBuilder str = new StringBuilder();
-		str.append("[");
-		Iterator<T> it = iterator();
-		while(it.hasNext()){
-			str.append(it.next().toString());
-			str.append(", ");
+		try {
+			renderTo(str, TO_STRING_LIMIT);
+		} catch(IOException e) { //StringBuilder never throws
+			throw new UncheckedIOException(e);
 		}
-		if(!isEmpty()) {
-			str.delete(str.length()-2, str.length());
-		}
-		str.append("]");
 		return str.toString();
 	}
 
+	/**
+	 * Writes the list to out in the form toString uses, such as
+	 * [1, 2, 3]. A list of more than maxElements elements is shown by its
+	 * first and last maxElements / 2 elements around a count of the ones
+	 * left out, such as [1, 2, ... 96 more ..., 99, 100]. Output is passed
+	 * on in chunks of a few thousand characters, so rendering a long list
+	 * to a Writer never holds more than that.
+	 * @param out where to write the list
+	 * @param maxElements most elements to write, Integer.MAX_VALUE for all
+	 * @throws IOException if out throws
+	 * @throws IllegalArgumentException if maxElements is negative
+	 */
+	public void renderTo(Appendable out, int maxElements) throws IOException {
+		if(maxElements < 0) {
+			throw new IllegalArgumentException();
+		}
+		int front = size; //elements written from the head
+		LinearNode<T> back = null; //first of the elements written from the tail
+		if(size > maxElements) {
+			front = maxElements - maxElements / 2;
+			back = tail;
+			for(int i = 1; i < maxElements / 2; i++) {
+				back = back.getPrevious();
+			}
+		}
+		StringBuilder chunk = new StringBuilder(RENDER_CHUNK + 64);
+		chunk.append('[');
+		LinearNode<T> current = head;
+		for(int i = 0; i < front; i++) {
+			if(i > 0) {
+				chunk.append(", ");
+			}
+			chunk.append(current.getElement());
+			current = current.getNext();
+			flushChunk(out, chunk);
+		}
+		if(size > maxElements) {
+			chunk.append((front > 0) ? ", ... " : "... ").append(size - maxElements).append(" more ...");
+			for(current = (maxElements < 2) ? null : back; current != null; current = current.getNext()) {
+				chunk.append(", ").append(current.getElement());
+				flushChunk(out, chunk);
+			}
+		}
+		chunk.append(']');
+		out.append(chunk);
+	}
+
+	/**
+	 * Passes chunk on to out once it is full
+	 * @param out where the rendering goes
+	 * @param chunk characters not yet written
+	 * @throws IOException if out throws
+	 */
+	private static void flushChunk(Appendable out, StringBuilder chunk) throws IOException {
+		if(chunk.length() >= RENDER_CHUNK) {
+			out.append(chunk);
+			chunk.setLength(0);
+		}
+	}
+
 	@Override
 	public boolean isEmpty() {
 		return (head == null);
@@ -252,8 +1078,15 @@ public class IUDoubleLinkedList<T> implements IndexedUnsortedList<T> {
 		return size;
 	}
 
+	/**
+	 * Returns a fail-fast iterator, or in snapshot mode an iterator over
+	 * the list as it is now
+	 */
 	@Override
 	public Iterator<T> iterator() {
+		if(versions != null) {
+			return new SnapshotIterator();
+		}
 		return listIterator();
 	}
 
@@ -266,6 +1099,248 @@ public class IUDoubleLinkedList<T> implements IndexedUnsortedList<T> {
 	public ListIterator<T> listIterator(int startingIndex) {
 		return new DLLIterator(startingIndex);
 	}
+
+	/**
+	 * Performs action on each element in order, walking the nodes directly
+	 * instead of through an iterator. modCount is checked once, at the end,
+	 * so an action that changes the list may see odd elements before the
+	 * ConcurrentModificationException. In snapshot mode it walks a snapshot
+	 * like iterator() does, so it may run on any thread.
+	 * @param action action to perform on each element
+	 */
+	@Override
+	public void forEach(Consumer<? super T> action) {
+		if(action == null) {
+			throw new NullPointerException();
+		}
+		if(versions != null) {
+			SnapshotIterator snapshot = new SnapshotIterator();
+			while(snapshot.hasNext()) {
+				action.accept(snapshot.next());
+			}
+			return;
+		}
+		int expectedModCount = modCount;
+		LinearNode<T> current = head;
+		while(current != null) {
+			action.accept(current.getElement());
+			current = current.getNext();
+		}
+		if(expectedModCount != modCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+	
+	/**
+	 * Returns a forward-only cursor positioned at the front of the list.
+	 * Unlike an iterator, it can be reset and reused for any number of
+	 * traversals, so hot loops need not allocate one per pass.
+	 * @return new cursor over this list
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+	
+	/**
+	 * Reusable forward-only Iterator over an IUDoubleLinkedList.
+	 * next() is fail-fast like DLLIterator's, but hasNext() is a
+	 * plain null check.
+	 * @author seema
+	 *
+	 */
+	public class Cursor implements Iterator<T> {
+		private LinearNode<T> nextNode;
+		private int expectedModCount;
+		
+		private Cursor() {
+			reset();
+		}
+		
+		/**
+		 * Moves the cursor back to the front of the list, which may have
+		 * been modified since the last traversal
+		 */
+		public void reset() {
+			nextNode = head;
+			expectedModCount = modCount;
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return (nextNode != null);
+		}
+		
+		@Override
+		public T next() {
+			if(expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(nextNode == null) {
+				throw new NoSuchElementException();
+			}
+			T retVal = nextNode.getElement();
+			nextNode = nextNode.getNext();
+			return retVal;
+		}
+	}
+	
+	@Override
+	public Spliterator<T> spliterator() {
+		if(versions != null) {
+			return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED);
+		}
+		return new DLLSpliterator(head, tail, 0, size);
+	}
+	
+	/**
+	 * Spliterator for IUDoubleLinkedList over the nodes from first to last.
+	 * It splits in half by walking in from both ends of its range at once,
+	 * so the two chains of cache misses overlap, or in O(log n) through
+	 * skipIndex when the list has one.
+	 * @author seema
+	 *
+	 */
+	private class DLLSpliterator implements Spliterator<T> {
+		private LinearNode<T> nextNode;
+		private LinearNode<T> lastNode; //last node in range
+		private int nextIndex;
+		private int fence; //index after lastNode
+		private int expectedModCount;
+		
+		public DLLSpliterator(LinearNode<T> first, LinearNode<T> last, int firstIndex, int fence) {
+			nextNode = first;
+			lastNode = last;
+			nextIndex = firstIndex;
+			this.fence = fence;
+			expectedModCount = modCount;
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			if(action == null) {
+				throw new NullPointerException();
+			}
+			if(expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(nextIndex >= fence) {
+				return false;
+			}
+			T element = nextNode.getElement();
+			nextNode = nextNode.getNext();
+			nextIndex++;
+			action.accept(element);
+			return true;
+		}
+		
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			if(action == null) {
+				throw new NullPointerException();
+			}
+			if(expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			LinearNode<T> current = nextNode;
+			int remaining = fence - nextIndex;
+			nextNode = null; //spent, whatever the action does
+			nextIndex = fence;
+			for(int i = 0; i < remaining; i++) {
+				if(current == null) { //the action cut the list short
+					throw new ConcurrentModificationException();
+				}
+				action.accept(current.getElement());
+				current = current.getNext();
+			}
+			if(expectedModCount != modCount) { //checked again after the walk, not per element
+				throw new ConcurrentModificationException();
+			}
+		}
+		
+		@Override
+		public Spliterator<T> trySplit() {
+			if(expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			int remaining = fence - nextIndex;
+			if(remaining < 2) {
+				return null;
+			}
+			LinearNode<T> prefixLast;
+			int prefixCount;
+			if(skipIndex != null && remaining > SKIP_DISTANCE) {
+				prefixCount = remaining / 2;
+				prefixLast = skipIndex.find(nextIndex + prefixCount, head).getPrevious();
+			} else {
+				LinearNode<T> left = nextNode;
+				LinearNode<T> right = lastNode;
+				int leftIndex = 0;
+				int rightIndex = remaining - 1;
+				while(rightIndex - leftIndex > 1) {
+					left = left.getNext();
+					right = right.getPrevious();
+					leftIndex++;
+					rightIndex--;
+				}
+				prefixLast = left;
+				prefixCount = leftIndex + 1;
+			}
+			DLLSpliterator prefix = new DLLSpliterator(nextNode, prefixLast, nextIndex, nextIndex + prefixCount);
+			prefix.expectedModCount = expectedModCount;
+			nextNode = prefixLast.getNext();
+			nextIndex += prefixCount;
+			return prefix;
+		}
+		
+		@Override
+		public long estimateSize() {
+			return fence - nextIndex;
+		}
+		
+		@Override
+		public int characteristics() {
+			return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+		}
+	}
+	
+	/**
+	 * Iterator for IUDoubleLinkedList in snapshot mode.
+	 * It pins the version current when it was created and walks the node
+	 * states of that version, so it may run on any thread while the list
+	 * changes. The pin is released when it runs out or is collected.
+	 * @author seema
+	 *
+	 */
+	private class SnapshotIterator implements Iterator<T> {
+		private final SnapshotVersions.Pin pin;
+		private LinearNode<T> nextNode;
+		
+		public SnapshotIterator() {
+			pin = versions.pin(this);
+			nextNode = front.stateAt(pin.version).next;
+			if(nextNode == null) {
+				versions.release(pin);
+			}
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return (nextNode != null);
+		}
+		
+		@Override
+		public T next() {
+			if(nextNode == null) {
+				throw new NoSuchElementException();
+			}
+			SnapshotVersions.State<T> state = ((SnapshotVersions.VersionedNode<T>) nextNode).stateAt(pin.version);
+			nextNode = state.next;
+			if(nextNode == null) {
+				versions.release(pin);
+			}
+			return state.element;
+		}
+	}
 	
 	/**
 	 * ListIterator for IUDoubleLinkedList
@@ -287,9 +1362,10 @@ public class IUDoubleLinkedList<T> implements IndexedUnsortedList<T> {
 			if(startingIndex < 0 || startingIndex > size) {
 				throw new IndexOutOfBoundsException();
 			}
-			nextNode = head;
-			for(int i = 0; i < startingIndex; i++) {
-				nextNode = nextNode.getNext();
+			if(startingIndex == size) {
+				nextNode = null;
+			} else {
+				nextNode = nodeAt(startingIndex);
 			}
 			nextIndex = startingIndex;
 			iterModCount = modCount;
@@ -301,28 +1377,12 @@ public class IUDoubleLinkedList<T> implements IndexedUnsortedList<T> {
 			if(iterModCount != modCount) { //implicates that another iterator has changed the list
 				throw new ConcurrentModificationException();
 			}
-			LinearNode<T> newNode = new LinearNode<T>(element);
-			newNode.setNext(nextNode);
-			if(nextNode == null) {
-				if(tail != null) {
-					tail.setNext(newNode);
-					newNode.setPrevious(tail);
-				}
-				tail = newNode;
-			} else {
-				newNode.setPrevious(nextNode.getPrevious());
-				nextNode.setPrevious(newNode);
-			}
-			if(nextNode == head) {
-				head = newNode;
-			} else if(newNode.getPrevious() != null) {
-				newNode.getPrevious().setNext(newNode);
-			}
+			LinearNode<T> newNode = newNode(element);
+			linkBefore(newNode, nextNode, nextIndex);
 			lastReturnedNode = null;
 			nextIndex++;
-			size++;
-			modCount++;
 			iterModCount++;
+			setFinger(newNode, nextIndex - 1); //keeps add(int, T) runs cheap
 		}
 
 		@Override
@@ -376,7 +1436,7 @@ public class IUDoubleLinkedList<T> implements IndexedUnsortedList<T> {
 				nextNode = nextNode.getPrevious();
 			}
 			lastReturnedNode = nextNode;
-			nextIndex++;
+			nextIndex--;
 			return retVal;
 		}
 
@@ -393,25 +1453,16 @@ public class IUDoubleLinkedList<T> implements IndexedUnsortedList<T> {
 			if(lastReturnedNode == null) {
 				throw new IllegalStateException();
 			}
-			if(lastReturnedNode == head) {
-				head = lastReturnedNode.getNext();
-			} else {
-				lastReturnedNode.getPrevious().setNext(lastReturnedNode.getNext());
-			}
-			if(lastReturnedNode == tail) {
-				tail = tail.getPrevious();
-			} else {
-				lastReturnedNode.getNext().setPrevious(lastReturnedNode.getPrevious());
-			}
-			if(lastReturnedNode == nextNode){
+			if(lastReturnedNode == nextNode) { //last move was previous()
+				unlink(lastReturnedNode, nextIndex);
 				nextNode = nextNode.getNext();
 			} else { //last move was next()
+				unlink(lastReturnedNode, nextIndex - 1);
 				nextIndex--;
 			}
 			lastReturnedNode = null;
-			modCount++;
 			iterModCount++;
-			size--;
+			setFinger(nextNode, nextIndex); //keeps remove(int) runs cheap
 		}
 
 		@Override
@@ -425,7 +1476,7 @@ public class IUDoubleLinkedList<T> implements IndexedUnsortedList<T> {
 			if(lastReturnedNode == null){ //program doesn't have any node to set
 				throw new IllegalStateException();
 			} else if (lastReturnedNode != null) {
-				lastReturnedNode.setElement(element);	
+				replace(lastReturnedNode, (lastReturnedNode == nextNode) ? nextIndex : nextIndex - 1, element);
 			}
 			modCount++;
 			iterModCount++;
@@ -0,0 +1,739 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Crash-safe IndexedUnsortedList, keeping an IUDoubleLinkedList in memory
+ * and every change to it in a directory on disk.
+ *
+ * Each change is applied to the list and then appended to a write-ahead
+ * log as a record holding the operation, its index and its elements
+ * encoded by an ElementCodec, guarded by a CRC32C. Records are gathered in
+ * a buffer and written through a FileChannel, as each is logged under
+ * NONE and when they are forced otherwise. When they are forced to disk
+ * depends on the SyncPolicy. With GROUP, one force commits a group of
+ * records, which is much cheaper than forcing each. A group that doesn't
+ * fill up is forced GROUP_MILLIS after its first change by a daemon thread
+ * shared by all lists, so writing the log is synchronized with it. The
+ * list is otherwise no more thread-safe than IUDoubleLinkedList.
+ *
+ * Once the log outgrows the last checkpoint, the whole list is written to
+ * a new checkpoint, which replaces the old one atomically, and a new empty
+ * log is started. Opening the directory again loads the checkpoint and
+ * replays only the log written since, stopping at the first torn or
+ * corrupt record a crash left behind. Restart time therefore follows the
+ * list's size plus a log no longer than its checkpoint, not the history.
+ *
+ * A failed write leaves the log behind the list, so after one every change
+ * throws IllegalStateException. Elements may not be null: a change given
+ * one throws NullPointerException before touching the list or the log.
+ *
+ * @author seema
+ *
+ * @param <T> type to store
+ */
+public class IUDurableList<T> implements IndexedUnsortedList<T>, Closeable {
+	/**
+	 * When logged changes are forced to disk
+	 */
+	public enum SyncPolicy {
+		/** Force after every change. Nothing acknowledged is ever lost. */
+		ALWAYS,
+		/** Force once a group of changes has built up, or GROUP_MILLIS after the first of them, whichever comes first. */
+		GROUP,
+		/**
+		 * Hand each change to the operating system as it is logged, but leave it to decide when to write it out.
+		 * Only sync(), checkpoints and close() force. A crash of the process loses nothing, one of the system may.
+		 */
+		NONE
+	}
+
+	/** Longest a change waits for its group under SyncPolicy.GROUP before it is forced anyway */
+	public static final long GROUP_MILLIS = 10;
+
+	private static final int MAGIC = 0x49554443; //checkpoint file signature
+	private static final int CHECKPOINT_HEADER = Integer.BYTES + 2 * Long.BYTES; //magic, generation, count
+	private static final int RECORD_HEADER = 2 * Integer.BYTES; //payload length, CRC32C of payload
+	private static final int RECORD_FIXED = 1 + Integer.BYTES; //operation, index
+	private static final int BUFFER_BYTES = 1 << 16;
+	private static final long MIN_LOG_BYTES = 1 << 20; //log size below which checkpoints are not worth it
+	private static final String CHECKPOINT = "checkpoint";
+	private static final String CHECKPOINT_TMP = "checkpoint.tmp";
+	private static final String LOG_PREFIX = "wal-";
+	private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(task -> {
+		Thread thread = new Thread(task, "IUDurableList flusher");
+		thread.setDaemon(true); //never keeps the program alive
+		return thread;
+	});
+
+	//logged operations
+	private static final byte ADD_TO_FRONT = 1;
+	private static final byte ADD_TO_REAR = 2;
+	private static final byte ADD_AFTER = 3;
+	private static final byte ADD_AT = 4;
+	private static final byte REMOVE_FIRST = 5;
+	private static final byte REMOVE_LAST = 6;
+	private static final byte REMOVE_ELEMENT = 7;
+	private static final byte REMOVE_AT = 8;
+	private static final byte SET = 9;
+
+	private final IUDoubleLinkedList<T> list;
+	private final Path directory;
+	private final ElementCodec<T> codec;
+	private final SyncPolicy policy;
+	private final int groupRecords;
+	private final CRC32C crc;
+	private final ByteBuffer pending; //records not yet written to log
+	private FileChannel log;
+	private long generation; //number of the current log, recorded in the checkpoint before it
+	private long logBytes; //bytes in the log, including pending
+	private long checkpointBytes; //size of the last checkpoint
+	private int unsynced; //records not yet forced
+	private long firstUnsynced; //nanoTime of the oldest of them
+	private ScheduledFuture<?> flush; //timed force of the current group under GROUP, or null
+	private volatile RuntimeException failure; //why changes are refused, or null; set by the flusher too
+
+	/**
+	 * Opens the list stored in directory, or creates an empty one, forcing
+	 * the log in groups of 64 changes
+	 * @param directory directory holding the checkpoint and log
+	 * @param codec codec for elements
+	 * @throws IOException if the directory cannot be read or is corrupt
+	 */
+	public IUDurableList(Path directory, ElementCodec<T> codec) throws IOException {
+		this(directory, codec, SyncPolicy.GROUP, 64);
+	}
+
+	/**
+	 * Opens the list stored in directory, or creates an empty one
+	 * @param directory directory holding the checkpoint and log
+	 * @param codec codec for elements
+	 * @param policy when to force logged changes to disk
+	 * @param groupRecords changes per force under SyncPolicy.GROUP
+	 * @throws IOException if the directory cannot be read or is corrupt
+	 * @throws IllegalArgumentException if groupRecords is not positive
+	 */
+	public IUDurableList(Path directory, ElementCodec<T> codec, SyncPolicy policy, int groupRecords) throws IOException {
+		if(groupRecords <= 0) {
+			throw new IllegalArgumentException();
+		}
+		list = new IUDoubleLinkedList<T>();
+		this.directory = directory;
+		this.codec = codec;
+		this.policy = policy;
+		this.groupRecords = groupRecords;
+		crc = new CRC32C();
+		pending = ByteBuffer.allocateDirect(BUFFER_BYTES);
+		Files.createDirectories(directory);
+		Files.deleteIfExists(directory.resolve(CHECKPOINT_TMP)); //left by a checkpoint that never finished
+		Path checkpoint = directory.resolve(CHECKPOINT);
+		generation = 0;
+		if(Files.exists(checkpoint)) {
+			generation = load(checkpoint);
+			checkpointBytes = Files.size(checkpoint);
+		}
+		log = FileChannel.open(logPath(generation), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			logBytes = replay();
+			log.truncate(logBytes); //drops a torn tail
+			log.position(logBytes);
+			try(DirectoryStream<Path> logs = Files.newDirectoryStream(directory, LOG_PREFIX + "*")) {
+				for(Path path : logs) {
+					if(!path.equals(logPath(generation))) {
+						Files.delete(path); //replaced by the checkpoint
+					}
+				}
+			}
+		} catch(IOException | RuntimeException e) {
+			log.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Forces every change made so far to disk
+	 * @throws UncheckedIOException if the log cannot be written
+	 */
+	public synchronized void sync() {
+		checkOpen();
+		try {
+			force();
+		} catch(IOException e) {
+			throw failed(e);
+		}
+	}
+
+	/**
+	 * Writes the whole list to a new checkpoint and starts an empty log.
+	 * This happens on its own once the log outgrows the last checkpoint.
+	 * @throws UncheckedIOException if the checkpoint cannot be written
+	 */
+	public synchronized void checkpoint() {
+		checkOpen();
+		try {
+			force();
+			long next = generation + 1;
+			Path tmp = directory.resolve(CHECKPOINT_TMP);
+			try(FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+				buffer.putInt(MAGIC).putLong(next).putLong(list.size());
+				Iterator<T> it = list.iterator();
+				while(it.hasNext()) {
+					T element = it.next();
+					int size = codec.size(element);
+					if(buffer.remaining() < Integer.BYTES + size) {
+						drain(buffer, out);
+						if(buffer.capacity() < Integer.BYTES + size) {
+							buffer = ByteBuffer.allocateDirect(Integer.BYTES + size);
+						}
+					}
+					buffer.putInt(size);
+					codec.encode(element, buffer);
+				}
+				drain(buffer, out);
+				out.force(true);
+			}
+			Path checkpoint = directory.resolve(CHECKPOINT);
+			Files.move(tmp, checkpoint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			try(FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+				dir.force(true); //makes the rename durable
+			} catch(IOException e) {
+				//not every platform can force a directory, and the rename is atomic either way
+			}
+			FileChannel old = log;
+			Path oldPath = logPath(generation);
+			log = FileChannel.open(logPath(next), StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			generation = next;
+			logBytes = 0;
+			checkpointBytes = Files.size(checkpoint);
+			old.close();
+			Files.deleteIfExists(oldPath);
+		} catch(IOException e) {
+			throw failed(e);
+		}
+	}
+
+	/**
+	 * Forces every change to disk and closes the log. The list can still
+	 * be read, but no longer changed.
+	 * @throws IOException if the log cannot be written
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if(!log.isOpen()) {
+			return;
+		}
+		if(flush != null) {
+			flush.cancel(false);
+			flush = null;
+		}
+		try {
+			if(failure == null) {
+				force();
+			}
+		} finally {
+			log.close();
+			if(failure == null) {
+				failure = new IllegalStateException("closed");
+			}
+		}
+	}
+
+	@Override
+	public void addToFront(T element) {
+		checkOpen();
+		checkElement(element);
+		list.addToFront(element);
+		log(ADD_TO_FRONT, -1, element, null);
+	}
+
+	@Override
+	public void addToRear(T element) {
+		checkOpen();
+		checkElement(element);
+		list.addToRear(element);
+		log(ADD_TO_REAR, -1, element, null);
+	}
+
+	@Override
+	public void add(T element) {
+		addToRear(element);
+	}
+
+	@Override
+	public void addAfter(T element, T target) {
+		checkOpen();
+		checkElement(element);
+		checkElement(target);
+		list.addAfter(element, target);
+		log(ADD_AFTER, -1, element, target);
+	}
+
+	@Override
+	public void add(int index, T element) {
+		checkOpen();
+		checkElement(element);
+		list.add(index, element);
+		log(ADD_AT, index, element, null);
+	}
+
+	@Override
+	public T removeFirst() {
+		checkOpen();
+		T retVal = list.removeFirst();
+		log(REMOVE_FIRST, -1, null, null);
+		return retVal;
+	}
+
+	@Override
+	public T removeLast() {
+		checkOpen();
+		T retVal = list.removeLast();
+		log(REMOVE_LAST, -1, null, null);
+		return retVal;
+	}
+
+	@Override
+	public T remove(T element) {
+		checkOpen();
+		checkElement(element);
+		T retVal = list.remove(element);
+		log(REMOVE_ELEMENT, -1, element, null);
+		return retVal;
+	}
+
+	@Override
+	public T remove(int index) {
+		checkOpen();
+		T retVal = list.remove(index);
+		log(REMOVE_AT, index, null, null);
+		return retVal;
+	}
+
+	@Override
+	public void set(int index, T element) {
+		checkOpen();
+		checkElement(element);
+		list.set(index, element);
+		log(SET, index, element, null);
+	}
+
+	@Override
+	public T get(int index) {
+		return list.get(index);
+	}
+
+	@Override
+	public int indexOf(T element) {
+		return list.indexOf(element);
+	}
+
+	@Override
+	public T first() {
+		return list.first();
+	}
+
+	@Override
+	public T last() {
+		return list.last();
+	}
+
+	@Override
+	public boolean contains(T target) {
+		return list.contains(target);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return list.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return list.size();
+	}
+
+	/**
+	 * Appends proper syntax for given list
+	 */
+	public String toString() {
+		return list.toString();
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return listIterator();
+	}
+
+	@Override
+	public ListIterator<T> listIterator() {
+		return new DurableIterator(list.listIterator());
+	}
+
+	@Override
+	public ListIterator<T> listIterator(int startingIndex) {
+		return new DurableIterator(list.listIterator(startingIndex));
+	}
+
+	/**
+	 * Throws if changes are refused
+	 * @throws IllegalStateException if the list is closed or a write failed
+	 */
+	private void checkOpen() {
+		if(failure != null) {
+			throw new IllegalStateException(failure);
+		}
+	}
+
+	/**
+	 * Throws if element can't be logged, before the list is changed
+	 * @param element element about to be stored
+	 * @throws NullPointerException if element is null
+	 */
+	private static void checkElement(Object element) {
+		if(element == null) {
+			throw new NullPointerException();
+		}
+	}
+
+	/**
+	 * Remembers that the log fell behind the list
+	 * @param e cause
+	 * @return exception to throw
+	 */
+	private UncheckedIOException failed(IOException e) {
+		UncheckedIOException retVal = new UncheckedIOException(e);
+		failure = retVal;
+		return retVal;
+	}
+
+	private Path logPath(long generation) {
+		return directory.resolve(LOG_PREFIX + generation);
+	}
+
+	/**
+	 * Appends a record for a change already made to the list, then syncs
+	 * or checkpoints as due
+	 * @param op logged operation
+	 * @param index index operated on, or -1 if the operation has none
+	 * @param element element operated on, or null if none
+	 * @param target target of addAfter, or null
+	 * @throws UncheckedIOException if the log cannot be written
+	 */
+	private synchronized void log(byte op, int index, T element, T target) {
+		try {
+			int payload = RECORD_FIXED + ((element == null) ? 0 : codec.size(element))
+					+ ((target == null) ? 0 : codec.size(target));
+			int record = RECORD_HEADER + payload;
+			if(pending.remaining() < record) {
+				drain(pending, log);
+			}
+			ByteBuffer buffer = (record <= pending.capacity()) ? pending : ByteBuffer.allocateDirect(record);
+			int start = buffer.position();
+			buffer.putInt(payload);
+			buffer.putInt(0); //CRC goes here once the payload is in
+			buffer.put(op);
+			buffer.putInt(index);
+			if(element != null) {
+				codec.encode(element, buffer);
+			}
+			if(target != null) {
+				codec.encode(target, buffer);
+			}
+			crc.reset();
+			crc.update(buffer.slice(start + RECORD_HEADER, payload));
+			buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+			if(buffer != pending) {
+				drain(buffer, log);
+			}
+			logBytes += record;
+			if(unsynced++ == 0) {
+				firstUnsynced = System.nanoTime();
+			}
+			if(policy == SyncPolicy.ALWAYS || (policy == SyncPolicy.GROUP && (unsynced >= groupRecords
+					|| System.nanoTime() - firstUnsynced >= TimeUnit.MILLISECONDS.toNanos(GROUP_MILLIS)))) {
+				force();
+			} else if(policy == SyncPolicy.GROUP && flush == null) {
+				flush = FLUSHER.schedule(this::flushGroup, GROUP_MILLIS, TimeUnit.MILLISECONDS);
+			} else if(policy == SyncPolicy.NONE) {
+				drain(pending, log); //in the page cache, it outlives the process
+			}
+		} catch(IOException e) {
+			throw failed(e);
+		}
+		if(logBytes > Math.max(MIN_LOG_BYTES, checkpointBytes)) {
+			checkpoint();
+		}
+	}
+
+	/**
+	 * Timed force of a group, run on the flusher thread. If the group was
+	 * forced by count in the meantime, the one started since is forced a
+	 * little early, which only costs a force. A failure is kept for the
+	 * next change to throw.
+	 */
+	private synchronized void flushGroup() {
+		flush = null;
+		if(failure == null && unsynced > 0) {
+			try {
+				force();
+			} catch(IOException e) {
+				failed(e);
+			}
+		}
+	}
+
+	/**
+	 * Writes the pending records and forces the log to disk
+	 * @throws IOException if the log cannot be written
+	 */
+	private void force() throws IOException {
+		drain(pending, log);
+		log.force(false);
+		unsynced = 0;
+	}
+
+	/**
+	 * Writes everything put in buffer to channel and clears buffer
+	 * @param buffer buffer in write mode
+	 * @param channel channel to write to
+	 * @throws IOException if channel cannot be written
+	 */
+	private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Reads from channel until buffer holds at least needed bytes or the
+	 * channel runs out, growing buffer if it is too small
+	 * @param buffer buffer in read mode
+	 * @param channel channel to read from
+	 * @param needed bytes wanted
+	 * @return buffer in read mode, possibly a new one
+	 * @throws IOException if channel cannot be read
+	 */
+	private static ByteBuffer fill(ByteBuffer buffer, FileChannel channel, int needed) throws IOException {
+		if(buffer.remaining() >= needed) {
+			return buffer;
+		}
+		if(buffer.capacity() < needed) {
+			ByteBuffer bigger = ByteBuffer.allocateDirect(needed);
+			bigger.put(buffer);
+			buffer = bigger;
+		} else {
+			buffer.compact();
+		}
+		while(buffer.position() < needed && channel.read(buffer) > 0) {
+			//keep reading
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Loads the elements of a checkpoint into the empty list
+	 * @param path checkpoint file
+	 * @return generation of the log that follows the checkpoint
+	 * @throws IOException if the checkpoint cannot be read or is corrupt
+	 */
+	private long load(Path path) throws IOException {
+		try(FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = fill(ByteBuffer.allocateDirect(BUFFER_BYTES).flip(), in, CHECKPOINT_HEADER);
+			if(buffer.remaining() < CHECKPOINT_HEADER || buffer.getInt() != MAGIC) {
+				throw new IOException("not a checkpoint: " + path);
+			}
+			long next = buffer.getLong();
+			long count = buffer.getLong();
+			for(long i = 0; i < count; i++) {
+				buffer = fill(buffer, in, Integer.BYTES);
+				if(buffer.remaining() < Integer.BYTES) {
+					throw new EOFException(path.toString());
+				}
+				int size = buffer.getInt();
+				buffer = fill(buffer, in, size);
+				if(buffer.remaining() < size) {
+					throw new EOFException(path.toString());
+				}
+				list.addToRear(codec.decode(buffer.slice(buffer.position(), size)));
+				buffer.position(buffer.position() + size);
+			}
+			return next;
+		}
+	}
+
+	/**
+	 * Applies the records of the log to the list, up to the first that is
+	 * torn or fails its CRC
+	 * @return length of the valid part of the log
+	 * @throws IOException if the log cannot be read, or a valid record
+	 *  does not apply to the list
+	 */
+	private long replay() throws IOException {
+		long length = log.size();
+		long valid = 0;
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).flip();
+		while(true) {
+			buffer = fill(buffer, log, RECORD_HEADER);
+			if(buffer.remaining() < RECORD_HEADER) {
+				return valid;
+			}
+			int payload = buffer.getInt(buffer.position());
+			int checksum = buffer.getInt(buffer.position() + Integer.BYTES);
+			if(payload < RECORD_FIXED || payload > length - valid - RECORD_HEADER) {
+				return valid; //torn length
+			}
+			buffer = fill(buffer, log, RECORD_HEADER + payload);
+			ByteBuffer record = buffer.slice(buffer.position() + RECORD_HEADER, payload);
+			crc.reset();
+			crc.update(record.duplicate());
+			if((int) crc.getValue() != checksum) {
+				return valid; //torn or corrupt record
+			}
+			try {
+				apply(record);
+			} catch(RuntimeException e) {
+				throw new IOException("log record at " + valid + " does not apply", e);
+			}
+			buffer.position(buffer.position() + RECORD_HEADER + payload);
+			valid += RECORD_HEADER + payload;
+		}
+	}
+
+	/**
+	 * Makes the change a record describes
+	 * @param record payload of a log record
+	 */
+	private void apply(ByteBuffer record) {
+		byte op = record.get();
+		int index = record.getInt();
+		switch(op) {
+		case ADD_TO_FRONT:
+			list.addToFront(codec.decode(record));
+			break;
+		case ADD_TO_REAR:
+			list.addToRear(codec.decode(record));
+			break;
+		case ADD_AFTER:
+			T element = codec.decode(record);
+			list.addAfter(element, codec.decode(record));
+			break;
+		case ADD_AT:
+			list.add(index, codec.decode(record));
+			break;
+		case REMOVE_FIRST:
+			list.removeFirst();
+			break;
+		case REMOVE_LAST:
+			list.removeLast();
+			break;
+		case REMOVE_ELEMENT:
+			list.remove(codec.decode(record));
+			break;
+		case REMOVE_AT:
+			list.remove(index);
+			break;
+		case SET:
+			list.set(index, codec.decode(record));
+			break;
+		default:
+			throw new IllegalStateException("unknown operation " + op);
+		}
+	}
+
+	/**
+	 * ListIterator for IUDurableList.
+	 * Logs the changes made through the wrapped list's iterator by index.
+	 * @author seema
+	 *
+	 */
+	private class DurableIterator implements ListIterator<T> {
+		private final ListIterator<T> it;
+		private int lastReturnedIndex; //-1 if next()/previous() hasn't been called since the last change
+
+		public DurableIterator(ListIterator<T> it) {
+			this.it = it;
+			lastReturnedIndex = -1;
+		}
+
+		@Override
+		public void add(T element) {
+			checkOpen();
+			checkElement(element);
+			int index = it.nextIndex();
+			it.add(element);
+			lastReturnedIndex = -1;
+			log(ADD_AT, index, element, null);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return it.hasNext();
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			return it.hasPrevious();
+		}
+
+		@Override
+		public T next() {
+			T retVal = it.next();
+			lastReturnedIndex = it.previousIndex();
+			return retVal;
+		}
+
+		@Override
+		public int nextIndex() {
+			return it.nextIndex();
+		}
+
+		@Override
+		public T previous() {
+			T retVal = it.previous();
+			lastReturnedIndex = it.nextIndex();
+			return retVal;
+		}
+
+		@Override
+		public int previousIndex() {
+			return it.previousIndex();
+		}
+
+		@Override
+		public void remove() {
+			checkOpen();
+			it.remove();
+			int index = lastReturnedIndex;
+			lastReturnedIndex = -1;
+			log(REMOVE_AT, index, null, null);
+		}
+
+		@Override
+		public void set(T element) {
+			checkOpen();
+			checkElement(element);
+			it.set(element);
+			log(SET, lastReturnedIndex, element, null);
+		}
+	}
+}
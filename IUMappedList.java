@@ -0,0 +1,153 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * IUOffHeapList kept in a memory-mapped file, for lists bigger than the
+ * heap can afford and lists that should be there again after a restart.
+ *
+ * The slab is a MappedByteBuffer over the whole file. The slab header and
+ * links are kept in the slab as the list changes, so the file always
+ * describes the list, and reopening it maps it again with nothing to
+ * decode or rebuild. The operating system pages records in and out as
+ * they are used, so only the pages in use take memory.
+ *
+ * When the slab fills, the file is doubled and mapped again. Nothing is
+ * copied because the new mapping sees the same file. The old mapping is
+ * left to the garbage collector, as record() views may still point into
+ * it. Like any slab, a file holds at most MAX_SLAB_BYTES, about 2 GB.
+ *
+ * Changes reach the file when the operating system writes the pages
+ * back. force() writes them now. A crash in the middle of a change can
+ * leave the file inconsistent, so lists that must survive crashes should
+ * use IUDurableList.
+ *
+ * @author seema
+ *
+ * @param <T> type to store
+ */
+public class IUMappedList<T> extends IUOffHeapList<T> {
+	private static final int INITIAL_BYTES = 1 << 14; //mapped for a new list
+
+	private final FileChannel channel;
+
+	/**
+	 * Opens the list stored in file, or starts an empty one if the file
+	 * is missing or empty
+	 * @param file file holding the list
+	 * @param codec codec for elements, the same as the file was written with
+	 * @throws IOException if the file cannot be opened or mapped
+	 * @throws IllegalArgumentException if the file holds something else
+	 */
+	public IUMappedList(Path file, FixedWidthCodec<T> codec) throws IOException {
+		this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE), codec);
+	}
+
+	private IUMappedList(FileChannel channel, FixedWidthCodec<T> codec) throws IOException {
+		this(channel, codec, sizeOf(channel));
+	}
+
+	private IUMappedList(FileChannel channel, FixedWidthCodec<T> codec, long size) throws IOException {
+		super(codec, open(channel, size, codec.width()), size > 0); //size is read before open extends the file
+		this.channel = channel;
+	}
+
+	/**
+	 * Returns the file's size, closing the channel if that fails
+	 * @param channel channel just opened for the list
+	 * @return size of the file
+	 * @throws IOException if the size cannot be read
+	 */
+	private static long sizeOf(FileChannel channel) throws IOException {
+		try {
+			return channel.size();
+		} catch(IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Maps the file for a new list and checks the header of an existing
+	 * one, closing the channel if either fails, since the constructor
+	 * that opened it can't
+	 * @param channel channel just opened for the list
+	 * @param size size of the file before mapping
+	 * @param width record width of the codec
+	 * @return mapping of the file
+	 * @throws IOException if the file cannot be mapped
+	 * @throws IllegalArgumentException if the file holds something else
+	 */
+	private static MappedByteBuffer open(FileChannel channel, long size, int width) throws IOException {
+		try {
+			MappedByteBuffer slab = map(channel, Math.max(size, INITIAL_BYTES));
+			if(size > 0) {
+				checkHeader(slab, width);
+			}
+			return slab;
+		} catch(IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Maps the first bytes of the file, extending it if it is shorter
+	 * @param channel channel of the file
+	 * @param bytes bytes to map
+	 * @return mapping of the file
+	 * @throws IOException if the file cannot be mapped
+	 */
+	private static MappedByteBuffer map(FileChannel channel, long bytes) throws IOException {
+		if(bytes > MAX_SLAB_BYTES) {
+			throw new IOException("mapped lists are limited to 2 GB");
+		}
+		return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+	}
+
+	/**
+	 * Writes every change made so far back to the file
+	 * @throws IllegalStateException if the list has been closed
+	 */
+	public void force() {
+		if(slab() == null) {
+			throw new IllegalStateException("list is closed");
+		}
+		storeHeader();
+		((MappedByteBuffer) slab()).force();
+	}
+
+	/**
+	 * Writes the list back to the file and unmaps it. The list can't be
+	 * used afterwards.
+	 */
+	@Override
+	public void close() {
+		if(slab() != null) {
+			force();
+			super.close();
+			try {
+				channel.close();
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Extends the file and maps it again. The old mapping is not copied
+	 * from, since the new one sees the same file.
+	 */
+	@Override
+	protected ByteBuffer grow(ByteBuffer old, int bytes) {
+		try {
+			return map(channel, Math.max(bytes, Math.min(2L * old.capacity(), MAX_SLAB_BYTES)));
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,267 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Bounded many-producer, single-consumer queue in a ring of array slots.
+ * Any number of threads may add while one thread removes, without locks
+ * and without allocating anything per element.
+ *
+ * Producers claim sequences by compare-and-set on the tail, then publish
+ * each claimed slot with a release store of its element (the VarHandle
+ * form of lazySet). Claims can complete out of order, so the consumer
+ * takes a non-null slot as the sign its element has arrived, and waits
+ * briefly on a slot that is claimed but not yet written. The consumer
+ * publishes its head with a release store once it has emptied the slots.
+ * The hot counters live in one long array, spaced a cache line pair apart
+ * so producers and the consumer never write the same line.
+ *
+ * addAll claims a whole batch with one compare-and-set, and drain empties
+ * a batch for a single head publication. Nulls are not allowed.
+ *
+ * @author seema
+ *
+ * @param <T> type to store
+ */
+public class IUMpscRingQueue<T> implements IUQueue<T> {
+	private static final int PAD = 16; //longs between hot counters, 128 bytes
+	private static final int TAIL = PAD; //next sequence to claim, advanced by producers
+	private static final int HEAD_CACHE = PAD + 1; //some producer's last look at HEAD
+	private static final int HEAD = 3 * PAD; //next sequence to empty, written by the consumer
+	private static final VarHandle SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
+	private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+	private final Object[] slots;
+	private final int mask;
+	private final long[] sequences;
+
+	/**
+	 * Creates an empty queue
+	 * @param capacity most elements the queue may hold, rounded up to a
+	 *  power of two
+	 * @throws IllegalArgumentException if capacity is not positive or is
+	 *  above 2^30
+	 */
+	public IUMpscRingQueue(int capacity) {
+		if(capacity <= 0 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException();
+		}
+		int length = Integer.highestOneBit(capacity);
+		if(length < capacity) {
+			length <<= 1;
+		}
+		slots = new Object[length];
+		mask = length - 1;
+		sequences = new long[4 * PAD];
+	}
+
+	/**
+	 * Returns how many elements the queue can hold
+	 * @return capacity, a power of two
+	 */
+	public int capacity() {
+		return slots.length;
+	}
+
+	/**
+	 * Adds element at the rear if there is room. Any thread.
+	 * @param element element to add
+	 * @return true if element was added, false if the queue was full
+	 * @throws NullPointerException if element is null
+	 */
+	public boolean offer(T element) {
+		if(element == null) {
+			throw new NullPointerException();
+		}
+		long tail = claim(1);
+		if(tail < 0) {
+			return false;
+		}
+		SLOT.setRelease(slots, (int) tail & mask, element); //publishes the slot
+		return true;
+	}
+
+	/**
+	 * Adds element at the rear. Any thread.
+	 * @throws IllegalStateException if the queue is full
+	 * @throws NullPointerException if element is null
+	 */
+	@Override
+	public void addToRear(T element) {
+		if(!offer(element)) {
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * Adds as many of elements[offset] through elements[offset + count - 1]
+	 * as fit, in order, claiming their slots all at once. Any thread.
+	 * Another producer's elements may come before or after the batch but
+	 * never inside it.
+	 * @param elements array holding the batch
+	 * @param offset index of the first element to add
+	 * @param count number of elements to try to add
+	 * @return number of elements added, from the front of the batch
+	 * @throws IndexOutOfBoundsException if the range is outside elements
+	 * @throws NullPointerException if any element in the range is null,
+	 *  in which case none are added
+	 */
+	public int addAll(T[] elements, int offset, int count) {
+		if(offset < 0 || count < 0 || offset > elements.length - count) {
+			throw new IndexOutOfBoundsException();
+		}
+		for(int i = offset; i < offset + count; i++) {
+			if(elements[i] == null) { //checked first, a claimed slot must be filled
+				throw new NullPointerException();
+			}
+		}
+		long tail = -1;
+		int claimed = Math.min(count, slots.length);
+		while(claimed > 0 && (tail = claim(claimed)) < 0) {
+			claimed = Math.min(claimed - 1, room());
+		}
+		for(int i = 0; i < claimed; i++) {
+			SLOT.setRelease(slots, (int) (tail + i) & mask, elements[offset + i]);
+		}
+		return claimed;
+	}
+
+	/**
+	 * Claims count sequences at the tail if there is room for all of them
+	 * @param count number of sequences to claim, 1 <= count <= capacity
+	 * @return first claimed sequence, or -1 if there was not enough room
+	 */
+	private long claim(int count) {
+		long tail;
+		do {
+			tail = (long) SEQUENCE.getVolatile(sequences, TAIL);
+			if(tail + count - (long) SEQUENCE.getAcquire(sequences, HEAD_CACHE) > slots.length) { //acquire, so the consumer's emptying of the slots is seen too
+				long head = (long) SEQUENCE.getAcquire(sequences, HEAD);
+				if(tail + count - head > slots.length) {
+					return -1;
+				}
+				SEQUENCE.setRelease(sequences, HEAD_CACHE, head); //may go back a little, which only costs a reread
+			}
+		} while(!SEQUENCE.compareAndSet(sequences, TAIL, tail, tail + count));
+		return tail;
+	}
+
+	/**
+	 * Returns how many slots are free, which may change at once
+	 * @return free slots
+	 */
+	private int room() {
+		return slots.length - size();
+	}
+
+	/**
+	 * Returns the element in the slot for sequence, waiting for it if the
+	 * slot has been claimed but not yet written. Consumer thread only.
+	 * @param sequence sequence to read, at or after head
+	 * @param wait true to wait on a claimed slot, false to give up
+	 * @return element, or null if the slot has not been claimed, or has not
+	 *  been written and wait is false
+	 */
+	private Object element(long sequence, boolean wait) {
+		int slot = (int) sequence & mask;
+		Object element = SLOT.getAcquire(slots, slot);
+		if(element == null && wait && sequence < (long) SEQUENCE.getAcquire(sequences, TAIL)) {
+			do {
+				Thread.onSpinWait(); //the producer is between its claim and its store
+				element = SLOT.getAcquire(slots, slot);
+			} while(element == null);
+		}
+		return element;
+	}
+
+	/**
+	 * Removes the front element if there is one. Consumer thread only.
+	 * @return removed element, or null if the queue was empty
+	 */
+	public T poll() {
+		long head = sequences[HEAD];
+		@SuppressWarnings("unchecked")
+		T retVal = (T) element(head, true);
+		if(retVal == null) {
+			return null;
+		}
+		slots[(int) head & mask] = null; //lets the element be collected
+		SEQUENCE.setRelease(sequences, HEAD, head + 1); //hands the slot back
+		return retVal;
+	}
+
+	/**
+	 * Removes the front element. Consumer thread only.
+	 * @throws NoSuchElementException if the queue is empty
+	 */
+	@Override
+	public T removeFirst() {
+		T retVal = poll();
+		if(retVal == null) {
+			throw new NoSuchElementException();
+		}
+		return retVal;
+	}
+
+	/**
+	 * Removes up to max elements from the front, passing each to action in
+	 * order, and hands their slots back all at once. It stops early at a
+	 * slot that is claimed but not yet written. Consumer thread only.
+	 * @param action action to perform on each element
+	 * @param max most elements to remove
+	 * @return number of elements removed
+	 */
+	public int drain(Consumer<? super T> action, int max) {
+		if(action == null) {
+			throw new NullPointerException();
+		}
+		long head = sequences[HEAD];
+		int done = 0;
+		try {
+			while(done < max) {
+				@SuppressWarnings("unchecked")
+				T element = (T) element(head + done, false);
+				if(element == null) {
+					break;
+				}
+				slots[(int) (head + done) & mask] = null;
+				done++;
+				action.accept(element);
+			}
+		} finally {
+			SEQUENCE.setRelease(sequences, HEAD, head + done); //elements action was given are gone even if it threw
+		}
+		return done;
+	}
+
+	/**
+	 * Returns the front element. Consumer thread only.
+	 * @throws NoSuchElementException if the queue is empty
+	 */
+	@Override
+	public T first() {
+		@SuppressWarnings("unchecked")
+		T retVal = (T) element(sequences[HEAD], true);
+		if(retVal == null) {
+			throw new NoSuchElementException();
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the number of elements, counting those still being written.
+	 * From threads other than the consumer it is only an estimate.
+	 */
+	@Override
+	public int size() {
+		long head = (long) SEQUENCE.getAcquire(sequences, HEAD);
+		long tail = (long) SEQUENCE.getAcquire(sequences, TAIL);
+		return (int) Math.max(0, Math.min(tail - head, slots.length)); //the reads may straddle changes
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (size() == 0);
+	}
+}
@@ -0,0 +1,732 @@
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Double-linked implementation of IndexedUnsortedList that keeps its links
+ * and its elements outside the Java heap, in one direct ByteBuffer (the slab).
+ * Elements are stored as fixed-width records through a FixedWidthCodec, so a
+ * huge list costs the garbage collector one buffer object instead of a node
+ * and an element object per entry.
+ *
+ * Slab layout: a HEADER_BYTES header followed by slots of
+ * [next int][previous int][record]. Free slots are chained through next.
+ * Records can be read in place with getInt/getLong/record without decoding,
+ * and contains/indexOf compare encoded bytes.
+ *
+ * A ByteBuffer is indexed by int, so a slab holds at most MAX_SLAB_BYTES,
+ * about 2 GB, which caps the list at that many bytes of slots. Asking for
+ * a bigger capacity throws IllegalArgumentException, and adding to a list
+ * whose slab can't grow any more throws IllegalStateException.
+ *
+ * Call close() when done to hand the memory back straight away; a closed
+ * list throws IllegalStateException.
+ *
+ * @author seema
+ *
+ * @param <T> type to store
+ */
+public class IUOffHeapList<T> implements IndexedUnsortedList<T>, AutoCloseable {
+	protected static final int MAGIC = 0x4F484C31; //"OHL1"
+	protected static final int HEADER_BYTES = 32;
+	protected static final int MAX_SLAB_BYTES = Integer.MAX_VALUE; //largest ByteBuffer
+	private static final int NIL = -1;
+	private static final int DEFAULT_CAPACITY = 1024;
+	//header fields
+	private static final int MAGIC_AT = 0;
+	private static final int WIDTH_AT = 4;
+	private static final int SIZE_AT = 8;
+	private static final int HEAD_AT = 12;
+	private static final int TAIL_AT = 16;
+	private static final int FREE_AT = 20;
+	private static final int USED_AT = 24;
+	//slot fields
+	private static final int NEXT = 0;
+	private static final int PREVIOUS = 4;
+	private static final int RECORD = 8;
+
+	private final FixedWidthCodec<T> codec;
+	private final int slotBytes;
+	private final ByteBuffer probe; //scratch record for comparisons
+	private ByteBuffer slab; //null once closed
+	private int capacity; //slots that fit in slab
+	private int head;
+	private int tail;
+	private int size;
+	private int modCount; //useful for iterator class
+	private int freeSlot;
+	private int usedSlots;
+
+	/**
+	 * Creates an empty list in a new off-heap slab
+	 * @param codec codec for elements
+	 */
+	public IUOffHeapList(FixedWidthCodec<T> codec) {
+		this(codec, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty list in a new off-heap slab
+	 * @param codec codec for elements
+	 * @param capacity number of elements before the slab has to grow
+	 * @throws IllegalArgumentException if capacity elements need more than MAX_SLAB_BYTES
+	 */
+	public IUOffHeapList(FixedWidthCodec<T> codec, int capacity) {
+		this(codec, ByteBuffer.allocateDirect(slabBytes(Math.max(capacity, 1), RECORD + codec.width())), false);
+	}
+
+	/**
+	 * Creates a list over a given slab, for subclasses that supply their own memory
+	 * @param codec codec for elements
+	 * @param slab memory to use, at least big enough for the header and one slot
+	 * @param existing true if slab already holds a list written by this class
+	 * @throws IllegalArgumentException if an existing slab doesn't hold a list of this codec's width
+	 */
+	protected IUOffHeapList(FixedWidthCodec<T> codec, ByteBuffer slab, boolean existing) {
+		this.codec = codec;
+		this.slotBytes = RECORD + codec.width();
+		this.probe = ByteBuffer.allocate(codec.width()).order(ByteOrder.nativeOrder());
+		useSlab(slab);
+		if(existing) {
+			checkHeader(slab, codec.width());
+			size = slab.getInt(SIZE_AT);
+			head = slab.getInt(HEAD_AT);
+			tail = slab.getInt(TAIL_AT);
+			freeSlot = slab.getInt(FREE_AT);
+			usedSlots = slab.getInt(USED_AT);
+		} else {
+			head = tail = freeSlot = NIL;
+			size = usedSlots = 0;
+			slab.putInt(MAGIC_AT, MAGIC);
+			slab.putInt(WIDTH_AT, codec.width());
+			storeHeader();
+		}
+		modCount = 0;
+	}
+
+	@Override
+	public void addToFront(T element) {
+		ensureOpen();
+		linkBefore(element, head);
+	}
+
+	@Override
+	public void addToRear(T element) {
+		ensureOpen();
+		linkBefore(element, NIL);
+	}
+
+	@Override
+	public void add(T element) {
+		addToRear(element);
+	}
+
+	@Override
+	public void addAfter(T element, T target) {
+		ensureOpen();
+		int slot = find(target);
+		if(slot == NIL) {
+			throw new NoSuchElementException();
+		}
+		linkBefore(element, next(slot));
+	}
+
+	@Override
+	public void add(int index, T element) {
+		ensureOpen();
+		if(index < 0 || index > size) {
+			throw new IndexOutOfBoundsException();
+		}
+		linkBefore(element, (index == size) ? NIL : slotAt(index));
+	}
+
+	@Override
+	public T removeFirst() {
+		ensureOpen();
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return unlink(head);
+	}
+
+	@Override
+	public T removeLast() {
+		ensureOpen();
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return unlink(tail);
+	}
+
+	@Override
+	public T remove(T element) {
+		ensureOpen();
+		int slot = find(element);
+		if(slot == NIL) {
+			throw new NoSuchElementException();
+		}
+		return unlink(slot);
+	}
+
+	@Override
+	public T remove(int index) {
+		ensureOpen();
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+		return unlink(slotAt(index));
+	}
+
+	@Override
+	public void set(int index, T element) {
+		ensureOpen();
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+		codec.encode(element, slab, recordOffset(slotAt(index)));
+		modCount++;
+	}
+
+	@Override
+	public T get(int index) {
+		ensureOpen();
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+		return decode(slotAt(index));
+	}
+
+	/**
+	 * Reads an int straight out of the record at index, without decoding it.
+	 * @param index index of the record
+	 * @param fieldOffset byte offset of the int within the record
+	 * @return the int
+	 * @throws IndexOutOfBoundsException if index or fieldOffset is out of range
+	 */
+	public int getInt(int index, int fieldOffset) {
+		ensureOpen();
+		if(index < 0 || index >= size || fieldOffset < 0 || fieldOffset + Integer.BYTES > codec.width()) {
+			throw new IndexOutOfBoundsException();
+		}
+		return slab.getInt(recordOffset(slotAt(index)) + fieldOffset);
+	}
+
+	/**
+	 * Reads a long straight out of the record at index, without decoding it.
+	 * @param index index of the record
+	 * @param fieldOffset byte offset of the long within the record
+	 * @return the long
+	 * @throws IndexOutOfBoundsException if index or fieldOffset is out of range
+	 */
+	public long getLong(int index, int fieldOffset) {
+		ensureOpen();
+		if(index < 0 || index >= size || fieldOffset < 0 || fieldOffset + Long.BYTES > codec.width()) {
+			throw new IndexOutOfBoundsException();
+		}
+		return slab.getLong(recordOffset(slotAt(index)) + fieldOffset);
+	}
+
+	/**
+	 * Returns a read-only view of the record at index. The view only
+	 * reflects the list until it is next modified, and must not be used
+	 * at all after close(), which frees the memory under it.
+	 * @param index index of the record
+	 * @return read-only buffer holding exactly the record's bytes
+	 * @throws IndexOutOfBoundsException if index is out of range
+	 */
+	public ByteBuffer record(int index) {
+		ensureOpen();
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+		return slab.slice(recordOffset(slotAt(index)), codec.width()).asReadOnlyBuffer().order(slab.order());
+	}
+
+	@Override
+	public int indexOf(T element) {
+		ensureOpen();
+		if(element == null) {
+			return -1;
+		}
+		encodeProbe(element);
+		int index = 0;
+		for(int slot = head; slot != NIL; slot = next(slot)) {
+			if(matchesProbe(slot)) {
+				return index;
+			}
+			index++;
+		}
+		return -1;
+	}
+
+	@Override
+	public T first() {
+		ensureOpen();
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return decode(head);
+	}
+
+	@Override
+	public T last() {
+		ensureOpen();
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return decode(tail);
+	}
+
+	@Override
+	public boolean contains(T target) {
+		ensureOpen();
+		return (find(target) != NIL);
+	}
+
+	/**
+	 * Appends proper syntax for given list
+	 */
+	public String toString() {
+		ensureOpen();
+		StringBuilder str = new StringBuilder();
+		str.append("[");
+		for(int slot = head; slot != NIL; slot = next(slot)) {
+			str.append(decode(slot).toString());
+			str.append(", ");
+		}
+		if(!isEmpty()) {
+			str.delete(str.length()-2, str.length());
+		}
+		str.append("]");
+		return str.toString();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (size() == 0);
+	}
+
+	@Override
+	public int size() {
+		ensureOpen();
+		return size;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return listIterator();
+	}
+
+	@Override
+	public ListIterator<T> listIterator() {
+		return listIterator(0);
+	}
+
+	@Override
+	public ListIterator<T> listIterator(int startingIndex) {
+		ensureOpen();
+		return new OffHeapIterator(startingIndex);
+	}
+
+	/**
+	 * Releases the slab. The list can't be used afterwards.
+	 */
+	@Override
+	public void close() {
+		if(slab != null) {
+			storeHeader();
+			release(slab);
+			slab = null;
+		}
+	}
+
+	/**
+	 * Makes room for more slots. The default allocates a bigger slab and
+	 * copies the old one over; the old one is left to the garbage collector
+	 * because record() views may still point into it. Subclasses backed by
+	 * other memory override this.
+	 * @param old current slab
+	 * @param bytes size the new slab must have at least
+	 * @return the new slab, holding a copy of everything in old
+	 */
+	protected ByteBuffer grow(ByteBuffer old, int bytes) {
+		ByteBuffer bigger = ByteBuffer.allocateDirect(bytes);
+		ByteBuffer source = old.duplicate();
+		source.clear();
+		bigger.put(source);
+		return bigger;
+	}
+
+	/**
+	 * Hands a direct buffer's memory back right away instead of waiting for
+	 * the buffer object to be collected. Best effort: if the runtime won't
+	 * allow it, the memory is returned when the buffer is collected.
+	 * @param buffer direct or mapped buffer nothing refers to any more
+	 */
+	protected void release(ByteBuffer buffer) {
+		try {
+			Field field = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			Object unsafe = field.get(null);
+			unsafe.getClass().getMethod("invokeCleaner", ByteBuffer.class).invoke(unsafe, buffer);
+		} catch(ReflectiveOperationException | RuntimeException e) {
+			//left to the garbage collector
+		}
+	}
+
+	/**
+	 * Writes size, links and free list bookkeeping into the slab header,
+	 * so the slab alone describes the list
+	 */
+	protected void storeHeader() {
+		slab.putInt(SIZE_AT, size);
+		slab.putInt(HEAD_AT, head);
+		slab.putInt(TAIL_AT, tail);
+		slab.putInt(FREE_AT, freeSlot);
+		slab.putInt(USED_AT, usedSlots);
+	}
+
+	/**
+	 * @return the current slab, for subclasses
+	 */
+	protected ByteBuffer slab() {
+		return slab;
+	}
+
+	/**
+	 * Checks that a slab holds a list written by this class, so subclasses
+	 * can check their memory before handing it over
+	 * @param slab memory to check, at least HEADER_BYTES long
+	 * @param width record width the list must have
+	 * @throws IllegalArgumentException if slab doesn't hold a list of width-byte records
+	 */
+	protected static void checkHeader(ByteBuffer slab, int width) {
+		slab.order(ByteOrder.nativeOrder());
+		if(slab.getInt(MAGIC_AT) != MAGIC || slab.getInt(WIDTH_AT) != width) {
+			throw new IllegalArgumentException("not a list of " + width + "-byte records");
+		}
+	}
+
+	/**
+	 * @param slotCount number of slots
+	 * @return bytes a slab needs to hold the header and slotCount slots
+	 * @throws IllegalArgumentException if that is more than MAX_SLAB_BYTES
+	 */
+	protected int bytesFor(long slotCount) {
+		return slabBytes(slotCount, slotBytes);
+	}
+
+	/**
+	 * Works out a slab size in long, so it can't overflow on the way
+	 * @param slotCount number of slots
+	 * @param slotBytes bytes per slot
+	 * @return bytes a slab needs to hold the header and slotCount slots
+	 * @throws IllegalArgumentException if that is more than MAX_SLAB_BYTES
+	 */
+	private static int slabBytes(long slotCount, int slotBytes) {
+		long bytes = HEADER_BYTES + slotCount * slotBytes;
+		if(bytes > MAX_SLAB_BYTES) {
+			throw new IllegalArgumentException(slotCount + " slots of " + slotBytes + " bytes need more than the " + MAX_SLAB_BYTES + " bytes a slab can hold");
+		}
+		return (int) bytes;
+	}
+
+	/**
+	 * Switches to a (new) slab and works out how many slots it holds
+	 * @param newSlab slab to use
+	 */
+	private void useSlab(ByteBuffer newSlab) {
+		slab = newSlab.order(ByteOrder.nativeOrder());
+		capacity = (slab.capacity() - HEADER_BYTES) / slotBytes;
+	}
+
+	/**
+	 * @throws IllegalStateException if the list has been closed
+	 */
+	private void ensureOpen() {
+		if(slab == null) {
+			throw new IllegalStateException("list is closed");
+		}
+	}
+
+	private int next(int slot) {
+		return slab.getInt(HEADER_BYTES + slot * slotBytes + NEXT);
+	}
+
+	private int previous(int slot) {
+		return slab.getInt(HEADER_BYTES + slot * slotBytes + PREVIOUS);
+	}
+
+	private void setNext(int slot, int next) {
+		slab.putInt(HEADER_BYTES + slot * slotBytes + NEXT, next);
+	}
+
+	private void setPrevious(int slot, int previous) {
+		slab.putInt(HEADER_BYTES + slot * slotBytes + PREVIOUS, previous);
+	}
+
+	private int recordOffset(int slot) {
+		return HEADER_BYTES + slot * slotBytes + RECORD;
+	}
+
+	private T decode(int slot) {
+		return codec.decode(slab, recordOffset(slot));
+	}
+
+	/**
+	 * Encodes target into the probe buffer for matchesProbe()
+	 * @param target element to look for
+	 */
+	private void encodeProbe(T target) {
+		codec.encode(target, probe, 0);
+	}
+
+	/**
+	 * Compares a slot's record with the probe, a long at a time
+	 * @param slot slot in use
+	 * @return true if the bytes are the same
+	 */
+	private boolean matchesProbe(int slot) {
+		int offset = recordOffset(slot);
+		int width = codec.width();
+		int i = 0;
+		for(; i + Long.BYTES <= width; i += Long.BYTES) {
+			if(slab.getLong(offset + i) != probe.getLong(i)) {
+				return false;
+			}
+		}
+		for(; i < width; i++) {
+			if(slab.get(offset + i) != probe.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the first slot whose record matches target's encoding
+	 * @param target element to look for
+	 * @return slot of target, or NIL
+	 */
+	private int find(T target) {
+		if(target == null) {
+			return NIL;
+		}
+		encodeProbe(target);
+		int slot = head;
+		while(slot != NIL && !matchesProbe(slot)) {
+			slot = next(slot);
+		}
+		return slot;
+	}
+
+	/**
+	 * Finds the slot at a valid index, walking from the nearer end
+	 * @param index 0 <= index < size
+	 * @return slot at index
+	 */
+	private int slotAt(int index) {
+		int slot;
+		if(index < size / 2) {
+			slot = head;
+			for(int i = 0; i < index; i++) {
+				slot = next(slot);
+			}
+		} else {
+			slot = tail;
+			for(int i = size - 1; i > index; i--) {
+				slot = previous(slot);
+			}
+		}
+		return slot;
+	}
+
+	/**
+	 * Encodes element into a free slot and links it in before successor
+	 * @param element element to store
+	 * @param successor slot to link before, or NIL to link at the rear
+	 * @return the new slot
+	 */
+	private int linkBefore(T element, int successor) {
+		int slot = freeSlot;
+		if(slot != NIL) {
+			freeSlot = next(slot);
+		} else {
+			if(usedSlots == capacity) {
+				int maxSlots = (MAX_SLAB_BYTES - HEADER_BYTES) / slotBytes;
+				if(capacity >= maxSlots) {
+					throw new IllegalStateException("list is full: a slab holds at most " + maxSlots + " slots");
+				}
+				useSlab(grow(slab, bytesFor(Math.min(capacity * 2L, maxSlots)))); //doubling, clamped to the largest slab
+			}
+			slot = usedSlots++;
+		}
+		int predecessor = (successor == NIL) ? tail : previous(successor);
+		codec.encode(element, slab, recordOffset(slot));
+		setNext(slot, successor);
+		setPrevious(slot, predecessor);
+		if(predecessor == NIL) {
+			head = slot;
+		} else {
+			setNext(predecessor, slot);
+		}
+		if(successor == NIL) {
+			tail = slot;
+		} else {
+			setPrevious(successor, slot);
+		}
+		size++;
+		modCount++;
+		storeHeader();
+		return slot;
+	}
+
+	/**
+	 * Unlinks a slot and puts it on the free list
+	 * @param slot slot in use
+	 * @return the element it held
+	 */
+	private T unlink(int slot) {
+		T retVal = decode(slot);
+		int predecessor = previous(slot);
+		int successor = next(slot);
+		if(predecessor == NIL) {
+			head = successor;
+		} else {
+			setNext(predecessor, successor);
+		}
+		if(successor == NIL) {
+			tail = predecessor;
+		} else {
+			setPrevious(successor, predecessor);
+		}
+		setNext(slot, freeSlot);
+		freeSlot = slot;
+		size--;
+		modCount++;
+		storeHeader();
+		return retVal;
+	}
+
+	/**
+	 * ListIterator for IUOffHeapList
+	 * Alters list based on position of the iterator.
+	 * @author seema
+	 *
+	 */
+	private class OffHeapIterator implements ListIterator<T> {
+		private int nextSlot;
+		private int iterModCount; //incremented each time iterator is modified
+		private int nextIndex;
+		private int lastReturnedSlot; //most useful for set() and remove()
+
+		public OffHeapIterator(int startingIndex) {
+			if(startingIndex < 0 || startingIndex > size) {
+				throw new IndexOutOfBoundsException();
+			}
+			nextSlot = (startingIndex == size) ? NIL : slotAt(startingIndex);
+			nextIndex = startingIndex;
+			iterModCount = modCount;
+			lastReturnedSlot = NIL;
+		}
+
+		@Override
+		public boolean hasNext() {
+			ensureOpen();
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			return (nextSlot != NIL);
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			ensureOpen();
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			return (nextSlot != head);
+		}
+
+		@Override
+		public T next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			lastReturnedSlot = nextSlot;
+			nextSlot = IUOffHeapList.this.next(nextSlot);
+			nextIndex++;
+			return decode(lastReturnedSlot);
+		}
+
+		@Override
+		public T previous() {
+			if(!hasPrevious()) {
+				throw new NoSuchElementException();
+			}
+			nextSlot = (nextSlot == NIL) ? tail : IUOffHeapList.this.previous(nextSlot);
+			lastReturnedSlot = nextSlot;
+			nextIndex--;
+			return decode(nextSlot);
+		}
+
+		@Override
+		public int nextIndex() {
+			return nextIndex;
+		}
+
+		@Override
+		public int previousIndex() {
+			return (nextIndex - 1);
+		}
+
+		@Override
+		public void remove() {
+			ensureOpen();
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(lastReturnedSlot == NIL) {
+				throw new IllegalStateException();
+			}
+			if(lastReturnedSlot == nextSlot) { //last move was previous()
+				nextSlot = IUOffHeapList.this.next(nextSlot);
+			} else {
+				nextIndex--;
+			}
+			unlink(lastReturnedSlot);
+			lastReturnedSlot = NIL;
+			iterModCount++;
+		}
+
+		@Override
+		public void set(T element) {
+			ensureOpen();
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(lastReturnedSlot == NIL) {
+				throw new IllegalStateException();
+			}
+			codec.encode(element, slab, recordOffset(lastReturnedSlot));
+			modCount++;
+			iterModCount++;
+		}
+
+		@Override
+		public void add(T element) {
+			ensureOpen();
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			linkBefore(element, nextSlot);
+			lastReturnedSlot = NIL;
+			nextIndex++;
+			iterModCount++;
+		}
+	}
+}
@@ -0,0 +1,512 @@
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Persistent implementation of IndexedUnsortedList. Elements live in an
+ * immutable AVL tree where every node records the size of its subtree, so
+ * any index is found in O(log n). A change never touches an existing node.
+ * It copies the O(log n) nodes on the path to the change and installs the
+ * new root, and every other node is shared with the previous version.
+ *
+ * That makes snapshot() O(1): the snapshot just keeps the current root.
+ * Old versions are never changed, so a snapshot can be read from any
+ * thread without locks while this list keeps being modified. The list
+ * itself, like the other lists here, is meant for one writer at a time.
+ *
+ * @author seema
+ *
+ * @param <T> type to store
+ */
+public class IUPersistentList<T> implements IndexedUnsortedList<T> {
+	private volatile Node<T> root; //volatile so snapshots taken on other threads see whole trees
+	private int modCount; //useful for iterator class
+
+	public IUPersistentList() {
+		this(null);
+	}
+
+	private IUPersistentList(Node<T> root) {
+		this.root = root;
+		modCount = 0;
+	}
+
+	/**
+	 * Returns an independent list holding the current version of this
+	 * one, in O(1) time. Later changes to either list do not show in the
+	 * other, and the two keep sharing every node neither has changed.
+	 * @return snapshot of this list
+	 */
+	public IUPersistentList<T> snapshot() {
+		return new IUPersistentList<T>(root);
+	}
+
+	@Override
+	public void addToFront(T element) {
+		add(0, element);
+	}
+
+	@Override
+	public void addToRear(T element) {
+		add(size(), element);
+	}
+
+	@Override
+	public void add(T element) {
+		addToRear(element);
+	}
+
+	@Override
+	public void addAfter(T element, T target) {
+		int index = indexOf(target);
+		if(index < 0) {
+			throw new NoSuchElementException();
+		}
+		add(index + 1, element);
+	}
+
+	@Override
+	public void add(int index, T element) {
+		if(index < 0 || index > size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		root = insert(root, index, element);
+		modCount++;
+	}
+
+	@Override
+	public T removeFirst() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return removeAt(0);
+	}
+
+	@Override
+	public T removeLast() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return removeAt(size() - 1);
+	}
+
+	@Override
+	public T remove(T element) {
+		int index = indexOf(element);
+		if(index < 0) {
+			throw new NoSuchElementException();
+		}
+		return removeAt(index);
+	}
+
+	@Override
+	public T remove(int index) {
+		if(index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		return removeAt(index);
+	}
+
+	@Override
+	public void set(int index, T element) {
+		if(index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		root = replace(root, index, element);
+		modCount++;
+	}
+
+	@Override
+	public T get(int index) {
+		if(index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		return nodeAt(root, index).element;
+	}
+
+	@Override
+	public int indexOf(T element) {
+		return find(root, element, 0);
+	}
+
+	@Override
+	public T first() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return get(0);
+	}
+
+	@Override
+	public T last() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return get(size() - 1);
+	}
+
+	@Override
+	public boolean contains(T target) {
+		return (indexOf(target) >= 0);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (root == null);
+	}
+
+	@Override
+	public int size() {
+		return size(root);
+	}
+
+	/**
+	 * Appends proper syntax for given list
+	 */
+	public String toString() {
+		StringBuilder str = new StringBuilder();
+		str.append("[");
+		forEach(element -> {
+			str.append(element.toString());
+			str.append(", ");
+		});
+		if(!isEmpty()) {
+			str.delete(str.length()-2, str.length());
+		}
+		str.append("]");
+		return str.toString();
+	}
+
+	/**
+	 * Performs action on each element in order, walking the current
+	 * version of the tree. Changes made by action do not affect the walk.
+	 * @param action action to perform on each element
+	 */
+	@Override
+	public void forEach(Consumer<? super T> action) {
+		if(action == null) {
+			throw new NullPointerException();
+		}
+		walk(root, action);
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return listIterator();
+	}
+
+	@Override
+	public ListIterator<T> listIterator() {
+		return new PLIterator(0);
+	}
+
+	@Override
+	public ListIterator<T> listIterator(int startingIndex) {
+		return new PLIterator(startingIndex);
+	}
+
+	/**
+	 * Removes the element at a valid index
+	 * @param index 0 <= index < size
+	 * @return removed element
+	 */
+	private T removeAt(int index) {
+		T retVal = nodeAt(root, index).element;
+		root = delete(root, index);
+		modCount++;
+		return retVal;
+	}
+
+	private static int size(Node<?> node) {
+		return (node == null) ? 0 : node.size;
+	}
+
+	private static int height(Node<?> node) {
+		return (node == null) ? 0 : node.height;
+	}
+
+	/**
+	 * Finds the node at index within the subtree
+	 * @param node root of the subtree
+	 * @param index 0 <= index < size(node)
+	 * @return node at index
+	 */
+	private static <T> Node<T> nodeAt(Node<T> node, int index) {
+		while(true) {
+			int leftSize = size(node.left);
+			if(index < leftSize) {
+				node = node.left;
+			} else if(index == leftSize) {
+				return node;
+			} else {
+				index -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * Returns a copy of the subtree with element inserted at index
+	 * @param node root of the subtree, possibly null
+	 * @param index 0 <= index <= size(node)
+	 * @param element element to insert
+	 * @return root of the new subtree
+	 */
+	private static <T> Node<T> insert(Node<T> node, int index, T element) {
+		if(node == null) {
+			return new Node<T>(element, null, null);
+		}
+		int leftSize = size(node.left);
+		if(index <= leftSize) {
+			return balance(node.element, insert(node.left, index, element), node.right);
+		}
+		return balance(node.element, node.left, insert(node.right, index - leftSize - 1, element));
+	}
+
+	/**
+	 * Returns a copy of the subtree without the element at index
+	 * @param node root of the subtree
+	 * @param index 0 <= index < size(node)
+	 * @return root of the new subtree, possibly null
+	 */
+	private static <T> Node<T> delete(Node<T> node, int index) {
+		int leftSize = size(node.left);
+		if(index < leftSize) {
+			return balance(node.element, delete(node.left, index), node.right);
+		}
+		if(index > leftSize) {
+			return balance(node.element, node.left, delete(node.right, index - leftSize - 1));
+		}
+		if(node.left == null) {
+			return node.right;
+		}
+		if(node.right == null) {
+			return node.left;
+		}
+		return balance(nodeAt(node.right, 0).element, node.left, delete(node.right, 0));
+	}
+
+	/**
+	 * Returns a copy of the subtree with the element at index replaced.
+	 * The shape does not change, so no rebalancing is needed.
+	 * @param node root of the subtree
+	 * @param index 0 <= index < size(node)
+	 * @param element new element
+	 * @return root of the new subtree
+	 */
+	private static <T> Node<T> replace(Node<T> node, int index, T element) {
+		int leftSize = size(node.left);
+		if(index < leftSize) {
+			return new Node<T>(node.element, replace(node.left, index, element), node.right);
+		}
+		if(index > leftSize) {
+			return new Node<T>(node.element, node.left, replace(node.right, index - leftSize - 1, element));
+		}
+		return new Node<T>(element, node.left, node.right);
+	}
+
+	/**
+	 * Builds a node over left and right, rotating if their heights differ
+	 * by two, which is the most a single insert or delete below can cause
+	 * @param element element for the node
+	 * @param left new left subtree
+	 * @param right new right subtree
+	 * @return root of a balanced subtree holding left, element, right in order
+	 */
+	private static <T> Node<T> balance(T element, Node<T> left, Node<T> right) {
+		if(height(left) > height(right) + 1) {
+			if(height(left.left) >= height(left.right)) {
+				return new Node<T>(left.element, left.left, new Node<T>(element, left.right, right));
+			}
+			Node<T> middle = left.right;
+			return new Node<T>(middle.element, new Node<T>(left.element, left.left, middle.left),
+					new Node<T>(element, middle.right, right));
+		}
+		if(height(right) > height(left) + 1) {
+			if(height(right.right) >= height(right.left)) {
+				return new Node<T>(right.element, new Node<T>(element, left, right.left), right.right);
+			}
+			Node<T> middle = right.left;
+			return new Node<T>(middle.element, new Node<T>(element, left, middle.left),
+					new Node<T>(right.element, middle.right, right.right));
+		}
+		return new Node<T>(element, left, right);
+	}
+
+	/**
+	 * Performs action on each element of the subtree in order
+	 * @param node root of the subtree, possibly null
+	 * @param action action to perform
+	 */
+	private static <T> void walk(Node<T> node, Consumer<? super T> action) {
+		while(node != null) {
+			walk(node.left, action); //recursion depth is the tree height, O(log n)
+			action.accept(node.element);
+			node = node.right;
+		}
+	}
+
+	/**
+	 * Looks for element in the subtree in order, like walk, stopping at
+	 * the first match. O(n) at worst, where an iterator would descend from
+	 * the root for each element.
+	 * @param node root of the subtree, possibly null
+	 * @param element element to look for
+	 * @param offset index in the list of the subtree's first element
+	 * @return index in the list of the first match, or -1 if none
+	 */
+	private static <T> int find(Node<T> node, T element, int offset) {
+		while(node != null) {
+			int found = find(node.left, element, offset);
+			if(found >= 0) {
+				return found;
+			}
+			offset += size(node.left);
+			if(node.element.equals(element)) {
+				return offset;
+			}
+			offset++;
+			node = node.right;
+		}
+		return -1;
+	}
+
+	/**
+	 * Immutable tree node. Its fields are final, so a node is fully
+	 * visible to any thread that can reach it.
+	 */
+	private static class Node<T> {
+		private final T element;
+		private final Node<T> left;
+		private final Node<T> right;
+		private final int size; //nodes in this subtree
+		private final int height;
+
+		public Node(T element, Node<T> left, Node<T> right) {
+			this.element = element;
+			this.left = left;
+			this.right = right;
+			size = size(left) + size(right) + 1;
+			height = Math.max(height(left), height(right)) + 1;
+		}
+	}
+
+	/**
+	 * ListIterator for IUPersistentList.
+	 * It reads from the version that was current when it was created or
+	 * last changed the list, finding each element by index in O(log n).
+	 * @author seema
+	 *
+	 */
+	private class PLIterator implements ListIterator<T> {
+		private Node<T> version; //root this iterator reads from
+		private int nextIndex;
+		private int iterModCount;
+		private int lastReturnedIndex; //-1 if next()/previous() hasn't been called since the last change
+
+		public PLIterator(int startingIndex) {
+			if(startingIndex < 0 || startingIndex > size()) {
+				throw new IndexOutOfBoundsException();
+			}
+			version = root;
+			nextIndex = startingIndex;
+			iterModCount = modCount;
+			lastReturnedIndex = -1;
+		}
+
+		@Override
+		public void add(T element) {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			IUPersistentList.this.add(nextIndex, element);
+			nextIndex++;
+			changed();
+		}
+
+		@Override
+		public boolean hasNext() {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			return (nextIndex < size(version));
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			return (nextIndex > 0);
+		}
+
+		@Override
+		public T next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			lastReturnedIndex = nextIndex;
+			nextIndex++;
+			return nodeAt(version, lastReturnedIndex).element;
+		}
+
+		@Override
+		public int nextIndex() {
+			return nextIndex;
+		}
+
+		@Override
+		public T previous() {
+			if(!hasPrevious()) {
+				throw new NoSuchElementException();
+			}
+			nextIndex--;
+			lastReturnedIndex = nextIndex;
+			return nodeAt(version, lastReturnedIndex).element;
+		}
+
+		@Override
+		public int previousIndex() {
+			return (nextIndex - 1);
+		}
+
+		@Override
+		public void remove() {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(lastReturnedIndex < 0) {
+				throw new IllegalStateException();
+			}
+			removeAt(lastReturnedIndex);
+			if(lastReturnedIndex < nextIndex) { //last move was next()
+				nextIndex--;
+			}
+			changed();
+		}
+
+		@Override
+		public void set(T element) {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(lastReturnedIndex < 0) {
+				throw new IllegalStateException();
+			}
+			IUPersistentList.this.set(lastReturnedIndex, element);
+			version = root;
+			iterModCount = modCount;
+		}
+
+		/**
+		 * Moves the iterator onto the version it just created
+		 */
+		private void changed() {
+			version = root;
+			iterModCount = modCount;
+			lastReturnedIndex = -1;
+		}
+	}
+}
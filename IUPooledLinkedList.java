@@ -0,0 +1,451 @@
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Double-linked implementation of IndexedUnsortedList that keeps its nodes
+ * as parallel arrays (element, next, previous) indexed by slot number
+ * instead of LinearNode objects. Slots of removed elements go on a free
+ * list and are reused, so steady add/remove churn, such as queue-style
+ * addToRear/removeFirst, allocates nothing once the arrays have grown.
+ *
+ * @author seema
+ *
+ * @param <T> type to store
+ */
+public class IUPooledLinkedList<T> implements IndexedUnsortedList<T> {
+	private static final int NIL = -1; //"no slot", plays the part of null
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private Object[] elements;
+	private int[] next;
+	private int[] previous;
+	private int head;
+	private int tail;
+	private int size;
+	private int modCount; //useful for iterator class
+	private int freeSlot; //first reusable slot, the rest are chained through next[]
+	private int usedSlots; //slots below this have been handed out at least once
+	private int finger; //last slot reached by index
+	private int fingerIndex;
+	private int fingerModCount; //finger is only trusted while this matches modCount
+
+	public IUPooledLinkedList() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty list with room for capacity elements before growing
+	 * @param capacity initial number of slots
+	 */
+	public IUPooledLinkedList(int capacity) {
+		elements = new Object[Math.max(capacity, 1)];
+		next = new int[elements.length];
+		previous = new int[elements.length];
+		head = tail = NIL;
+		size = 0;
+		modCount = 0;
+		freeSlot = NIL;
+		usedSlots = 0;
+		finger = NIL;
+	}
+
+	@Override
+	public void addToFront(T element) {
+		linkBefore(element, head);
+	}
+
+	@Override
+	public void addToRear(T element) {
+		linkBefore(element, NIL);
+	}
+
+	@Override
+	public void add(T element) {
+		addToRear(element);
+	}
+
+	@Override
+	public void addAfter(T element, T target) {
+		int slot = find(target);
+		if(slot == NIL) {
+			throw new NoSuchElementException();
+		}
+		linkBefore(element, next[slot]);
+	}
+
+	@Override
+	public void add(int index, T element) {
+		if(index < 0 || index > size) {
+			throw new IndexOutOfBoundsException();
+		}
+		linkBefore(element, (index == size) ? NIL : slotAt(index));
+	}
+
+	@Override
+	public T removeFirst() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return unlink(head);
+	}
+
+	@Override
+	public T removeLast() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return unlink(tail);
+	}
+
+	@Override
+	public T remove(T element) {
+		int slot = find(element);
+		if(slot == NIL) {
+			throw new NoSuchElementException();
+		}
+		return unlink(slot);
+	}
+
+	@Override
+	public T remove(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+		return unlink(slotAt(index));
+	}
+
+	@Override
+	public void set(int index, T element) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+		elements[slotAt(index)] = element;
+		modCount++;
+		fingerModCount = modCount; //set() doesn't move any slots
+	}
+
+	@Override
+	public T get(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+		return elementAt(slotAt(index));
+	}
+
+	@Override
+	public int indexOf(T element) {
+		int index = 0;
+		for(int slot = head; slot != NIL; slot = next[slot]) {
+			if(elements[slot].equals(element)) {
+				return index;
+			}
+			index++;
+		}
+		return -1;
+	}
+
+	@Override
+	public T first() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return elementAt(head);
+	}
+
+	@Override
+	public T last() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return elementAt(tail);
+	}
+
+	@Override
+	public boolean contains(T target) {
+		return (find(target) != NIL);
+	}
+
+	/**
+	 * Appends proper syntax for given list
+	 */
+	public String toString() {
+		StringBuilder str = new StringBuilder();
+		str.append("[");
+		for(int slot = head; slot != NIL; slot = next[slot]) {
+			str.append(elements[slot].toString());
+			str.append(", ");
+		}
+		if(!isEmpty()) {
+			str.delete(str.length()-2, str.length());
+		}
+		str.append("]");
+		return str.toString();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return listIterator();
+	}
+
+	@Override
+	public ListIterator<T> listIterator() {
+		return new PooledIterator(0);
+	}
+
+	@Override
+	public ListIterator<T> listIterator(int startingIndex) {
+		return new PooledIterator(startingIndex);
+	}
+
+	/**
+	 * Finds the first slot holding target
+	 * @param target element to look for
+	 * @return slot of target, or NIL
+	 */
+	private int find(T target) {
+		int slot = head;
+		while(slot != NIL && !elements[slot].equals(target)) {
+			slot = next[slot];
+		}
+		return slot;
+	}
+
+	/**
+	 * Finds the slot at the given index, walking from whichever of head,
+	 * tail or the finger is closest, and leaves the finger on that slot.
+	 * @param index valid index (0 <= index < size)
+	 * @return slot at index
+	 */
+	private int slotAt(int index) {
+		int current = head;
+		int position = 0;
+		if(size - 1 - index < index) {
+			current = tail;
+			position = size - 1;
+		}
+		if(finger != NIL && fingerModCount == modCount
+				&& Math.abs(index - fingerIndex) < Math.abs(index - position)) {
+			current = finger;
+			position = fingerIndex;
+		}
+		while(position < index) {
+			current = next[current];
+			position++;
+		}
+		while(position > index) {
+			current = previous[current];
+			position--;
+		}
+		finger = current;
+		fingerIndex = index;
+		fingerModCount = modCount;
+		return current;
+	}
+
+	/**
+	 * Stores element in a free slot and links it in before successor
+	 * @param element element to store
+	 * @param successor slot to link before, or NIL to link at the rear
+	 * @return the new slot
+	 */
+	private int linkBefore(T element, int successor) {
+		int slot = freeSlot;
+		if(slot != NIL) {
+			freeSlot = next[slot];
+		} else {
+			if(usedSlots == elements.length) {
+				grow();
+			}
+			slot = usedSlots++;
+		}
+		int predecessor = (successor == NIL) ? tail : previous[successor];
+		elements[slot] = element;
+		next[slot] = successor;
+		previous[slot] = predecessor;
+		if(predecessor == NIL) {
+			head = slot;
+		} else {
+			next[predecessor] = slot;
+		}
+		if(successor == NIL) {
+			tail = slot;
+		} else {
+			previous[successor] = slot;
+		}
+		size++;
+		modCount++;
+		return slot;
+	}
+
+	/**
+	 * Unlinks a slot and puts it on the free list
+	 * @param slot slot in use
+	 * @return the element it held
+	 */
+	private T unlink(int slot) {
+		int predecessor = previous[slot];
+		int successor = next[slot];
+		if(predecessor == NIL) {
+			head = successor;
+		} else {
+			next[predecessor] = successor;
+		}
+		if(successor == NIL) {
+			tail = predecessor;
+		} else {
+			previous[successor] = predecessor;
+		}
+		T retVal = elementAt(slot);
+		elements[slot] = null; //don't hold on to removed elements
+		next[slot] = freeSlot;
+		freeSlot = slot;
+		size--;
+		modCount++;
+		return retVal;
+	}
+
+	/**
+	 * @param slot slot in use
+	 * @return element stored in slot
+	 */
+	@SuppressWarnings("unchecked")
+	private T elementAt(int slot) {
+		return (T) elements[slot];
+	}
+
+	/**
+	 * Doubles the slot arrays
+	 */
+	private void grow() {
+		int capacity = elements.length * 2;
+		elements = Arrays.copyOf(elements, capacity);
+		next = Arrays.copyOf(next, capacity);
+		previous = Arrays.copyOf(previous, capacity);
+	}
+
+	/**
+	 * ListIterator for IUPooledLinkedList
+	 * Alters list based on position of the iterator.
+	 * @author seema
+	 *
+	 */
+	private class PooledIterator implements ListIterator<T> {
+		private int nextSlot;
+		private int iterModCount; //incremented each time iterator is modified
+		private int nextIndex;
+		private int lastReturnedSlot; //most useful for set() and remove()
+
+		public PooledIterator(int startingIndex) {
+			if(startingIndex < 0 || startingIndex > size) {
+				throw new IndexOutOfBoundsException();
+			}
+			nextSlot = (startingIndex == size) ? NIL : slotAt(startingIndex);
+			nextIndex = startingIndex;
+			iterModCount = modCount;
+			lastReturnedSlot = NIL;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			return (nextSlot != NIL);
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			return (nextSlot != head);
+		}
+
+		@Override
+		public T next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			lastReturnedSlot = nextSlot;
+			nextSlot = next[nextSlot];
+			nextIndex++;
+			return elementAt(lastReturnedSlot);
+		}
+
+		@Override
+		public T previous() {
+			if(!hasPrevious()) {
+				throw new NoSuchElementException();
+			}
+			nextSlot = (nextSlot == NIL) ? tail : previous[nextSlot];
+			lastReturnedSlot = nextSlot;
+			nextIndex--;
+			return elementAt(nextSlot);
+		}
+
+		@Override
+		public int nextIndex() {
+			return nextIndex;
+		}
+
+		@Override
+		public int previousIndex() {
+			return (nextIndex - 1);
+		}
+
+		@Override
+		public void remove() {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(lastReturnedSlot == NIL) {
+				throw new IllegalStateException();
+			}
+			if(lastReturnedSlot == nextSlot) { //last move was previous()
+				nextSlot = next[nextSlot];
+			} else {
+				nextIndex--;
+			}
+			unlink(lastReturnedSlot);
+			lastReturnedSlot = NIL;
+			iterModCount++;
+		}
+
+		@Override
+		public void set(T element) {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(lastReturnedSlot == NIL) {
+				throw new IllegalStateException();
+			}
+			elements[lastReturnedSlot] = element;
+			modCount++;
+			iterModCount++;
+		}
+
+		@Override
+		public void add(T element) {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			linkBefore(element, nextSlot);
+			lastReturnedSlot = NIL;
+			nextIndex++;
+			iterModCount++;
+		}
+	}
+}
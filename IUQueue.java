@@ -0,0 +1,49 @@
+/**
+ *  Interface for the queue subset of the IndexedUnsortedList ADT:
+ *  elements go in at the rear and come out at the front. Every
+ *  IndexedUnsortedList is an IUQueue, so code that only queues
+ *  can take a ring buffer or a list alike.
+ *
+ * @author seema
+ *
+ * @param <T> - class of objects stored in the queue
+ */
+public interface IUQueue<T>
+{
+    /**
+     * Adds the specified element to the rear of this queue.
+     *
+     * @param element the element to be added to the rear of this queue
+     */
+    public void addToRear(T element);
+
+    /**
+     * Removes and returns the first element from this queue.
+     *
+     * @return the first element from this queue
+     * @throws NoSuchElementException if queue contains no elements
+     */
+    public T removeFirst();
+
+    /**
+     * Returns a reference to the first element in this queue.
+     *
+     * @return a reference to the first element in this queue
+     * @throws NoSuchElementException if queue contains no elements
+     */
+    public T first();
+
+    /**
+     * Returns true if this queue contains no elements.
+     *
+     * @return true if this queue contains no elements
+     */
+    public boolean isEmpty();
+
+    /**
+     * Returns the number of elements in this queue.
+     *
+     * @return the integer representation of number of elements in this queue
+     */
+    public int size();
+}
@@ -0,0 +1,595 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe IndexedUnsortedList split into a fixed number of segments,
+ * each an IUDoubleLinkedList behind its own StampedLock, so writers working
+ * in different regions of the list do not wait for one another.
+ *
+ * A Fenwick tree of segment sizes, kept in an AtomicIntegerArray, routes
+ * an index to its segment in O(log segments) without taking any lock.
+ * After locking the segment, the route is checked again and retried if
+ * another thread moved things in between. Reads inside a segment are
+ * optimistic, as in IUStampedLockList.
+ *
+ * When a change leaves a segment more than twice the average size, or
+ * less than half of it, the list is rebalanced. All segments are
+ * write-locked in order and runs of nodes are moved between neighbours
+ * with splitAt, insertAll and appendAll, so no element is copied.
+ *
+ * The order of the list pins addToFront and removeFirst to the first
+ * non-empty segment and addToRear, add and removeLast to the last, so
+ * threads working only at the ends all wait on the same lock, as they
+ * would in one list. Segments pay off when threads work at indexes or
+ * elements spread across the list.
+ *
+ * Operations within one segment are atomic. Operations that span
+ * segments are not. indexOf, contains, first, last, removeFirst,
+ * removeLast, remove(T) and addAfter visit segments one at a time, and an
+ * index only stays put if no segment before it changes meanwhile. A pass
+ * that finds nothing is run again if a rebalance moved nodes during it,
+ * so an element present throughout is never missed.
+ * Iterators work on a snapshot taken with every segment read-locked.
+ *
+ * @author seema
+ *
+ * @param <T> type to store
+ */
+public class IUSegmentedList<T> implements IndexedUnsortedList<T> {
+	private static final int DEFAULT_SEGMENTS = 16;
+	private static final int MIN_SKEW = 64; //segments, or averages, no bigger than this never trigger a rebalance
+
+	private final Segment<T>[] segments;
+	private final AtomicIntegerArray tree; //Fenwick tree of segment sizes, 1-based
+	private volatile int rebalances; //rebalances that moved nodes, so a pass that missed can tell if they moved behind it
+
+	public IUSegmentedList() {
+		this(DEFAULT_SEGMENTS);
+	}
+
+	/**
+	 * Creates an empty list
+	 * @param segmentCount number of independently locked segments
+	 * @throws IllegalArgumentException if segmentCount is less than 1
+	 */
+	@SuppressWarnings("unchecked")
+	public IUSegmentedList(int segmentCount) {
+		if(segmentCount < 1) {
+			throw new IllegalArgumentException();
+		}
+		segments = (Segment<T>[]) new Segment<?>[segmentCount];
+		for(int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment<T>();
+		}
+		tree = new AtomicIntegerArray(segmentCount + 1);
+	}
+
+	@Override
+	public void addToFront(T element) {
+		Segment<T> segment = segments[0];
+		long stamp = segment.lock.writeLock();
+		boolean skewed;
+		try {
+			segment.list.addToFront(element);
+			skewed = resized(0, 1);
+		} finally {
+			segment.lock.unlockWrite(stamp);
+		}
+		if(skewed) {
+			rebalance();
+		}
+	}
+
+	@Override
+	public void addToRear(T element) {
+		int last = segments.length - 1;
+		Segment<T> segment = segments[last];
+		long stamp = segment.lock.writeLock();
+		boolean skewed;
+		try {
+			segment.list.addToRear(element);
+			skewed = resized(last, 1);
+		} finally {
+			segment.lock.unlockWrite(stamp);
+		}
+		if(skewed) {
+			rebalance();
+		}
+	}
+
+	@Override
+	public void add(T element) {
+		addToRear(element);
+	}
+
+	@Override
+	public void addAfter(T element, T target) {
+		int seen;
+		do {
+			seen = rebalances;
+			for(int i = 0; i < segments.length; i++) {
+				Segment<T> segment = segments[i];
+				long stamp = segment.lock.writeLock();
+				boolean skewed;
+				try {
+					if(!segment.list.contains(target)) {
+						continue;
+					}
+					segment.list.addAfter(element, target);
+					skewed = resized(i, 1);
+				} finally {
+					segment.lock.unlockWrite(stamp);
+				}
+				if(skewed) {
+					rebalance();
+				}
+				return;
+			}
+		} while(seen != rebalances); //target may have moved into a segment already passed
+		throw new NoSuchElementException();
+	}
+
+	@Override
+	public void add(int index, T element) {
+		while(true) {
+			if(index < 0 || index > size()) {
+				throw new IndexOutOfBoundsException();
+			}
+			int i = segmentOf(index);
+			Segment<T> segment = segments[i];
+			long stamp = segment.lock.writeLock();
+			boolean skewed;
+			try {
+				int offset = index - prefix(i);
+				if(offset < 0 || offset > segment.list.size()) {
+					continue; //routed on sizes that have changed since
+				}
+				segment.list.add(offset, element);
+				skewed = resized(i, 1);
+			} finally {
+				segment.lock.unlockWrite(stamp);
+			}
+			if(skewed) {
+				rebalance();
+			}
+			return;
+		}
+	}
+
+	@Override
+	public T removeFirst() {
+		int seen;
+		do {
+			seen = rebalances;
+			for(int i = 0; i < segments.length; i++) {
+				Segment<T> segment = segments[i];
+				long stamp = segment.lock.writeLock();
+				T retVal;
+				boolean skewed;
+				try {
+					if(segment.list.isEmpty()) {
+						continue;
+					}
+					retVal = segment.list.removeFirst();
+					skewed = resized(i, -1);
+				} finally {
+					segment.lock.unlockWrite(stamp);
+				}
+				if(skewed) {
+					rebalance();
+				}
+				return retVal;
+			}
+		} while(seen != rebalances);
+		throw new NoSuchElementException();
+	}
+
+	@Override
+	public T removeLast() {
+		int seen;
+		do {
+			seen = rebalances;
+			for(int i = segments.length - 1; i >= 0; i--) {
+				Segment<T> segment = segments[i];
+				long stamp = segment.lock.writeLock();
+				T retVal;
+				boolean skewed;
+				try {
+					if(segment.list.isEmpty()) {
+						continue;
+					}
+					retVal = segment.list.removeLast();
+					skewed = resized(i, -1);
+				} finally {
+					segment.lock.unlockWrite(stamp);
+				}
+				if(skewed) {
+					rebalance();
+				}
+				return retVal;
+			}
+		} while(seen != rebalances);
+		throw new NoSuchElementException();
+	}
+
+	@Override
+	public T remove(T element) {
+		int seen;
+		do {
+			seen = rebalances;
+			for(int i = 0; i < segments.length; i++) {
+				Segment<T> segment = segments[i];
+				long stamp = segment.lock.writeLock();
+				T retVal;
+				boolean skewed;
+				try {
+					if(!segment.list.contains(element)) {
+						continue;
+					}
+					retVal = segment.list.remove(element);
+					skewed = resized(i, -1);
+				} finally {
+					segment.lock.unlockWrite(stamp);
+				}
+				if(skewed) {
+					rebalance();
+				}
+				return retVal;
+			}
+		} while(seen != rebalances);
+		throw new NoSuchElementException();
+	}
+
+	@Override
+	public T remove(int index) {
+		while(true) {
+			if(index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException();
+			}
+			int i = segmentOf(index);
+			Segment<T> segment = segments[i];
+			long stamp = segment.lock.writeLock();
+			T retVal;
+			boolean skewed;
+			try {
+				int offset = index - prefix(i);
+				if(offset < 0 || offset >= segment.list.size()) {
+					continue; //routed on sizes that have changed since
+				}
+				retVal = segment.list.remove(offset);
+				skewed = resized(i, -1);
+			} finally {
+				segment.lock.unlockWrite(stamp);
+			}
+			if(skewed) {
+				rebalance();
+			}
+			return retVal;
+		}
+	}
+
+	@Override
+	public void set(int index, T element) {
+		while(true) {
+			if(index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException();
+			}
+			int i = segmentOf(index);
+			Segment<T> segment = segments[i];
+			long stamp = segment.lock.writeLock();
+			try {
+				int offset = index - prefix(i);
+				if(offset >= 0 && offset < segment.list.size()) {
+					segment.list.set(offset, element);
+					return;
+				}
+			} finally {
+				segment.lock.unlockWrite(stamp);
+			}
+		}
+	}
+
+	@Override
+	public T get(int index) {
+		while(true) {
+			if(index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException();
+			}
+			int i = segmentOf(index);
+			Segment<T> segment = segments[i];
+			int offset = index - prefix(i);
+			try {
+				return read(segment, () -> segment.list.peek(offset));
+			} catch(IndexOutOfBoundsException e) {
+				//routed on sizes that have changed since
+			}
+		}
+	}
+
+	@Override
+	public int indexOf(T element) {
+		int seen;
+		do {
+			seen = rebalances;
+			int passed = 0;
+			for(Segment<T> segment : segments) {
+				//index within the segment, or -1 - size of the segment
+				int found = read(segment, () -> {
+					int index = segment.list.scan(element);
+					return (index >= 0) ? index : -1 - segment.list.size();
+				});
+				if(found >= 0) {
+					return passed + found;
+				}
+				passed += -1 - found;
+			}
+		} while(seen != rebalances);
+		return -1;
+	}
+
+	@Override
+	public T first() {
+		int seen;
+		do {
+			seen = rebalances;
+			for(Segment<T> segment : segments) {
+				T retVal = read(segment, () -> segment.list.isEmpty() ? null : segment.list.first());
+				if(retVal != null) {
+					return retVal;
+				}
+			}
+		} while(seen != rebalances);
+		throw new NoSuchElementException();
+	}
+
+	@Override
+	public T last() {
+		int seen;
+		do {
+			seen = rebalances;
+			for(int i = segments.length - 1; i >= 0; i--) {
+				Segment<T> segment = segments[i];
+				T retVal = read(segment, () -> segment.list.isEmpty() ? null : segment.list.last());
+				if(retVal != null) {
+					return retVal;
+				}
+			}
+		} while(seen != rebalances);
+		throw new NoSuchElementException();
+	}
+
+	@Override
+	public boolean contains(T target) {
+		return (indexOf(target) >= 0);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (size() == 0);
+	}
+
+	@Override
+	public int size() {
+		return prefix(segments.length);
+	}
+
+	/**
+	 * Appends proper syntax for given list
+	 */
+	public String toString() {
+		return snapshot().toString();
+	}
+
+	/**
+	 * Returns an Iterator over a snapshot of the list, which does not support remove
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return snapshot().iterator();
+	}
+
+	/**
+	 * Returns a ListIterator over a snapshot of the list, which does not
+	 * support add, remove or set
+	 */
+	@Override
+	public ListIterator<T> listIterator() {
+		return snapshot().listIterator();
+	}
+
+	/**
+	 * Returns a ListIterator over a snapshot of the list, which does not
+	 * support add, remove or set
+	 */
+	@Override
+	public ListIterator<T> listIterator(int startingIndex) {
+		List<T> snapshot = snapshot();
+		if(startingIndex < 0 || startingIndex > snapshot.size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		return snapshot.listIterator(startingIndex);
+	}
+
+	/**
+	 * Returns a Spliterator over a snapshot of the list
+	 */
+	@Override
+	public Spliterator<T> spliterator() {
+		return Spliterators.spliterator(snapshot(), Spliterator.ORDERED | Spliterator.IMMUTABLE);
+	}
+
+	/**
+	 * Runs reader against one segment optimistically, and again under the
+	 * segment's read lock if a writer got in while it ran
+	 * @param segment segment to read
+	 * @param reader read to run, which must not write anything shared
+	 * @return reader's answer from a run no writer overlapped
+	 */
+	private <R> R read(Segment<T> segment, Supplier<R> reader) {
+		long stamp = segment.lock.tryOptimisticRead();
+		if(stamp != 0) {
+			try {
+				R retVal = reader.get();
+				if(segment.lock.validate(stamp)) {
+					return retVal;
+				}
+			} catch(RuntimeException e) {
+				if(segment.lock.validate(stamp)) { //a genuine failure, not a torn read
+					throw e;
+				}
+			}
+		}
+		stamp = segment.lock.readLock();
+		try {
+			return reader.get();
+		} finally {
+			segment.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Copies the elements with every segment read-locked
+	 * @return unmodifiable copy of the list
+	 */
+	private List<T> snapshot() {
+		long[] stamps = new long[segments.length];
+		for(int i = 0; i < segments.length; i++) {
+			stamps[i] = segments[i].lock.readLock();
+		}
+		try {
+			ArrayList<T> copy = new ArrayList<T>();
+			for(Segment<T> segment : segments) {
+				segment.list.forEach(copy::add);
+			}
+			return Collections.unmodifiableList(copy);
+		} finally {
+			for(int i = segments.length - 1; i >= 0; i--) {
+				segments[i].lock.unlockRead(stamps[i]);
+			}
+		}
+	}
+
+	/**
+	 * Records a change in the size of a segment, whose write lock the
+	 * caller holds
+	 * @param segment index of the segment
+	 * @param delta change in its size
+	 * @return true if the segment has grown or shrunk enough to need a rebalance
+	 */
+	private boolean resized(int segment, int delta) {
+		for(int i = segment + 1; i < tree.length(); i += i & -i) {
+			tree.getAndAdd(i, delta);
+		}
+		return skewed(segments[segment].list.size(), size());
+	}
+
+	/**
+	 * Tells whether a segment is far enough from the average size to need
+	 * a rebalance
+	 * @param size size of the segment
+	 * @param total size of the list
+	 * @return true if size is over twice the average, or under half of it
+	 */
+	private boolean skewed(int size, int total) {
+		int average = total / segments.length;
+		return (size > MIN_SKEW && size > 2 * average) || (average > MIN_SKEW && size < average / 2);
+	}
+
+	/**
+	 * Returns the number of elements in the segments before segment
+	 * @param segment index of a segment, or the number of segments for the total
+	 * @return sum of their sizes
+	 */
+	private int prefix(int segment) {
+		int sum = 0;
+		for(int i = segment; i > 0; i -= i & -i) {
+			sum += tree.get(i);
+		}
+		return sum;
+	}
+
+	/**
+	 * Finds the segment holding index by descending the Fenwick tree
+	 * @param index index into the whole list
+	 * @return index of the segment holding it, or the last segment if
+	 *  index is at or past the end
+	 */
+	private int segmentOf(int index) {
+		int segment = 0;
+		int remaining = index;
+		for(int step = Integer.highestOneBit(segments.length); step > 0; step >>= 1) {
+			int next = segment + step;
+			if(next <= segments.length && tree.get(next) <= remaining) {
+				segment = next;
+				remaining -= tree.get(next);
+			}
+		}
+		return Math.min(segment, segments.length - 1);
+	}
+
+	/**
+	 * Evens out segment sizes. Every segment is write-locked, in order, and
+	 * runs of nodes move between neighbours by relinking.
+	 */
+	private void rebalance() {
+		long[] stamps = new long[segments.length];
+		for(int i = 0; i < segments.length; i++) {
+			stamps[i] = segments[i].lock.writeLock();
+		}
+		try {
+			int[] before = new int[segments.length];
+			int total = 0;
+			int largest = 0;
+			int smallest = Integer.MAX_VALUE;
+			for(int i = 0; i < segments.length; i++) {
+				before[i] = segments[i].list.size();
+				total += before[i];
+				largest = Math.max(largest, before[i]);
+				smallest = Math.min(smallest, before[i]);
+			}
+			if(!skewed(largest, total) && !skewed(smallest, total)) {
+				return; //another thread got here first
+			}
+			for(int i = 0; i < segments.length - 1; i++) {
+				int want = total / segments.length + ((i < total % segments.length) ? 1 : 0);
+				IUDoubleLinkedList<T> list = segments[i].list;
+				if(list.size() > want) {
+					segments[i + 1].list.insertAll(0, list.splitAt(want));
+				}
+				for(int j = i + 1; list.size() < want && j < segments.length; j++) {
+					IUDoubleLinkedList<T> next = segments[j].list;
+					int need = want - list.size();
+					if(next.size() > need) {
+						segments[j].list = next.splitAt(need);
+					}
+					list.appendAll(next);
+				}
+			}
+			for(int i = 0; i < segments.length; i++) {
+				resized(i, segments[i].list.size() - before[i]);
+			}
+			rebalances++; //only one thread can be here, with every segment locked
+		} finally {
+			for(int i = segments.length - 1; i >= 0; i--) {
+				segments[i].lock.unlockWrite(stamps[i]);
+			}
+		}
+	}
+
+	/**
+	 * One independently locked run of the list
+	 */
+	private static class Segment<T> {
+		private IUDoubleLinkedList<T> list = new IUDoubleLinkedList<T>(); //replaced only while rebalancing
+		private final StampedLock lock = new StampedLock();
+	}
+}
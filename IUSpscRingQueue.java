@@ -0,0 +1,231 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Bounded single-producer, single-consumer queue in a ring of array slots.
+ * One thread may add and one other thread may remove at the same time,
+ * without locks and without allocating anything per element.
+ *
+ * The producer owns the tail sequence and the consumer the head sequence.
+ * Each side publishes its sequence with a release store (the VarHandle
+ * form of lazySet) only after its slot work is done, and keeps a cached
+ * copy of the other side's sequence so it rarely has to read it. The
+ * sequences and caches live in one long array, spaced a cache line pair
+ * apart so the two threads never write the same line.
+ *
+ * addAll and drain move a whole batch for a single sequence publication.
+ * Nulls are not allowed.
+ *
+ * @author seema
+ *
+ * @param <T> type to store
+ */
+public class IUSpscRingQueue<T> implements IUQueue<T> {
+	private static final int PAD = 16; //longs between hot counters, 128 bytes
+	private static final int TAIL = PAD; //next sequence to fill, written by the producer
+	private static final int HEAD_CACHE = PAD + 1; //producer's last look at HEAD
+	private static final int HEAD = 3 * PAD; //next sequence to empty, written by the consumer
+	private static final int TAIL_CACHE = 3 * PAD + 1; //consumer's last look at TAIL
+	private static final VarHandle SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
+
+	private final Object[] slots;
+	private final int mask;
+	private final long[] sequences;
+
+	/**
+	 * Creates an empty queue
+	 * @param capacity most elements the queue may hold, rounded up to a
+	 *  power of two
+	 * @throws IllegalArgumentException if capacity is not positive or is
+	 *  above 2^30
+	 */
+	public IUSpscRingQueue(int capacity) {
+		if(capacity <= 0 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException();
+		}
+		int length = Integer.highestOneBit(capacity);
+		if(length < capacity) {
+			length <<= 1;
+		}
+		slots = new Object[length];
+		mask = length - 1;
+		sequences = new long[4 * PAD];
+	}
+
+	/**
+	 * Returns how many elements the queue can hold
+	 * @return capacity, a power of two
+	 */
+	public int capacity() {
+		return slots.length;
+	}
+
+	/**
+	 * Adds element at the rear if there is room. Producer thread only.
+	 * @param element element to add
+	 * @return true if element was added, false if the queue was full
+	 * @throws NullPointerException if element is null
+	 */
+	public boolean offer(T element) {
+		if(element == null) {
+			throw new NullPointerException();
+		}
+		long tail = sequences[TAIL];
+		if(tail - sequences[HEAD_CACHE] == slots.length) {
+			sequences[HEAD_CACHE] = (long) SEQUENCE.getAcquire(sequences, HEAD);
+			if(tail - sequences[HEAD_CACHE] == slots.length) {
+				return false;
+			}
+		}
+		slots[(int) tail & mask] = element;
+		SEQUENCE.setRelease(sequences, TAIL, tail + 1); //publishes the slot
+		return true;
+	}
+
+	/**
+	 * Adds element at the rear. Producer thread only.
+	 * @throws IllegalStateException if the queue is full
+	 * @throws NullPointerException if element is null
+	 */
+	@Override
+	public void addToRear(T element) {
+		if(!offer(element)) {
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * Adds as many of elements[offset] through elements[offset + count - 1]
+	 * as fit, in order, publishing them all at once. Producer thread only.
+	 * @param elements array holding the batch
+	 * @param offset index of the first element to add
+	 * @param count number of elements to try to add
+	 * @return number of elements added, from the front of the batch
+	 * @throws IndexOutOfBoundsException if the range is outside elements
+	 * @throws NullPointerException if an element to be added is null, after
+	 *  the elements before it have been added
+	 */
+	public int addAll(T[] elements, int offset, int count) {
+		if(offset < 0 || count < 0 || offset > elements.length - count) {
+			throw new IndexOutOfBoundsException();
+		}
+		long tail = sequences[TAIL];
+		long room = slots.length - (tail - sequences[HEAD_CACHE]);
+		if(room < count) {
+			sequences[HEAD_CACHE] = (long) SEQUENCE.getAcquire(sequences, HEAD);
+			room = slots.length - (tail - sequences[HEAD_CACHE]);
+		}
+		int claimed = (int) Math.min(room, count);
+		for(int i = 0; i < claimed; i++) {
+			T element = elements[offset + i];
+			if(element == null) {
+				SEQUENCE.setRelease(sequences, TAIL, tail + i); //publishes what came before it
+				throw new NullPointerException();
+			}
+			slots[(int) (tail + i) & mask] = element;
+		}
+		SEQUENCE.setRelease(sequences, TAIL, tail + claimed);
+		return claimed;
+	}
+
+	/**
+	 * Removes the front element if there is one. Consumer thread only.
+	 * @return removed element, or null if the queue was empty
+	 */
+	public T poll() {
+		long head = sequences[HEAD];
+		if(head == sequences[TAIL_CACHE]) {
+			sequences[TAIL_CACHE] = (long) SEQUENCE.getAcquire(sequences, TAIL);
+			if(head == sequences[TAIL_CACHE]) {
+				return null;
+			}
+		}
+		int slot = (int) head & mask;
+		@SuppressWarnings("unchecked")
+		T retVal = (T) slots[slot];
+		slots[slot] = null; //lets the element be collected
+		SEQUENCE.setRelease(sequences, HEAD, head + 1); //hands the slot back
+		return retVal;
+	}
+
+	/**
+	 * Removes the front element. Consumer thread only.
+	 * @throws NoSuchElementException if the queue is empty
+	 */
+	@Override
+	public T removeFirst() {
+		T retVal = poll();
+		if(retVal == null) {
+			throw new NoSuchElementException();
+		}
+		return retVal;
+	}
+
+	/**
+	 * Removes up to max elements from the front, passing each to action in
+	 * order, and hands their slots back all at once. Consumer thread only.
+	 * @param action action to perform on each element
+	 * @param max most elements to remove
+	 * @return number of elements removed
+	 */
+	public int drain(Consumer<? super T> action, int max) {
+		if(action == null) {
+			throw new NullPointerException();
+		}
+		long head = sequences[HEAD];
+		if(sequences[TAIL_CACHE] - head < max) {
+			sequences[TAIL_CACHE] = (long) SEQUENCE.getAcquire(sequences, TAIL);
+		}
+		int count = (int) Math.min(sequences[TAIL_CACHE] - head, Math.max(max, 0));
+		int done = 0;
+		try {
+			while(done < count) {
+				int slot = (int) (head + done) & mask;
+				@SuppressWarnings("unchecked")
+				T element = (T) slots[slot];
+				slots[slot] = null;
+				done++;
+				action.accept(element);
+			}
+		} finally {
+			SEQUENCE.setRelease(sequences, HEAD, head + done); //elements action was given are gone even if it threw
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the front element. Consumer thread only.
+	 * @throws NoSuchElementException if the queue is empty
+	 */
+	@Override
+	public T first() {
+		long head = sequences[HEAD];
+		if(head == sequences[TAIL_CACHE]) {
+			sequences[TAIL_CACHE] = (long) SEQUENCE.getAcquire(sequences, TAIL);
+			if(head == sequences[TAIL_CACHE]) {
+				throw new NoSuchElementException();
+			}
+		}
+		@SuppressWarnings("unchecked")
+		T retVal = (T) slots[(int) head & mask];
+		return retVal;
+	}
+
+	/**
+	 * Returns the number of elements. From threads other than the
+	 * producer and consumer it is only an estimate.
+	 */
+	@Override
+	public int size() {
+		long head = (long) SEQUENCE.getAcquire(sequences, HEAD);
+		long tail = (long) SEQUENCE.getAcquire(sequences, TAIL);
+		return (int) Math.max(0, Math.min(tail - head, slots.length)); //the reads may straddle changes
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (size() == 0);
+	}
+}
@@ -0,0 +1,271 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe IndexedUnsortedList for read-mostly sharing, wrapping an
+ * IUDoubleLinkedList behind a StampedLock.
+ *
+ * Reads first run with an optimistic stamp, which takes no lock and
+ * writes nothing, so readers never block one another or bounce a cache
+ * line between cores. The stamp is validated afterwards. If a writer got
+ * in, the answer (or any exception the torn read caused) is thrown away
+ * and the read runs again under the read lock. Reads use the list's
+ * peek and scan, which leave its finger alone and always finish. Writes
+ * take the write lock.
+ *
+ * Iterators, list iterators and spliterators work on a snapshot copied
+ * under the read lock. They never throw ConcurrentModificationException
+ * and do not support changes.
+ *
+ * @author seema
+ *
+ * @param <T> type to store
+ */
+public class IUStampedLockList<T> implements IndexedUnsortedList<T> {
+	private final IUDoubleLinkedList<T> list;
+	private final StampedLock lock;
+
+	public IUStampedLockList() {
+		this(false);
+	}
+
+	/**
+	 * Creates an empty list
+	 * @param skipIndexed true to give the wrapped list a skip-list index,
+	 *  making get O(log n)
+	 */
+	public IUStampedLockList(boolean skipIndexed) {
+		list = new IUDoubleLinkedList<T>(skipIndexed);
+		lock = new StampedLock();
+	}
+
+	/**
+	 * Runs reader optimistically, and again under the read lock if a
+	 * writer got in while it ran
+	 * @param reader read to run, which must not write anything shared
+	 * @return reader's answer from a run no writer overlapped
+	 */
+	private <R> R read(Supplier<R> reader) {
+		long stamp = lock.tryOptimisticRead();
+		if(stamp != 0) {
+			try {
+				R retVal = reader.get();
+				if(lock.validate(stamp)) {
+					return retVal;
+				}
+			} catch(RuntimeException e) {
+				if(lock.validate(stamp)) { //a genuine failure, not a torn read
+					throw e;
+				}
+			}
+		}
+		stamp = lock.readLock();
+		try {
+			return reader.get();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	@Override
+	public void addToFront(T element) {
+		long stamp = lock.writeLock();
+		try {
+			list.addToFront(element);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public void addToRear(T element) {
+		long stamp = lock.writeLock();
+		try {
+			list.addToRear(element);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public void add(T element) {
+		addToRear(element);
+	}
+
+	@Override
+	public void addAfter(T element, T target) {
+		long stamp = lock.writeLock();
+		try {
+			list.addAfter(element, target);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public void add(int index, T element) {
+		long stamp = lock.writeLock();
+		try {
+			list.add(index, element);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public T removeFirst() {
+		long stamp = lock.writeLock();
+		try {
+			return list.removeFirst();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public T removeLast() {
+		long stamp = lock.writeLock();
+		try {
+			return list.removeLast();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public T remove(T element) {
+		long stamp = lock.writeLock();
+		try {
+			return list.remove(element);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public T remove(int index) {
+		long stamp = lock.writeLock();
+		try {
+			return list.remove(index);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public void set(int index, T element) {
+		long stamp = lock.writeLock();
+		try {
+			list.set(index, element);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public T get(int index) {
+		return read(() -> list.peek(index));
+	}
+
+	@Override
+	public int indexOf(T element) {
+		return read(() -> list.scan(element));
+	}
+
+	@Override
+	public T first() {
+		return read(list::first);
+	}
+
+	@Override
+	public T last() {
+		return read(list::last);
+	}
+
+	@Override
+	public boolean contains(T target) {
+		return (indexOf(target) >= 0);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return read(list::isEmpty);
+	}
+
+	@Override
+	public int size() {
+		return read(list::size);
+	}
+
+	/**
+	 * Appends proper syntax for given list
+	 */
+	public String toString() {
+		long stamp = lock.readLock();
+		try {
+			return list.toString();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Copies the elements under the read lock
+	 * @return unmodifiable copy of the list
+	 */
+	private List<T> snapshot() {
+		long stamp = lock.readLock();
+		try {
+			ArrayList<T> copy = new ArrayList<T>(list.size());
+			list.forEach(copy::add);
+			return Collections.unmodifiableList(copy);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Returns an Iterator over a snapshot of the list, which does not support remove
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return snapshot().iterator();
+	}
+
+	/**
+	 * Returns a ListIterator over a snapshot of the list, which does not
+	 * support add, remove or set
+	 */
+	@Override
+	public ListIterator<T> listIterator() {
+		return snapshot().listIterator();
+	}
+
+	/**
+	 * Returns a ListIterator over a snapshot of the list, which does not
+	 * support add, remove or set
+	 */
+	@Override
+	public ListIterator<T> listIterator(int startingIndex) {
+		List<T> snapshot = snapshot();
+		if(startingIndex < 0 || startingIndex > snapshot.size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		return snapshot.listIterator(startingIndex);
+	}
+
+	/**
+	 * Returns a Spliterator over a snapshot of the list
+	 */
+	@Override
+	public Spliterator<T> spliterator() {
+		return Spliterators.spliterator(snapshot(), Spliterator.ORDERED | Spliterator.IMMUTABLE);
+	}
+}
@@ -0,0 +1,523 @@
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Unrolled linked list implementation of IndexedUnsortedList.
+ * Each node of the chain (a Chunk) holds up to CHUNK_CAPACITY elements in
+ * an array, so the per-element cost is one array slot instead of a whole
+ * LinearNode, and scans mostly read consecutive memory. Full chunks split
+ * on insert; chunks that fall below a quarter full merge with a neighbour.
+ *
+ * @author seema
+ *
+ * @param <T> type to store
+ */
+public class IUUnrolledLinkedList<T> implements IndexedUnsortedList<T> {
+	private static final int CHUNK_CAPACITY = 32;
+	private static final int MIN_FILL = CHUNK_CAPACITY / 4; //emptier chunks merge with a neighbour
+
+	private Chunk<T> head; //never null; a single empty chunk when the list is empty
+	private Chunk<T> tail;
+	private int size;
+	private int modCount; //useful for iterator class
+
+	public IUUnrolledLinkedList() {
+		head = tail = new Chunk<T>();
+		size = 0;
+		modCount = 0;
+	}
+
+	@Override
+	public void addToFront(T element) {
+		Position position = new Position(head, 0);
+		insertAt(position, element);
+	}
+
+	@Override
+	public void addToRear(T element) {
+		Position position = new Position(tail, tail.count);
+		insertAt(position, element);
+	}
+
+	@Override
+	public void add(T element) {
+		addToRear(element);
+	}
+
+	@Override
+	public void addAfter(T element, T target) {
+		Position position = find(target);
+		if(position == null) {
+			throw new NoSuchElementException();
+		}
+		position.offset++;
+		insertAt(position, element);
+	}
+
+	@Override
+	public void add(int index, T element) {
+		if(index < 0 || index > size) {
+			throw new IndexOutOfBoundsException();
+		}
+		insertAt(seek(index), element);
+	}
+
+	@Override
+	public T removeFirst() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return removeAt(new Position(head, 0));
+	}
+
+	@Override
+	public T removeLast() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return removeAt(new Position(tail, tail.count - 1));
+	}
+
+	@Override
+	public T remove(T element) {
+		Position position = find(element);
+		if(position == null) {
+			throw new NoSuchElementException();
+		}
+		return removeAt(position);
+	}
+
+	@Override
+	public T remove(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+		return removeAt(seek(index));
+	}
+
+	@Override
+	public void set(int index, T element) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+		Position position = seek(index);
+		position.chunk.elements[position.offset] = element;
+		modCount++;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T get(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+		Position position = seek(index);
+		return (T) position.chunk.elements[position.offset];
+	}
+
+	@Override
+	public int indexOf(T element) {
+		int base = 0;
+		for(Chunk<T> chunk = head; chunk != null; chunk = chunk.next) {
+			Object[] elements = chunk.elements;
+			for(int i = 0; i < chunk.count; i++) {
+				if(elements[i].equals(element)) {
+					return base + i;
+				}
+			}
+			base += chunk.count;
+		}
+		return -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T first() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return (T) head.elements[0];
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T last() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return (T) tail.elements[tail.count - 1];
+	}
+
+	@Override
+	public boolean contains(T target) {
+		return (find(target) != null);
+	}
+
+	/**
+	 * Appends proper syntax for given list
+	 */
+	public String toString() {
+		StringBuilder str = new StringBuilder();
+		str.append("[");
+		for(Chunk<T> chunk = head; chunk != null; chunk = chunk.next) {
+			for(int i = 0; i < chunk.count; i++) {
+				str.append(chunk.elements[i].toString());
+				str.append(", ");
+			}
+		}
+		if(!isEmpty()) {
+			str.delete(str.length()-2, str.length());
+		}
+		str.append("]");
+		return str.toString();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return listIterator();
+	}
+
+	@Override
+	public ListIterator<T> listIterator() {
+		return new UnrolledIterator(0);
+	}
+
+	@Override
+	public ListIterator<T> listIterator(int startingIndex) {
+		return new UnrolledIterator(startingIndex);
+	}
+
+	/**
+	 * Finds the position of a valid index, walking chunks from the nearer end
+	 * @param index 0 <= index <= size
+	 * @return position of index; index == size gives the end of the tail chunk
+	 */
+	private Position seek(int index) {
+		if(index <= size / 2) {
+			Chunk<T> chunk = head;
+			while(index >= chunk.count && chunk.next != null) {
+				index -= chunk.count;
+				chunk = chunk.next;
+			}
+			return new Position(chunk, index);
+		}
+		Chunk<T> chunk = tail;
+		int base = size - tail.count; //index of chunk's first element
+		while(index < base) {
+			chunk = chunk.previous;
+			base -= chunk.count;
+		}
+		return new Position(chunk, index - base);
+	}
+
+	/**
+	 * Finds the first element equal to target
+	 * @param target element to look for
+	 * @return its position, or null if it isn't in the list
+	 */
+	private Position find(T target) {
+		for(Chunk<T> chunk = head; chunk != null; chunk = chunk.next) {
+			Object[] elements = chunk.elements;
+			for(int i = 0; i < chunk.count; i++) {
+				if(elements[i].equals(target)) {
+					return new Position(chunk, i);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Inserts element at position, splitting a full chunk if needed.
+	 * Afterwards position is just past the new element.
+	 * @param position where to insert; updated in place
+	 * @param element element to insert
+	 */
+	private void insertAt(Position position, T element) {
+		Chunk<T> chunk = position.chunk;
+		int offset = position.offset;
+		if(chunk.count == CHUNK_CAPACITY) {
+			if(offset == CHUNK_CAPACITY) { //appending to a full chunk: use or start the next one
+				if(chunk.next == null || chunk.next.count == CHUNK_CAPACITY) {
+					linkAfter(chunk, new Chunk<T>());
+				}
+				chunk = chunk.next;
+				offset = 0;
+			} else if(offset == 0 && chunk.previous != null && chunk.previous.count < CHUNK_CAPACITY) {
+				chunk = chunk.previous;
+				offset = chunk.count;
+			} else if(offset == 0) { //prepending to a full chunk
+				Chunk<T> newChunk = new Chunk<T>();
+				if(chunk.previous == null) {
+					newChunk.next = head;
+					head.previous = newChunk;
+					head = newChunk;
+				} else {
+					linkAfter(chunk.previous, newChunk);
+				}
+				chunk = newChunk;
+			} else {
+				Chunk<T> right = new Chunk<T>();
+				int half = CHUNK_CAPACITY / 2;
+				System.arraycopy(chunk.elements, half, right.elements, 0, CHUNK_CAPACITY - half);
+				for(int i = half; i < CHUNK_CAPACITY; i++) {
+					chunk.elements[i] = null;
+				}
+				right.count = CHUNK_CAPACITY - half;
+				chunk.count = half;
+				linkAfter(chunk, right);
+				if(offset > half) {
+					chunk = right;
+					offset -= half;
+				}
+			}
+		}
+		System.arraycopy(chunk.elements, offset, chunk.elements, offset + 1, chunk.count - offset);
+		chunk.elements[offset] = element;
+		chunk.count++;
+		size++;
+		modCount++;
+		position.chunk = chunk;
+		position.offset = offset + 1;
+	}
+
+	/**
+	 * Removes the element at position, merging chunks that get too empty.
+	 * Afterwards position is at the element that followed the removed one.
+	 * @param position element to remove; updated in place
+	 * @return removed element
+	 */
+	@SuppressWarnings("unchecked")
+	private T removeAt(Position position) {
+		Chunk<T> chunk = position.chunk;
+		int offset = position.offset;
+		T retVal = (T) chunk.elements[offset];
+		System.arraycopy(chunk.elements, offset + 1, chunk.elements, offset, chunk.count - offset - 1);
+		chunk.count--;
+		chunk.elements[chunk.count] = null;
+		size--;
+		modCount++;
+		if(chunk.count == 0 && chunk != head) { //never leave an empty chunk behind, unless it's the only one
+			Chunk<T> previous = chunk.previous;
+			unlink(chunk);
+			position.chunk = previous;
+			position.offset = previous.count;
+		} else if(chunk.count == 0 && chunk.next != null) {
+			unlink(chunk);
+			position.chunk = head;
+			position.offset = 0;
+		} else if(chunk.count < MIN_FILL) {
+			if(chunk.next != null && chunk.count + chunk.next.count <= CHUNK_CAPACITY) {
+				Chunk<T> next = chunk.next;
+				System.arraycopy(next.elements, 0, chunk.elements, chunk.count, next.count);
+				chunk.count += next.count;
+				unlink(next);
+			} else if(chunk.previous != null && chunk.previous.count + chunk.count <= CHUNK_CAPACITY) {
+				Chunk<T> previous = chunk.previous;
+				System.arraycopy(chunk.elements, 0, previous.elements, previous.count, chunk.count);
+				position.chunk = previous;
+				position.offset = previous.count + offset;
+				previous.count += chunk.count;
+				unlink(chunk);
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Links newChunk into the chain right after chunk
+	 * @param chunk chunk already in the chain
+	 * @param newChunk chunk to link in
+	 */
+	private void linkAfter(Chunk<T> chunk, Chunk<T> newChunk) {
+		newChunk.previous = chunk;
+		newChunk.next = chunk.next;
+		if(chunk.next == null) {
+			tail = newChunk;
+		} else {
+			chunk.next.previous = newChunk;
+		}
+		chunk.next = newChunk;
+	}
+
+	/**
+	 * Unlinks a chunk that is not the only one in the chain
+	 * @param chunk chunk to unlink
+	 */
+	private void unlink(Chunk<T> chunk) {
+		if(chunk == head) {
+			head = chunk.next;
+		} else {
+			chunk.previous.next = chunk.next;
+		}
+		if(chunk == tail) {
+			tail = chunk.previous;
+		} else {
+			chunk.next.previous = chunk.previous;
+		}
+	}
+
+	/**
+	 * One node of the chain, holding up to CHUNK_CAPACITY elements
+	 */
+	private static class Chunk<T> {
+		private Object[] elements = new Object[CHUNK_CAPACITY];
+		private int count;
+		private Chunk<T> next;
+		private Chunk<T> previous;
+	}
+
+	/**
+	 * A place between two elements: before elements[offset] of chunk.
+	 * offset may equal chunk.count, meaning the end of that chunk.
+	 */
+	private class Position {
+		private Chunk<T> chunk;
+		private int offset;
+
+		public Position(Chunk<T> chunk, int offset) {
+			this.chunk = chunk;
+			this.offset = offset;
+		}
+	}
+
+	/**
+	 * ListIterator for IUUnrolledLinkedList
+	 * Keeps a Position in the chunk chain and edits through it,
+	 * so add() and remove() don't have to search again.
+	 * @author seema
+	 *
+	 */
+	private class UnrolledIterator implements ListIterator<T> {
+		private Position cursor; //before the next element
+		private int nextIndex;
+		private int iterModCount;
+		private Chunk<T> lastChunk; //chunk of the last returned element, most useful for set() and remove()
+		private int lastOffset;
+
+		public UnrolledIterator(int startingIndex) {
+			if(startingIndex < 0 || startingIndex > size) {
+				throw new IndexOutOfBoundsException();
+			}
+			cursor = seek(startingIndex);
+			nextIndex = startingIndex;
+			iterModCount = modCount;
+			lastChunk = null;
+		}
+
+		@Override
+		public void add(T element) {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			insertAt(cursor, element);
+			lastChunk = null;
+			nextIndex++;
+			iterModCount++;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			return (nextIndex < size);
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			return (nextIndex > 0);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			if(cursor.offset == cursor.chunk.count) {
+				cursor.chunk = cursor.chunk.next;
+				cursor.offset = 0;
+			}
+			lastChunk = cursor.chunk;
+			lastOffset = cursor.offset;
+			cursor.offset++;
+			nextIndex++;
+			return (T) lastChunk.elements[lastOffset];
+		}
+
+		@Override
+		public int nextIndex() {
+			return nextIndex;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T previous() {
+			if(!hasPrevious()) {
+				throw new NoSuchElementException();
+			}
+			if(cursor.offset == 0) {
+				cursor.chunk = cursor.chunk.previous;
+				cursor.offset = cursor.chunk.count;
+			}
+			cursor.offset--;
+			nextIndex--;
+			lastChunk = cursor.chunk;
+			lastOffset = cursor.offset;
+			return (T) cursor.chunk.elements[cursor.offset];
+		}
+
+		@Override
+		public int previousIndex() {
+			return (nextIndex - 1);
+		}
+
+		@Override
+		public void remove() {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(lastChunk == null) {
+				throw new IllegalStateException();
+			}
+			boolean afterNext = (lastChunk != cursor.chunk || lastOffset != cursor.offset);
+			cursor.chunk = lastChunk;
+			cursor.offset = lastOffset;
+			removeAt(cursor); //leaves cursor on the element that followed
+			if(afterNext) {
+				nextIndex--;
+			}
+			lastChunk = null;
+			iterModCount++;
+		}
+
+		@Override
+		public void set(T element) {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(lastChunk == null) {
+				throw new IllegalStateException();
+			}
+			lastChunk.elements[lastOffset] = element;
+			modCount++;
+			iterModCount++;
+		}
+	}
+}
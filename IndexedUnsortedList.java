@@ -1,4 +1,6 @@
 import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  *  Interface for an Iterable, Indexed, Unsorted List ADT.
@@ -12,7 +14,7 @@ import java.util.*;
  *
  * @param <T> - class of objects stored in the list 
  */
-public interface IndexedUnsortedList<T> extends Iterable<T>
+public interface IndexedUnsortedList<T> extends Iterable<T>, IUQueue<T>
 {
     /**  
      * Adds the specified element to the front of this list. 
@@ -183,4 +185,37 @@ public interface IndexedUnsortedList<T> extends Iterable<T>
      * @throws UnsupportedOperationException if not implemented
      */
     public ListIterator<T> listIterator(int startingIndex);
+
+    /**  
+     * Returns a Spliterator over the elements in this list, in order.
+     * Unlike the Iterable default it reports the list's size, so streams
+     * can presize and split it evenly. Lists with a cheaper way to split
+     * should override this.
+     *
+     * @return a Spliterator over the elements in this list
+     */
+    public default Spliterator<T> spliterator()
+    {
+        return Spliterators.spliterator(iterator(), size(), Spliterator.ORDERED);
+    }
+
+    /**  
+     * Returns a sequential Stream over the elements in this list.
+     *
+     * @return a Stream over the elements in this list
+     */
+    public default Stream<T> stream()
+    {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**  
+     * Returns a possibly parallel Stream over the elements in this list.
+     *
+     * @return a parallel Stream over the elements in this list
+     */
+    public default Stream<T> parallelStream()
+    {
+        return StreamSupport.stream(spliterator(), true);
+    }
 }
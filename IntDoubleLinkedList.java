@@ -0,0 +1,552 @@
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Double-linked list of int values, laid out like IUDoubleLinkedList but
+ * without boxing. Values and links live in parallel arrays indexed by slot
+ * number, and slots of removed values are reused through a free list, so
+ * adding an element allocates nothing once the arrays are big enough and
+ * comparisons are plain ==.
+ *
+ * Methods mirror IndexedUnsortedList; remove by value is removeElement(int)
+ * because remove(int) already means remove by index.
+ *
+ * @author seema
+ */
+public class IntDoubleLinkedList {
+	private static final int NIL = -1; //"no slot", plays the part of null
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private int[] elements;
+	private int[] next;
+	private int[] previous;
+	private int head;
+	private int tail;
+	private int size;
+	private int modCount; //useful for iterator class
+	private int freeSlot; //first reusable slot, the rest are chained through next[]
+	private int usedSlots; //slots below this have been handed out at least once
+	private int finger; //last slot reached by index
+	private int fingerIndex;
+	private int fingerModCount; //finger is only trusted while this matches modCount
+
+	public IntDoubleLinkedList() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty list with room for capacity values before growing
+	 * @param capacity initial number of slots
+	 */
+	public IntDoubleLinkedList(int capacity) {
+		elements = new int[Math.max(capacity, 1)];
+		next = new int[elements.length];
+		previous = new int[elements.length];
+		head = tail = NIL;
+		size = 0;
+		modCount = 0;
+		freeSlot = NIL;
+		usedSlots = 0;
+		finger = NIL;
+	}
+
+	/**
+	 * Adds the specified element to the front of this list.
+	 * @param element the element to be added to the front of this list
+	 */
+	public void addToFront(int element) {
+		linkBefore(element, head);
+	}
+
+	/**
+	 * Adds the specified element to the rear of this list.
+	 * @param element the element to be added to the rear of this list
+	 */
+	public void addToRear(int element) {
+		linkBefore(element, NIL);
+	}
+
+	/**
+	 * Adds the specified element to the rear of this list.
+	 * @param element the element to be added to the rear of the list
+	 */
+	public void add(int element) {
+		addToRear(element);
+	}
+
+	/**
+	 * Adds the specified element after the first occurrence of target.
+	 * @param element the element to be added after the target
+	 * @param target the item that the element will be added after
+	 * @throws NoSuchElementException if target element is not in this list
+	 */
+	public void addAfter(int element, int target) {
+		int slot = find(target);
+		if(slot == NIL) {
+			throw new NoSuchElementException();
+		}
+		linkBefore(element, next[slot]);
+	}
+
+	/**
+	 * Inserts the specified element at the specified index.
+	 * @param index the index at which the element is to be inserted
+	 * @param element the element to be inserted
+	 * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index > size)
+	 */
+	public void add(int index, int element) {
+		if(index < 0 || index > size) {
+			throw new IndexOutOfBoundsException();
+		}
+		linkBefore(element, (index == size) ? NIL : slotAt(index));
+	}
+
+	/**
+	 * Removes and returns the first element from this list.
+	 * @return the first element from this list
+	 * @throws NoSuchElementException if list contains no elements
+	 */
+	public int removeFirst() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return unlink(head);
+	}
+
+	/**
+	 * Removes and returns the last element from this list.
+	 * @return the last element from this list
+	 * @throws NoSuchElementException if list contains no elements
+	 */
+	public int removeLast() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return unlink(tail);
+	}
+
+	/**
+	 * Removes and returns the first occurrence of element.
+	 * @param element the element to be removed from the list
+	 * @return removed element
+	 * @throws NoSuchElementException if element is not in this list
+	 */
+	public int removeElement(int element) {
+		int slot = find(element);
+		if(slot == NIL) {
+			throw new NoSuchElementException();
+		}
+		return unlink(slot);
+	}
+
+	/**
+	 * Removes and returns the element at the specified index.
+	 * @param index the index of the element to be removed
+	 * @return the element at the given index
+	 * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index >= size)
+	 */
+	public int remove(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+		return unlink(slotAt(index));
+	}
+
+	/**
+	 * Sets the element at the specified index.
+	 * @param index the index of the element to be set
+	 * @param element the element to be stored there
+	 * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index >= size)
+	 */
+	public void set(int index, int element) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+		elements[slotAt(index)] = element;
+		modCount++;
+		fingerModCount = modCount; //set() doesn't move any slots
+	}
+
+	/**
+	 * Returns the element at the specified index.
+	 * @param index the index of the element
+	 * @return the element at the specified index
+	 * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index >= size)
+	 */
+	public int get(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+		return elements[slotAt(index)];
+	}
+
+	/**
+	 * Returns the index of the first occurrence of element.
+	 * @param element the element to look for
+	 * @return the index of element or -1 if element is not in the list
+	 */
+	public int indexOf(int element) {
+		int index = 0;
+		for(int slot = head; slot != NIL; slot = next[slot]) {
+			if(elements[slot] == element) {
+				return index;
+			}
+			index++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the first element in this list.
+	 * @return the first element in this list
+	 * @throws NoSuchElementException if list contains no elements
+	 */
+	public int first() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return elements[head];
+	}
+
+	/**
+	 * Returns the last element in this list.
+	 * @return the last element in this list
+	 * @throws NoSuchElementException if list contains no elements
+	 */
+	public int last() {
+		if(isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return elements[tail];
+	}
+
+	/**
+	 * Returns true if this list contains the specified target element.
+	 * @param target the target that is being sought in the list
+	 * @return true if the list contains this element, else false
+	 */
+	public boolean contains(int target) {
+		return (find(target) != NIL);
+	}
+
+	/**
+	 * Appends proper syntax for given list
+	 */
+	public String toString() {
+		StringBuilder str = new StringBuilder();
+		str.append("[");
+		for(int slot = head; slot != NIL; slot = next[slot]) {
+			str.append(elements[slot]);
+			str.append(", ");
+		}
+		if(!isEmpty()) {
+			str.delete(str.length()-2, str.length());
+		}
+		str.append("]");
+		return str.toString();
+	}
+
+	/**
+	 * @return true if this list contains no elements
+	 */
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+
+	/**
+	 * @return the number of elements in this list
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return an iterator over the elements in this list
+	 */
+	public IntListIterator iterator() {
+		return listIterator();
+	}
+
+	/**
+	 * @return a list iterator over the elements in this list
+	 */
+	public IntListIterator listIterator() {
+		return new IntIterator(0);
+	}
+
+	/**
+	 * @param startingIndex index of the first element next() returns
+	 * @return a list iterator positioned before startingIndex
+	 * @throws IndexOutOfBoundsException if startingIndex < 0 || startingIndex > size
+	 */
+	public IntListIterator listIterator(int startingIndex) {
+		return new IntIterator(startingIndex);
+	}
+
+	/**
+	 * Finds the first slot holding target
+	 * @param target value to look for
+	 * @return slot of target, or NIL
+	 */
+	private int find(int target) {
+		int slot = head;
+		while(slot != NIL && elements[slot] != target) {
+			slot = next[slot];
+		}
+		return slot;
+	}
+
+	/**
+	 * Finds the slot at the given index, walking from whichever of head,
+	 * tail or the finger is closest, and leaves the finger on that slot.
+	 * @param index valid index (0 <= index < size)
+	 * @return slot at index
+	 */
+	private int slotAt(int index) {
+		int current = head;
+		int position = 0;
+		if(size - 1 - index < index) {
+			current = tail;
+			position = size - 1;
+		}
+		if(finger != NIL && fingerModCount == modCount
+				&& Math.abs(index - fingerIndex) < Math.abs(index - position)) {
+			current = finger;
+			position = fingerIndex;
+		}
+		while(position < index) {
+			current = next[current];
+			position++;
+		}
+		while(position > index) {
+			current = previous[current];
+			position--;
+		}
+		finger = current;
+		fingerIndex = index;
+		fingerModCount = modCount;
+		return current;
+	}
+
+	/**
+	 * Stores element in a free slot and links it in before successor
+	 * @param element value to store
+	 * @param successor slot to link before, or NIL to link at the rear
+	 * @return the new slot
+	 */
+	private int linkBefore(int element, int successor) {
+		int slot = freeSlot;
+		if(slot != NIL) {
+			freeSlot = next[slot];
+		} else {
+			if(usedSlots == elements.length) {
+				grow();
+			}
+			slot = usedSlots++;
+		}
+		int predecessor = (successor == NIL) ? tail : previous[successor];
+		elements[slot] = element;
+		next[slot] = successor;
+		previous[slot] = predecessor;
+		if(predecessor == NIL) {
+			head = slot;
+		} else {
+			next[predecessor] = slot;
+		}
+		if(successor == NIL) {
+			tail = slot;
+		} else {
+			previous[successor] = slot;
+		}
+		size++;
+		modCount++;
+		return slot;
+	}
+
+	/**
+	 * Unlinks a slot and puts it on the free list
+	 * @param slot slot in use
+	 * @return the value it held
+	 */
+	private int unlink(int slot) {
+		int predecessor = previous[slot];
+		int successor = next[slot];
+		if(predecessor == NIL) {
+			head = successor;
+		} else {
+			next[predecessor] = successor;
+		}
+		if(successor == NIL) {
+			tail = predecessor;
+		} else {
+			previous[successor] = predecessor;
+		}
+		next[slot] = freeSlot;
+		freeSlot = slot;
+		size--;
+		modCount++;
+		return elements[slot];
+	}
+
+	/**
+	 * Doubles the slot arrays
+	 */
+	private void grow() {
+		int capacity = elements.length * 2;
+		elements = Arrays.copyOf(elements, capacity);
+		next = Arrays.copyOf(next, capacity);
+		previous = Arrays.copyOf(previous, capacity);
+	}
+
+	/**
+	 * ListIterator over int values, without boxing
+	 */
+	public interface IntListIterator extends PrimitiveIterator.OfInt {
+		/**
+		 * @return true if there is an element before the cursor
+		 */
+		boolean hasPrevious();
+
+		/**
+		 * @return the element before the cursor, moving the cursor back
+		 */
+		int previousInt();
+
+		/**
+		 * @return index of the element nextInt() would return
+		 */
+		int nextIndex();
+
+		/**
+		 * @return index of the element previousInt() would return
+		 */
+		int previousIndex();
+
+		/**
+		 * Replaces the last element returned by nextInt() or previousInt()
+		 * @param element new value
+		 */
+		void set(int element);
+
+		/**
+		 * Inserts element before the cursor
+		 * @param element value to insert
+		 */
+		void add(int element);
+	}
+
+	/**
+	 * IntListIterator for IntDoubleLinkedList
+	 * Alters list based on position of the iterator.
+	 * @author seema
+	 *
+	 */
+	private class IntIterator implements IntListIterator {
+		private int nextSlot;
+		private int iterModCount; //incremented each time iterator is modified
+		private int nextIndex;
+		private int lastReturnedSlot; //most useful for set() and remove()
+
+		public IntIterator(int startingIndex) {
+			if(startingIndex < 0 || startingIndex > size) {
+				throw new IndexOutOfBoundsException();
+			}
+			nextSlot = (startingIndex == size) ? NIL : slotAt(startingIndex);
+			nextIndex = startingIndex;
+			iterModCount = modCount;
+			lastReturnedSlot = NIL;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			return (nextSlot != NIL);
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			return (nextSlot != head);
+		}
+
+		@Override
+		public int nextInt() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			lastReturnedSlot = nextSlot;
+			nextSlot = next[nextSlot];
+			nextIndex++;
+			return elements[lastReturnedSlot];
+		}
+
+		@Override
+		public int previousInt() {
+			if(!hasPrevious()) {
+				throw new NoSuchElementException();
+			}
+			nextSlot = (nextSlot == NIL) ? tail : previous[nextSlot];
+			lastReturnedSlot = nextSlot;
+			nextIndex--;
+			return elements[nextSlot];
+		}
+
+		@Override
+		public int nextIndex() {
+			return nextIndex;
+		}
+
+		@Override
+		public int previousIndex() {
+			return (nextIndex - 1);
+		}
+
+		@Override
+		public void remove() {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(lastReturnedSlot == NIL) {
+				throw new IllegalStateException();
+			}
+			if(lastReturnedSlot == nextSlot) { //last move was previous()
+				nextSlot = next[nextSlot];
+			} else {
+				nextIndex--;
+			}
+			unlink(lastReturnedSlot);
+			lastReturnedSlot = NIL;
+			iterModCount++;
+		}
+
+		@Override
+		public void set(int element) {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(lastReturnedSlot == NIL) {
+				throw new IllegalStateException();
+			}
+			elements[lastReturnedSlot] = element;
+			modCount++;
+			iterModCount++;
+		}
+
+		@Override
+		public void add(int element) {
+			if(iterModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			linkBefore(element, nextSlot);
+			lastReturnedSlot = NIL;
+			nextIndex++;
+			iterModCount++;
+		}
+	}
+}
@@ -1,8 +1,34 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * A unit test class for lists that implement IndexedUnsortedList. 
@@ -17,7 +43,9 @@ import java.util.NoSuchElementException;
 public class ListTester {
 	//possible lists that could be tested
 	private static enum ListToUse {
-		goodList, badList, arrayList, singleLinkedList, doubleLinkedList
+		goodList, badList, arrayList, singleLinkedList, doubleLinkedList, bTreeList,
+		unrolledLinkedList, intDoubleLinkedList, pooledLinkedList, offHeapList, persistentList, mappedList,
+		longDoubleLinkedList
 	};
 	// TODO: THIS IS WHERE YOU CHOOSE WHICH LIST TO TEST
 	private final static ListToUse LIST_TO_USE = ListToUse.doubleLinkedList;
@@ -57,6 +85,10 @@ public class ListTester {
 	private boolean showToString = true;
 	private boolean printSectionSummaries = true;
 
+	//mapped lists and their files, closed and deleted when the next one is built or at the end
+	private final ArrayList<IUMappedList<Integer>> mappedLists = new ArrayList<IUMappedList<Integer>>();
+	private final ArrayList<File> mappedFiles = new ArrayList<File>();
+
 	/**
 	 * Valid command line args include:
 	 *  -a : print results from all tests (default is to print failed tests, only)
@@ -86,6 +118,14 @@ public class ListTester {
 		}
 		switch (LIST_TO_USE) {
 		case doubleLinkedList:
+		case bTreeList:
+		case unrolledLinkedList:
+		case intDoubleLinkedList:
+		case pooledLinkedList:
+		case offHeapList:
+		case persistentList:
+		case mappedList:
+		case longDoubleLinkedList:
 			SUPPORTS_LIST_ITERATOR = true;
 			break;
 		default:
@@ -108,6 +148,18 @@ public class ListTester {
 		}
 	}
 
+	/** Close the mapped lists built so far and delete their files */
+	private void closeMappedLists() {
+		for (IUMappedList<Integer> list : mappedLists) {
+			list.close();
+		}
+		mappedLists.clear();
+		for (File file : mappedFiles) {
+			file.delete();
+		}
+		mappedFiles.clear();
+	}
+
 	/** Print a final summary */
 	private void printFinalSummary() {
 		String verdict = String.format("\nTotal Tests Run: %d,  Passed: %d (%.1f%%),  Failed: %d\n",
@@ -259,6 +311,26 @@ public class ListTester {
 		if (SUPPORTS_LIST_ITERATOR) {
 			test_ListIterConcurrency();
 		}
+		closeMappedLists();
+
+		//Implementation-specific tests
+		test_SkipIndex();
+		test_HashIndex();
+		test_SplitInsertAll();
+		test_Spliterator();
+		test_ForEachCursor();
+		test_ConcurrentLinkedList();
+		test_StampedLockList();
+		test_SegmentedList();
+		test_Snapshots();
+		test_BlockingDeque();
+		test_RingQueues();
+		test_ChangeFeed();
+		test_DurableList();
+		test_BinarySnapshot();
+		test_Sort();
+		test_Render();
+		test_BoundedCache();
 
 		// report final verdict
 		printFinalSummary();
@@ -296,11 +368,52 @@ public class ListTester {
 		case doubleLinkedList:
 			listToUse = new IUDoubleLinkedList<Integer>();
 			break;
+		case bTreeList:
+			listToUse = new IUBTreeList<Integer>();
+			break;
+		case unrolledLinkedList:
+			listToUse = new IUUnrolledLinkedList<Integer>();
+			break;
+		case intDoubleLinkedList:
+			listToUse = new IntListAdapter(); //boxes only at the test boundary
+			break;
+		case pooledLinkedList:
+			listToUse = new IUPooledLinkedList<Integer>();
+			break;
+		case offHeapList:
+			listToUse = new IUOffHeapList<Integer>(FixedWidthCodec.INTEGER);
+			break;
+		case persistentList:
+			listToUse = new IUPersistentList<Integer>();
+			break;
+		case mappedList:
+			listToUse = newMappedList();
+			break;
+		case longDoubleLinkedList:
+			listToUse = new LongListAdapter(); //boxes only at the test boundary
+			break;
 		default:
 			listToUse = null;
 		}
 		return listToUse;
 	}
+	
+	/**
+	 * @return a new empty IUMappedList over a temporary file, closed and
+	 *  deleted when the next one is built
+	 */
+	private IndexedUnsortedList<Integer> newMappedList() {
+		closeMappedLists(); //tests are done with a list by the time they build another
+		try {
+			File file = File.createTempFile("ListTester", ".list");
+			mappedFiles.add(file);
+			IUMappedList<Integer> list = new IUMappedList<Integer>(file.toPath(), FixedWidthCodec.INTEGER);
+			mappedLists.add(list);
+			return list;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
 	// The following creates a "lambda" reference that allows us to pass a scenario
 	//  builder method as an argument. You don't need to worry about how it works -
 	//  just make sure each scenario building method has a corresponding Scenario 
@@ -2683,9 +2796,1810 @@ public class ListTester {
 			}
 		}
 	}
+
+	////////////////////////////////////////////////////////
+	// XXX Implementation-specific Tests
+	// Each builds its own lists, whatever LIST_TO_USE is
+	////////////////////////////////////////////////////////
+
+	/**
+	 * @param list list to check
+	 * @param expected elements list should hold, in order
+	 * @return true if list has expected's size and get(i) matches at every index
+	 */
+	private static boolean sameByIndex(IndexedUnsortedList<Integer> list, List<Integer> expected) {
+		if (list.size() != expected.size()) {
+			return false;
+		}
+		for (int i = 0; i < expected.size(); i++) {
+			if (!list.get(i).equals(expected.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Splits a skip-indexed list and puts the pieces back many times,
+	 * mirroring each step in expected
+	 * @param list skip-indexed list holding expected
+	 * @param expected reference copy
+	 * @param random source of split points
+	 * @return true if get(i) stayed right in both parts after every split and rejoin
+	 */
+	private static boolean splitAndRejoin(IUDoubleLinkedList<Integer> list, List<Integer> expected, Random random) {
+		for (int round = 0; round < 100; round++) {
+			int at = random.nextInt(list.size() + 1);
+			IUDoubleLinkedList<Integer> rest = list.splitAt(at);
+			List<Integer> expectedRest = new ArrayList<Integer>(expected.subList(at, expected.size()));
+			expected.subList(at, expected.size()).clear();
+			if (!sameByIndex(list, expected) || !sameByIndex(rest, expectedRest)) {
+				return false;
+			}
+			int to = random.nextInt(list.size() + 1);
+			list.insertAll(to, rest);
+			expected.addAll(to, expectedRest);
+			if (!rest.isEmpty() || !sameByIndex(list, expected)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** run skip-list index tests: positions stay right as node chains are cut and spliced */
+	private void test_SkipIndex() {
+		System.out.println("\nSkip Index Tests\n");
+		try {
+			Random random = new Random(2);
+			IUDoubleLinkedList<Integer> list = new IUDoubleLinkedList<Integer>(true);
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int i = 0; i < 2000; i++) {
+				list.add(i);
+				expected.add(i);
+			}
+			printTest("skipIndexed_2000_testGet", sameByIndex(list, expected));
+			printTest("skipIndexed_splitAtInsertAll_testGet", splitAndRejoin(list, expected, random));
+
+			for (int i = 0; i < 500; i++) {
+				int index = random.nextInt(list.size() + 1);
+				list.add(index, -i);
+				expected.add(index, -i);
+				index = random.nextInt(list.size());
+				list.remove(index);
+				expected.remove(index);
+			}
+			printTest("skipIndexed_splitThenAddRemoveAt_testGet", sameByIndex(list, expected));
+			printTest("skipIndexed_addRemoveThenSplit_testGet", splitAndRejoin(list, expected, random));
+
+			IUDoubleLinkedList<Integer> rest = list.splitAt(0);
+			printTest("skipIndexed_splitAt0_testEmpty", list.isEmpty() && sameByIndex(rest, expected));
+			list.appendAll(rest);
+			rest = list.splitAt(list.size());
+			printTest("skipIndexed_splitAtSize_testRestEmpty", rest.isEmpty() && sameByIndex(list, expected));
+
+			IUDoubleLinkedList<Integer> hashed = new IUDoubleLinkedList<Integer>(true, true);
+			List<Integer> hashedExpected = new ArrayList<Integer>();
+			for (int i = 0; i < 1000; i++) {
+				hashed.add(i);
+				hashedExpected.add(i);
+			}
+			splitAndRejoin(hashed, hashedExpected, random);
+			boolean ranks = true;
+			for (int i = 0; i < 1000; i++) {
+				ranks &= (hashed.indexOf(i) == hashedExpected.indexOf(i));
+			}
+			printTest("skipAndHashIndexed_splitAtInsertAll_testIndexOf", ranks);
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE %s***\n", "test_SkipIndex");
+			e.printStackTrace();
+		} finally {
+			if (printSectionSummaries) {
+				printSectionSummary();
+			}
+		}
+	}
+
+	/**
+	 * Crowds inserts into one gap of a hash-indexed list so its order
+	 * labels run out and get spread again, with many duplicates
+	 * @param list empty hash-indexed list
+	 * @return reference copy of what list should now hold
+	 */
+	private static List<Integer> crowdLabels(IUDoubleLinkedList<Integer> list) {
+		List<Integer> expected = new ArrayList<Integer>();
+		list.add(-1);
+		list.add(-2);
+		expected.add(-1);
+		expected.add(-2);
+		for (int i = 0; i < 300; i++) {
+			list.add(1, i % 7); //right after the head every time, halving the gap
+			expected.add(1, i % 7);
+		}
+		for (int i = 0; i < 100; i++) {
+			list.addToFront(i % 5);
+			expected.add(0, i % 5);
+		}
+		return expected;
+	}
+
+	/**
+	 * @param list hash-indexed list holding expected
+	 * @param expected reference copy
+	 * @return true if indexOf and contains agree with expected for every value tried
+	 */
+	private static boolean sameLookups(IUDoubleLinkedList<Integer> list, List<Integer> expected) {
+		for (int value = -3; value < 8; value++) {
+			if (list.indexOf(value) != expected.indexOf(value) || list.contains(value) != expected.contains(value)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** run hash index tests: order labels keep picking the first of equal elements */
+	private void test_HashIndex() {
+		System.out.println("\nHash Index Tests\n");
+		try {
+			for (boolean skipIndexed : new boolean[] {false, true}) {
+				String name = skipIndexed ? "skipAndHashIndexed" : "hashIndexed";
+				IUDoubleLinkedList<Integer> list = new IUDoubleLinkedList<Integer>(skipIndexed, true);
+				List<Integer> expected = crowdLabels(list);
+				printTest(name + "_crowdedInserts_testGet", sameByIndex(list, expected));
+				printTest(name + "_crowdedInserts_testIndexOfFirst", sameLookups(list, expected));
+
+				for (int value = 0; value < 7; value++) {
+					list.remove(Integer.valueOf(value));
+					expected.remove(Integer.valueOf(value));
+				}
+				printTest(name + "_removeFirstOfDuplicates_testGet", sameByIndex(list, expected));
+				printTest(name + "_removeFirstOfDuplicates_testIndexOf", sameLookups(list, expected));
+
+				for (int value = 0; value < 5; value++) {
+					list.addAfter(-3, value);
+					expected.add(expected.indexOf(value) + 1, -3);
+				}
+				printTest(name + "_addAfterFirstOfDuplicates_testGet", sameByIndex(list, expected));
+				printTest(name + "_addAfterFirstOfDuplicates_testIndexOf", sameLookups(list, expected));
+
+				ListIterator<Integer> it = list.listIterator(list.size() / 2);
+				ListIterator<Integer> expectedIt = expected.listIterator(expected.size() / 2);
+				for (int i = 0; i < 100; i++) {
+					it.add(6);
+					expectedIt.add(6);
+					it.previous();
+					expectedIt.previous();
+				}
+				printTest(name + "_iterAddInOneGap_testIndexOf", sameLookups(list, expected) && sameByIndex(list, expected));
+
+				printTest(name + "_sequentialFuzz_testMatchesArrayList", fuzzAgainstReference(new IUDoubleLinkedList<Integer>(skipIndexed, true), new Random(8), 5000));
+				IUDoubleLinkedList<Integer> fewValues = new IUDoubleLinkedList<Integer>(skipIndexed, true);
+				List<Integer> fewExpected = new ArrayList<Integer>();
+				for (int i = 0; i < 3000; i++) {
+					fewValues.addToRear(i % 3);
+					fewExpected.add(i % 3);
+				}
+				fewValues.insertAll(1000, fewValues.splitAt(2000));
+				fewExpected.addAll(1000, new ArrayList<Integer>(fewExpected.subList(2000, 3000)));
+				fewExpected.subList(3000, 4000).clear();
+				printTest(name + "_threeValuesSplitAndRejoined_testIndexOf", sameLookups(fewValues, fewExpected) && sameByIndex(fewValues, fewExpected));
+				while (fewValues.contains(1)) {
+					fewValues.remove(Integer.valueOf(1));
+				}
+				fewExpected.removeIf(value -> value == 1);
+				printTest(name + "_everyOneRemoved_testContains", !fewValues.contains(1) && fewValues.contains(0) && fewValues.contains(2)
+						&& sameByIndex(fewValues, fewExpected) && fewValues.indexOf(1) == -1);
+			}
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE %s***\n", "test_HashIndex");
+			e.printStackTrace();
+		} finally {
+			if (printSectionSummaries) {
+				printSectionSummary();
+			}
+		}
+	}
+
+	/**
+	 * @param skipIndexed true for a skip-list index
+	 * @param hashIndexed true for a hash index
+	 * @param snapshots true for snapshot mode
+	 * @param first first element
+	 * @param count number of elements
+	 * @return new list of first, first + 1, ... first + count - 1
+	 */
+	private static IUDoubleLinkedList<Integer> rangeList(boolean skipIndexed, boolean hashIndexed, boolean snapshots, int first, int count) {
+		IUDoubleLinkedList<Integer> list = new IUDoubleLinkedList<Integer>(skipIndexed, hashIndexed, snapshots);
+		for (int i = 0; i < count; i++) {
+			list.add(first + i);
+		}
+		return list;
+	}
+
+	/**
+	 * @param first first element
+	 * @param count number of elements
+	 * @return new ArrayList of first, first + 1, ... first + count - 1
+	 */
+	private static List<Integer> range(int first, int count) {
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int i = 0; i < count; i++) {
+			expected.add(first + i);
+		}
+		return expected;
+	}
+
+	/**
+	 * Splices a 100 element list with one set of indexes into the middle of
+	 * another and checks both lists afterwards
+	 * @param intoSkip true if the receiving list is skip-indexed
+	 * @param intoHash true if the receiving list is hash-indexed
+	 * @param fromSkip true if the moved list is skip-indexed
+	 * @param fromHash true if the moved list is hash-indexed
+	 * @param refused true if the splice should throw IllegalArgumentException
+	 * @return test success
+	 */
+	private boolean testInsertAllIndexes(boolean intoSkip, boolean intoHash, boolean fromSkip, boolean fromHash, boolean refused) {
+		IUDoubleLinkedList<Integer> list = rangeList(intoSkip, intoHash, false, 0, 100);
+		IUDoubleLinkedList<Integer> other = rangeList(fromSkip, fromHash, false, 100, 100);
+		List<Integer> expected = range(0, 100);
+		try {
+			list.insertAll(50, other);
+			expected.addAll(50, range(100, 100));
+			if (refused) {
+				return false;
+			}
+			for (int i = 0; i < 200; i += 7) {
+				if (list.indexOf(i) != expected.indexOf(i)) {
+					return false;
+				}
+			}
+			other.add(-1); //still usable once emptied
+			return sameByIndex(list, expected) && other.size() == 1;
+		} catch (IllegalArgumentException e) {
+			return refused && sameByIndex(list, range(0, 100)) && sameByIndex(other, range(100, 100));
+		}
+	}
+
+	/** run splitAt/insertAll tests: which index combinations splice, and what they hold after */
+	private void test_SplitInsertAll() {
+		System.out.println("\nSplit and InsertAll Tests\n");
+		try {
+			boolean[] flags = {false, true};
+			for (boolean intoSkip : flags) {
+				for (boolean intoHash : flags) {
+					for (boolean fromSkip : flags) {
+						for (boolean fromHash : flags) {
+							String name = String.format("%s%s_insertAll%s%s", intoSkip ? "skip" : "", intoHash ? "Hash" : "Plain",
+									fromSkip ? "Skip" : "", fromHash ? "Hash" : "Plain");
+							boolean refused = intoHash && !fromHash; //moved nodes would have no order labels
+							printTest(name + "_testInsertAll", testInsertAllIndexes(intoSkip, intoHash, fromSkip, fromHash, refused));
+						}
+					}
+				}
+			}
+
+			IUDoubleLinkedList<Integer> list = rangeList(true, true, false, 0, 100);
+			IUDoubleLinkedList<Integer> rest = list.splitAt(60);
+			printTest("skipHash_splitAt60_testBothParts", sameByIndex(list, range(0, 60)) && sameByIndex(rest, range(60, 40))
+					&& rest.indexOf(75) == 15 && !list.contains(75));
+			IUDoubleLinkedList<Integer> hashed = rangeList(false, true, false, 1000, 10);
+			hashed.insertAll(5, rest);
+			List<Integer> expected = range(1000, 10);
+			expected.addAll(5, range(60, 40));
+			printTest("hash_insertAllSplitPart_testIndexOf", sameByIndex(hashed, expected) && hashed.indexOf(75) == 20 && hashed.indexOf(1007) == 47);
+
+			boolean refused;
+			try {
+				list.insertAll(0, list);
+				refused = false;
+			} catch (IllegalArgumentException e) {
+				refused = true;
+			}
+			printTest("skipHash_insertAllItself_testIllegalArgument", refused && sameByIndex(list, range(0, 60)));
+			try {
+				list.insertAll(61, rangeList(true, true, false, 0, 1));
+				refused = false;
+			} catch (IndexOutOfBoundsException e) {
+				refused = true;
+			}
+			printTest("skipHash_insertAllPastEnd_testIndexOutOfBounds", refused && sameByIndex(list, range(0, 60)));
+
+			IUDoubleLinkedList<Integer> snapshots = rangeList(false, false, true, 0, 10);
+			try {
+				snapshots.insertAll(0, rangeList(false, false, true, 10, 10));
+				refused = false;
+			} catch (IllegalArgumentException e) {
+				refused = true;
+			}
+			printTest("snapshot_insertAllUnrelated_testIllegalArgument", refused && sameByIndex(snapshots, range(0, 10)));
+			IUDoubleLinkedList<Integer> tail = snapshots.splitAt(4);
+			snapshots.insertAll(0, tail);
+			expected = range(4, 6);
+			expected.addAll(range(0, 4));
+			printTest("snapshot_insertAllSplitPart_testGet", sameByIndex(snapshots, expected));
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE %s***\n", "test_SplitInsertAll");
+			e.printStackTrace();
+		} finally {
+			if (printSectionSummaries) {
+				printSectionSummary();
+			}
+		}
+	}
+
+	/**
+	 * Splits a spliterator all the way down and concatenates what each
+	 * piece covers, in encounter order
+	 * @param spliterator spliterator to take apart
+	 * @param out where the elements go
+	 * @return true if every split kept the sizes exact
+	 */
+	private static boolean splitDown(Spliterator<Integer> spliterator, List<Integer> out) {
+		long size = spliterator.estimateSize();
+		Spliterator<Integer> prefix = spliterator.trySplit();
+		if (prefix == null) {
+			spliterator.forEachRemaining(out::add);
+			return true;
+		}
+		if (prefix.estimateSize() + spliterator.estimateSize() != size) {
+			return false;
+		}
+		return splitDown(prefix, out) & splitDown(spliterator, out);
+	}
+
+	/**
+	 * @param type exception expected
+	 * @param action action to run
+	 * @return true if action throws an exception of type
+	 */
+	private static boolean throwsException(Class<? extends Exception> type, Runnable action) {
+		try {
+			action.run();
+			return false;
+		} catch (Exception e) {
+			return type.isInstance(e);
+		}
+	}
+
+	/** run spliterator and stream tests on IUDoubleLinkedList */
+	private void test_Spliterator() {
+		System.out.println("\nSpliterator Tests\n");
+		try {
+			List<Integer> expected = range(0, 5000);
+			for (int mode = 0; mode < 4; mode++) {
+				boolean skipIndexed = (mode & 1) != 0;
+				boolean hashIndexed = (mode & 2) != 0;
+				String name = (skipIndexed ? "skip" : "") + (hashIndexed ? "Hash" : "Plain");
+				IUDoubleLinkedList<Integer> list = rangeList(skipIndexed, hashIndexed, false, 0, 5000);
+				Spliterator<Integer> spliterator = list.spliterator();
+				printTest(name + "_spliterator_testCharacteristics", spliterator.hasCharacteristics(Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED)
+						&& spliterator.estimateSize() == 5000);
+				List<Integer> pieces = new ArrayList<Integer>();
+				printTest(name + "_spliterator_testSplitDown", splitDown(spliterator, pieces) && pieces.equals(expected));
+				printTest(name + "_parallelStream_testSameAsStream", list.parallelStream().collect(Collectors.toList()).equals(expected)
+						&& list.parallelStream().mapToLong(Integer::longValue).sum() == list.stream().mapToLong(Integer::longValue).sum());
+			}
+
+			IUDoubleLinkedList<Integer> list = rangeList(false, false, false, 0, 10);
+			Spliterator<Integer> spliterator = list.spliterator();
+			list.removeLast();
+			printTest("shrunkAfterSpliterator_testForEachRemaining", throwsException(ConcurrentModificationException.class, () -> spliterator.forEachRemaining(e -> { })));
+			Spliterator<Integer> cut = list.spliterator();
+			printTest("shrunkByAction_testForEachRemaining", throwsException(ConcurrentModificationException.class, () -> cut.forEachRemaining(e -> list.removeLast())));
+			Spliterator<Integer> grown = list.spliterator();
+			list.add(99);
+			printTest("grownAfterSpliterator_testTryAdvance", throwsException(ConcurrentModificationException.class, () -> grown.tryAdvance(e -> { })));
+			Spliterator<Integer> split = list.spliterator();
+			list.addToFront(98);
+			printTest("grownAfterSpliterator_testTrySplit", throwsException(ConcurrentModificationException.class, () -> split.trySplit()));
+
+			IUDoubleLinkedList<Integer> snapshots = rangeList(false, false, true, 0, 100);
+			Spliterator<Integer> snapshot = snapshots.spliterator();
+			for (int i = 0; i < 50; i++) {
+				snapshots.removeFirst();
+			}
+			List<Integer> seen = new ArrayList<Integer>();
+			snapshot.forEachRemaining(seen::add);
+			printTest("snapshot_changedAfterSpliterator_testSeesSnapshot", seen.equals(range(0, 100))
+					&& snapshots.stream().collect(Collectors.toList()).equals(range(50, 50)));
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE %s***\n", "test_Spliterator");
+			e.printStackTrace();
+		} finally {
+			if (printSectionSummaries) {
+				printSectionSummary();
+			}
+		}
+	}
+
+	/** run forEach and Cursor tests on IUDoubleLinkedList */
+	private void test_ForEachCursor() {
+		System.out.println("\nforEach and Cursor Tests\n");
+		try {
+			IUDoubleLinkedList<Integer> list = rangeList(false, false, false, 0, 100);
+			List<Integer> seen = new ArrayList<Integer>();
+			list.forEach(seen::add);
+			printTest("0to99_forEach_testOrder", seen.equals(range(0, 100)));
+			seen.clear();
+			new IUDoubleLinkedList<Integer>().forEach(seen::add);
+			printTest("emptyList_forEach_testNothing", seen.isEmpty());
+			printTest("0to99_forEachAddingAtRear_testConcurrentModification", throwsException(ConcurrentModificationException.class, () -> list.forEach(e -> {
+				if (e == 99) {
+					list.add(100);
+				}
+			})));
+			boolean refused;
+			try {
+				list.forEach(null);
+				refused = false;
+			} catch (NullPointerException e) {
+				refused = true;
+			}
+			printTest("0to99_forEachNull_testNullPointer", refused);
+
+			IUDoubleLinkedList<Integer> cursorList = rangeList(false, false, false, 0, 5);
+			IUDoubleLinkedList<Integer>.Cursor cursor = cursorList.cursor();
+			seen.clear();
+			while (cursor.hasNext()) {
+				seen.add(cursor.next());
+			}
+			boolean spent;
+			try {
+				cursor.next();
+				spent = false;
+			} catch (NoSuchElementException e) {
+				spent = true;
+			}
+			printTest("0to4_cursor_testTraversal", seen.equals(range(0, 5)) && spent);
+
+			cursorList.addToFront(-1);
+			printTest("0to4_addToFrontAfterCursor_testNext", throwsException(ConcurrentModificationException.class, () -> cursor.next()));
+			cursor.reset();
+			seen.clear();
+			while (cursor.hasNext()) {
+				seen.add(cursor.next());
+			}
+			printTest("0to4_addToFrontThenReset_testTraversal", seen.equals(range(-1, 6)));
+			boolean reused = true;
+			for (int pass = 0; pass < 3; pass++) {
+				cursor.reset();
+				int count = 0;
+				while (cursor.hasNext()) {
+					cursor.next();
+					count++;
+				}
+				reused &= (count == 6);
+			}
+			printTest("0to4_cursorResetThreeTimes_testTraversals", reused);
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE %s***\n", "test_ForEachCursor");
+			e.printStackTrace();
+		} finally {
+			if (printSectionSummaries) {
+				printSectionSummary();
+			}
+		}
+	}
+
+	/**
+	 * Runs random operations on list and on an ArrayList side by side
+	 * @param list empty list to exercise
+	 * @param random source of operations
+	 * @param ops number of operations
+	 * @return true if every answer and the final contents matched the ArrayList
+	 */
+	private static boolean fuzzAgainstReference(IndexedUnsortedList<Integer> list, Random random, int ops) {
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int op = 0; op < ops; op++) {
+			int n = expected.size();
+			Integer value = random.nextInt(50);
+			boolean same = true;
+			switch (random.nextInt(12)) {
+			case 0: list.addToFront(value); expected.add(0, value); break;
+			case 1: list.addToRear(value); expected.add(value); break;
+			case 2: { int i = random.nextInt(n + 1); list.add(i, value); expected.add(i, value); break; }
+			case 3: if (expected.contains(value)) { list.addAfter(-1, value); expected.add(expected.indexOf(value) + 1, -1); } break;
+			case 4: if (n > 0) { same = list.removeFirst().equals(expected.remove(0)); } break;
+			case 5: if (n > 0) { same = list.removeLast().equals(expected.remove(n - 1)); } break;
+			case 6: if (expected.contains(value)) { same = list.remove(value).equals(value); expected.remove(value); } break;
+			case 7: if (n > 0) { int i = random.nextInt(n); same = list.remove(i).equals(expected.remove(i)); } break;
+			case 8: if (n > 0) { int i = random.nextInt(n); list.set(i, value); expected.set(i, value); } break;
+			case 9: if (n > 0) { int i = random.nextInt(n); same = list.get(i).equals(expected.get(i)); } break;
+			case 10: same = list.indexOf(value) == expected.indexOf(value) && list.contains(value) == expected.contains(value); break;
+			default: same = (n == 0) ? list.isEmpty() : list.first().equals(expected.get(0)) && list.last().equals(expected.get(n - 1));
+			}
+			if (!same || list.size() != expected.size()) {
+				return false;
+			}
+		}
+		return sameByIndex(list, expected);
+	}
+
+	/**
+	 * Runs tasks on threads of their own and waits for all of them
+	 * @param tasks work for each thread
+	 * @return true if no task threw
+	 */
+	private static boolean runThreads(Runnable... tasks) throws InterruptedException {
+		Thread[] threads = new Thread[tasks.length];
+		AtomicBoolean failed = new AtomicBoolean();
+		for (int i = 0; i < tasks.length; i++) {
+			Runnable task = tasks[i];
+			threads[i] = new Thread(() -> {
+				try {
+					task.run();
+				} catch (RuntimeException | Error e) {
+					failed.set(true);
+					e.printStackTrace();
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		return !failed.get();
+	}
+
+	/**
+	 * Has each of several threads change only its own elements of a shared
+	 * list, keeping its own reference copy. Whatever the interleaving, each
+	 * thread's elements must end up in its reference's order.
+	 * @param list empty thread-safe list
+	 * @param threads number of threads
+	 * @param ops operations per thread
+	 * @return true if every thread's elements matched its reference
+	 */
+	private static boolean stressOwnElements(IndexedUnsortedList<Integer> list, int threads, int ops) throws InterruptedException {
+		List<List<Integer>> references = new ArrayList<List<Integer>>();
+		Runnable[] tasks = new Runnable[threads];
+		for (int t = 0; t < threads; t++) {
+			List<Integer> expected = new ArrayList<Integer>();
+			references.add(expected);
+			int base = t * 1000000;
+			Random random = new Random(t);
+			tasks[t] = () -> {
+				int next = base;
+				for (int op = 0; op < ops; op++) {
+					int n = expected.size();
+					switch (random.nextInt(5)) {
+					case 0: list.addToFront(next); expected.add(0, next++); break;
+					case 1: list.addToRear(next); expected.add(next++); break;
+					case 2: if (n > 0) { Integer target = expected.get(random.nextInt(n)); list.addAfter(next, target); expected.add(expected.indexOf(target) + 1, next++); } break;
+					default: if (n > 0) { Integer target = expected.get(random.nextInt(n)); list.remove(target); expected.remove(target); }
+					}
+				}
+			};
+		}
+		if (!runThreads(tasks)) {
+			return false;
+		}
+		List<List<Integer>> actual = new ArrayList<List<Integer>>();
+		for (int t = 0; t < threads; t++) {
+			actual.add(new ArrayList<Integer>());
+		}
+		int total = 0;
+		for (Integer element : list) {
+			actual.get(element / 1000000).add(element);
+			total++;
+		}
+		return actual.equals(references) && total == list.size();
+	}
+
+	/** run IUConcurrentLinkedList tests, alone and shared between threads */
+	private void test_ConcurrentLinkedList() {
+		System.out.println("\nIUConcurrentLinkedList Tests\n");
+		try {
+			printTest("concurrent_sequentialFuzz_testMatchesArrayList", fuzzAgainstReference(new IUConcurrentLinkedList<Integer>(), new Random(12), 5000));
+			printTest("concurrent_threeThreadsOwnElements_testOrder", stressOwnElements(new IUConcurrentLinkedList<Integer>(), 3, 2000));
+
+			IUConcurrentLinkedList<Integer> queue = new IUConcurrentLinkedList<Integer>();
+			int perProducer = 20000;
+			List<List<Integer>> taken = new ArrayList<List<Integer>>();
+			AtomicInteger remaining = new AtomicInteger(2 * perProducer);
+			Runnable[] tasks = new Runnable[4];
+			for (int t = 0; t < 2; t++) {
+				int base = t * 1000000;
+				tasks[t] = () -> {
+					for (int i = 0; i < perProducer; i++) {
+						queue.addToRear(base + i);
+					}
+				};
+				List<Integer> mine = new ArrayList<Integer>();
+				taken.add(mine);
+				tasks[2 + t] = () -> {
+					while (remaining.get() > 0) {
+						try {
+							mine.add(queue.removeFirst());
+							remaining.decrementAndGet();
+						} catch (NoSuchElementException e) {
+							Thread.yield(); //producers are behind
+						}
+					}
+				};
+			}
+			boolean clean = runThreads(tasks);
+			boolean[] seen = new boolean[2 * perProducer];
+			boolean once = true;
+			boolean fifo = true;
+			for (List<Integer> mine : taken) {
+				int[] last = {-1, -1};
+				for (Integer element : mine) {
+					int producer = element / 1000000;
+					int i = element % 1000000;
+					once &= !seen[producer * perProducer + i];
+					seen[producer * perProducer + i] = true;
+					fifo &= (i > last[producer]);
+					last[producer] = i;
+				}
+			}
+			printTest("concurrent_twoProducersTwoConsumers_testTakenOnce", clean && once && queue.isEmpty()
+					&& taken.get(0).size() + taken.get(1).size() == 2 * perProducer);
+			printTest("concurrent_twoProducersTwoConsumers_testFifoPerProducer", fifo);
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE %s***\n", "test_ConcurrentLinkedList");
+			e.printStackTrace();
+		} finally {
+			if (printSectionSummaries) {
+				printSectionSummary();
+			}
+		}
+	}
+
+	/** run IUStampedLockList tests, alone and with readers racing a writer */
+	private void test_StampedLockList() {
+		System.out.println("\nIUStampedLockList Tests\n");
+		try {
+			printTest("stamped_sequentialFuzz_testMatchesArrayList", fuzzAgainstReference(new IUStampedLockList<Integer>(), new Random(13), 5000));
+			printTest("stamped_skipIndexedSequentialFuzz_testMatchesArrayList", fuzzAgainstReference(new IUStampedLockList<Integer>(true), new Random(13), 5000));
+			printTest("stamped_threeThreadsOwnElements_testOrder", stressOwnElements(new IUStampedLockList<Integer>(), 3, 2000));
+
+			//the writer slides a run of ten consecutive numbers along, so any
+			//consistent view holds a consecutive run of ten or eleven
+			IUStampedLockList<Integer> window = new IUStampedLockList<Integer>();
+			for (int i = 0; i < 10; i++) {
+				window.addToRear(i);
+			}
+			AtomicBoolean done = new AtomicBoolean();
+			AtomicBoolean torn = new AtomicBoolean();
+			Runnable reader = () -> {
+				while (!done.get()) {
+					int size = window.size();
+					Integer first = window.first();
+					int indexOfNext = window.indexOf(first + 1);
+					Iterator<Integer> it = window.iterator();
+					int count = 0;
+					int previous = it.next();
+					count++;
+					while (it.hasNext()) {
+						int element = it.next();
+						torn.compareAndSet(false, element != previous + 1);
+						previous = element;
+						count++;
+					}
+					torn.compareAndSet(false, size < 10 || size > 11 || count < 10 || count > 11
+							|| indexOfNext > 1);
+				}
+			};
+			Runnable writer = () -> {
+				for (int i = 10; i < 20000; i++) {
+					window.addToRear(i);
+					window.removeFirst();
+				}
+				done.set(true);
+			};
+			boolean clean = runThreads(writer, reader, reader);
+			printTest("stamped_readersRaceWriter_testConsistentViews", clean && !torn.get());
+			printTest("stamped_readersRaceWriter_testFinalContents", sameByIndex(window, range(19990, 10)));
+
+			Iterator<Integer> pinned = window.iterator();
+			window.removeFirst();
+			window.addToRear(-1);
+			List<Integer> seen = new ArrayList<Integer>();
+			pinned.forEachRemaining(seen::add);
+			printTest("stamped_iteratorThenChanges_testSnapshot", seen.equals(range(19990, 10)));
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE %s***\n", "test_StampedLockList");
+			e.printStackTrace();
+		} finally {
+			if (printSectionSummaries) {
+				printSectionSummary();
+			}
+		}
+	}
+
+	/**
+	 * Tells whether every segment of list is within the bounds its
+	 * rebalancing keeps to: no more than twice the average size (or 64),
+	 * and no less than half of it once the average is over 64. Segments
+	 * are private, so they are read reflectively.
+	 * @param list list to check
+	 * @return true if no segment is skewed
+	 */
+	private static boolean balanced(IUSegmentedList<?> list) throws ReflectiveOperationException {
+		Field segmentsField = IUSegmentedList.class.getDeclaredField("segments");
+		segmentsField.setAccessible(true);
+		Object[] segments = (Object[]) segmentsField.get(list);
+		int average = list.size() / segments.length;
+		for (Object segment : segments) {
+			Field listField = segment.getClass().getDeclaredField("list");
+			listField.setAccessible(true);
+			int size = ((IUDoubleLinkedList<?>) listField.get(segment)).size();
+			if ((size > 64 && size > 2 * average) || (average > 64 && size < average / 2)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** run IUSegmentedList tests, alone, shared between threads, and for balance */
+	private void test_SegmentedList() {
+		System.out.println("\nIUSegmentedList Tests\n");
+		try {
+			boolean matched = true;
+			for (int segments = 1; segments <= 7; segments++) {
+				matched &= fuzzAgainstReference(new IUSegmentedList<Integer>(segments), new Random(segments), 3000);
+			}
+			printTest("segmented_oneToSevenSegmentsFuzz_testMatchesArrayList", matched);
+			printTest("segmented_threeThreadsOwnElements_testOrder", stressOwnElements(new IUSegmentedList<Integer>(4), 3, 2000));
+
+			IUSegmentedList<Integer> segmented = new IUSegmentedList<Integer>(8);
+			for (int i = 0; i < 20000; i++) {
+				segmented.addToRear(i);
+			}
+			printTest("segmented_appendOnly_testBalanced", balanced(segmented) && sameByIndex(segmented, range(0, 20000)));
+			boolean drained = true;
+			for (int i = 0; i < 15000; i++) {
+				drained &= segmented.removeFirst().equals(i);
+			}
+			printTest("segmented_removeFirstDrain_testBalanced", drained && balanced(segmented) && sameByIndex(segmented, range(15000, 5000)));
+
+			IUSegmentedList<Integer> shared = new IUSegmentedList<Integer>(4);
+			Runnable appender = () -> {
+				for (int i = 0; i < 5000; i++) {
+					shared.addToRear(i);
+				}
+			};
+			boolean clean = runThreads(appender, appender, appender);
+			int total = 0;
+			for (Integer element : shared) {
+				total += element;
+			}
+			printTest("segmented_threeAppenders_testAllKept", clean && shared.size() == 15000 && total == 3 * (4999 * 5000 / 2)
+					&& balanced(shared));
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE %s***\n", "test_SegmentedList");
+			e.printStackTrace();
+		} finally {
+			if (printSectionSummaries) {
+				printSectionSummary();
+			}
+		}
+	}
+
+	/**
+	 * @param it iterator to drain
+	 * @return new ArrayList of what it returned
+	 */
+	private static List<Integer> drain(Iterator<Integer> it) {
+		List<Integer> retVal = new ArrayList<Integer>();
+		it.forEachRemaining(retVal::add);
+		return retVal;
+	}
+
+	/** run tests on snapshot-mode iterators and forEach */
+	private void test_Snapshots() {
+		System.out.println("\nSnapshot Tests\n");
+		try {
+			IUDoubleLinkedList<Integer> list = rangeList(false, false, true, 0, 10);
+			Iterator<Integer> started = list.iterator();
+			started.next();
+			started.next();
+			started.next();
+			list.removeFirst();
+			list.set(5, 99);
+			list.add(4, -1);
+			list.addToRear(10);
+			list.removeLast();
+			list.remove(Integer.valueOf(7));
+			List<Integer> changed = new ArrayList<Integer>(range(1, 9));
+			changed.set(5, 99);
+			changed.add(4, -1);
+			changed.remove(Integer.valueOf(7));
+			printTest("snapshot_changesAfterIteratorStarted_testOldVersion", drain(started).equals(range(3, 7)));
+			printTest("snapshot_changesBeforeIterator_testNewVersion", drain(list.iterator()).equals(changed));
+
+			IUDoubleLinkedList<Integer> pinnedList = rangeList(true, true, true, 0, 5);
+			List<Iterator<Integer>> pinned = new ArrayList<Iterator<Integer>>();
+			List<List<Integer>> versions = new ArrayList<List<Integer>>();
+			Random random = new Random(16);
+			for (int v = 0; v < 8; v++) {
+				pinned.add(pinnedList.iterator());
+				versions.add(drain(pinnedList.listIterator()));
+				switch (v % 4) {
+				case 0: pinnedList.addToFront(100 + v); break;
+				case 1: pinnedList.remove(random.nextInt(pinnedList.size())); break;
+				case 2: pinnedList.set(random.nextInt(pinnedList.size()), 200 + v); break;
+				default: pinnedList.add(random.nextInt(pinnedList.size() + 1), 300 + v);
+				}
+			}
+			boolean allOld = true;
+			for (int v = pinned.size() - 1; v >= 0; v--) {
+				allOld &= drain(pinned.get(v)).equals(versions.get(v));
+			}
+			printTest("snapshot_eightPinnedVersions_testEachSeesItsOwn", allOld);
+
+			IUDoubleLinkedList<Integer> forEachList = rangeList(false, false, true, 0, 5);
+			List<Integer> visited = new ArrayList<Integer>();
+			forEachList.forEach(element -> {
+				visited.add(element);
+				forEachList.addToRear(element + 5);
+			});
+			printTest("snapshot_forEachChangingList_testOldVersionNoCME", visited.equals(range(0, 5))
+					&& drain(forEachList.iterator()).equals(range(0, 10)));
+			printTest("snapshot_streamAfterChanges_testNewVersion",
+					forEachList.stream().collect(Collectors.toList()).equals(range(0, 10)));
+
+			//one writer slides a run of ten along while readers take snapshots
+			IUDoubleLinkedList<Integer> window = rangeList(false, false, true, 0, 10);
+			AtomicBoolean done = new AtomicBoolean();
+			AtomicBoolean torn = new AtomicBoolean();
+			Runnable reader = () -> {
+				while (!done.get()) {
+					List<Integer> seen = drain(window.iterator());
+					boolean consecutive = seen.size() == 10 || seen.size() == 11;
+					for (int i = 1; i < seen.size(); i++) {
+						consecutive &= seen.get(i) == seen.get(i - 1) + 1;
+					}
+					torn.compareAndSet(false, !consecutive);
+				}
+			};
+			Runnable writer = () -> {
+				for (int i = 10; i < 20000; i++) {
+					window.addToRear(i);
+					window.removeFirst();
+				}
+				done.set(true);
+			};
+			boolean clean = runThreads(writer, reader);
+			printTest("snapshot_readerRacesWriter_testConsistentSnapshots", clean && !torn.get()
+					&& drain(window.iterator()).equals(range(19990, 10)));
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE %s***\n", "test_Snapshots");
+			e.printStackTrace();
+		} finally {
+			if (printSectionSummaries) {
+				printSectionSummary();
+			}
+		}
+	}
+
+	/** run IUBlockingDeque tests on capacity and drainTo batches */
+	private void test_BlockingDeque() {
+		System.out.println("\nIUBlockingDeque Tests\n");
+		try {
+			IUBlockingDeque<Integer> deque = new IUBlockingDeque<Integer>(10);
+			boolean offered = true;
+			for (int i = 0; i < 10; i++) {
+				offered &= deque.offer(i);
+			}
+			printTest("capacity10_offerTen_testAccepted", offered && deque.remainingCapacity() == 0);
+			printTest("full_offer_testRefused", !deque.offer(10) && deque.size() == 10);
+			printTest("full_addToRear_testIllegalState", throwsException(IllegalStateException.class, () -> deque.addToRear(10)));
+			printTest("full_addToFront_testIllegalState", throwsException(IllegalStateException.class, () -> deque.addToFront(10)));
+
+			List<Integer> batch = new ArrayList<Integer>();
+			printTest("full_drainToMax3_testBatch", deque.drainTo(batch, 3) == 3 && batch.equals(range(0, 3)));
+			printTest("drained3_remainingCapacity_test3", deque.remainingCapacity() == 3 && sameByIndex(deque, range(3, 7)));
+			printTest("drained3_drainToMax0_testNothing", deque.drainTo(batch, 0) == 0 && batch.size() == 3 && deque.size() == 7);
+			printTest("drained3_drainToNull_testNPE", throwsException(NullPointerException.class, () -> deque.drainTo(null, 1)));
+			deque.addToRear(10);
+			deque.addToRear(11);
+			printTest("refilled_drainTo_testEverythingInOrder", deque.drainTo(batch) == 9 && batch.equals(range(0, 12)));
+			printTest("drainedEmpty_drainTo_testNothing", deque.drainTo(batch) == 0 && deque.isEmpty() && deque.remainingCapacity() == 10);
+			deque.addToRear(12);
+			deque.add(0, 11);
+			printTest("drainedEmpty_addsAfterwards_testUsable", sameByIndex(deque, range(11, 2)) && deque.poll() == 11);
+
+			//a producer blocks on a small deque while a consumer takes batches
+			IUBlockingDeque<Integer> small = new IUBlockingDeque<Integer>(16);
+			List<Integer> consumed = new ArrayList<Integer>();
+			AtomicInteger largestBatch = new AtomicInteger();
+			Runnable producer = () -> {
+				try {
+					for (int i = 0; i < 20000; i++) {
+						small.put(i);
+					}
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+			};
+			Runnable consumer = () -> {
+				try {
+					while (consumed.size() < 20000) {
+						int moved = small.drainTo(consumed, 8);
+						largestBatch.accumulateAndGet(moved, Math::max);
+						if (moved == 0) {
+							consumed.add(small.take());
+						}
+					}
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+			};
+			boolean clean = runThreads(producer, consumer);
+			printTest("producerConsumer_drainToMax8_testFifo", clean && consumed.equals(range(0, 20000)) && small.isEmpty());
+			printTest("producerConsumer_drainToMax8_testBatchLimit", largestBatch.get() <= 8);
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE %s***\n", "test_BlockingDeque");
+			e.printStackTrace();
+		} finally {
+			if (printSectionSummaries) {
+				printSectionSummary();
+			}
+		}
+	}
+
+	/**
+	 * Runs elements through queue in rounds that wrap around its ring
+	 * a hundred times, checking FIFO order, first and size throughout
+	 * @param queue empty queue with a capacity of 8
+	 * @return true if everything came out in order
+	 */
+	private static boolean wrapAround(IUQueue<Integer> queue) {
+		int added = 0;
+		int removed = 0;
+		boolean ok = true;
+		for (int round = 0; round < 200; round++) {
+			int adds = 1 + round % 8;
+			for (int i = 0; i < adds && queue.size() < 8; i++) {
+				queue.addToRear(added++);
+			}
+			ok &= queue.size() == added - removed && queue.first() == removed;
+			int removes = 1 + (round * 5) % 8;
+			for (int i = 0; i < removes && !queue.isEmpty(); i++) {
+				ok &= queue.removeFirst() == removed++;
+			}
+		}
+		while (!queue.isEmpty()) {
+			ok &= queue.removeFirst() == removed++;
+		}
+		return ok && added == removed && added >= 8 * 100;
+	}
+
+	/**
+	 * Passes 20000 elements from one producer thread to one consumer
+	 * thread, through addAll batches and drain batches
+	 * @param addAll queue's addAll
+	 * @param drain queue's drain
+	 * @return true if every element arrived once and in order
+	 */
+	private static boolean passAcross(AddAll addAll, Drain drain) throws InterruptedException {
+		Integer[] elements = range(0, 20000).toArray(new Integer[0]);
+		List<Integer> received = new ArrayList<Integer>();
+		Runnable producer = () -> {
+			int sent = 0;
+			while (sent < elements.length) {
+				int added = addAll.addAll(elements, sent, Math.min(5, elements.length - sent));
+				sent += added;
+				if (added == 0) {
+					Thread.yield(); //full, let the consumer run
+				}
+			}
+		};
+		Runnable consumer = () -> {
+			while (received.size() < elements.length) {
+				if (drain.drain(received::add, 7) == 0) {
+					Thread.yield();
+				}
+			}
+		};
+		return runThreads(producer, consumer) && received.equals(range(0, 20000));
+	}
+
+	/** addAll of a ring queue */
+	private interface AddAll {
+		int addAll(Integer[] elements, int offset, int count);
+	}
+
+	/** drain of a ring queue */
+	private interface Drain {
+		int drain(Consumer<? super Integer> action, int max);
+	}
+
+	/** run IUSpscRingQueue and IUMpscRingQueue tests */
+	private void test_RingQueues() {
+		System.out.println("\nRing Queue Tests\n");
+		try {
+			printTest("spsc_capacity1000_testRoundedTo1024", new IUSpscRingQueue<Integer>(1000).capacity() == 1024);
+			printTest("mpsc_capacity1000_testRoundedTo1024", new IUMpscRingQueue<Integer>(1000).capacity() == 1024);
+			printTest("spsc_capacity8_testWrapAround", wrapAround(new IUSpscRingQueue<Integer>(8)));
+			printTest("mpsc_capacity8_testWrapAround", wrapAround(new IUMpscRingQueue<Integer>(8)));
+
+			Integer[] ten = range(0, 10).toArray(new Integer[0]);
+			IUSpscRingQueue<Integer> spsc = new IUSpscRingQueue<Integer>(8);
+			spsc.addToRear(-1);
+			spsc.removeFirst();
+			printTest("spsc_addAllTenIntoEight_testPartialFill", spsc.addAll(ten, 0, 10) == 8 && !spsc.offer(8)
+					&& throwsException(IllegalStateException.class, () -> spsc.addToRear(8)));
+			List<Integer> drained = new ArrayList<Integer>();
+			printTest("spsc_drainMax3_testThreeInOrder", spsc.drain(drained::add, 3) == 3 && drained.equals(range(0, 3)) && spsc.size() == 5);
+			printTest("spsc_addAllRest_testFillsFreedRoom", spsc.addAll(ten, 8, 2) == 2 && spsc.drain(drained::add, 100) == 7
+					&& drained.equals(range(0, 10)) && spsc.isEmpty() && spsc.poll() == null);
+			Integer[] withNull = {0, 1, null, 3};
+			printTest("spsc_addAllNullThird_testNPE", throwsException(NullPointerException.class, () -> spsc.addAll(withNull, 0, 4)));
+			printTest("spsc_addAllNullThird_testFirstTwoAdded", spsc.size() == 2 && spsc.removeFirst() == 0 && spsc.removeFirst() == 1);
+			printTest("spsc_empty_testRemoveFirstNoSuchElement", throwsException(NoSuchElementException.class, () -> spsc.removeFirst()));
+
+			IUMpscRingQueue<Integer> mpsc = new IUMpscRingQueue<Integer>(8);
+			mpsc.addToRear(-1);
+			mpsc.removeFirst();
+			printTest("mpsc_addAllTenIntoEight_testPartialFill", mpsc.addAll(ten, 0, 10) == 8 && !mpsc.offer(8)
+					&& throwsException(IllegalStateException.class, () -> mpsc.addToRear(8)));
+			drained.clear();
+			printTest("mpsc_drainMax3_testThreeInOrder", mpsc.drain(drained::add, 3) == 3 && drained.equals(range(0, 3)) && mpsc.size() == 5);
+			printTest("mpsc_addAllRest_testFillsFreedRoom", mpsc.addAll(ten, 8, 2) == 2 && mpsc.drain(drained::add, 100) == 7
+					&& drained.equals(range(0, 10)) && mpsc.isEmpty() && mpsc.poll() == null);
+			printTest("mpsc_addAllNullThird_testNPE", throwsException(NullPointerException.class, () -> mpsc.addAll(withNull, 0, 4)));
+			printTest("mpsc_addAllNullThird_testNothingAdded", mpsc.isEmpty());
+			printTest("mpsc_addAllBadRange_testIndexOutOfBounds", throwsException(IndexOutOfBoundsException.class, () -> mpsc.addAll(ten, 8, 3)));
+
+			printTest("spsc_producerConsumerThreads_testInOrder", passAcross(spsc::addAll, spsc::drain));
+			printTest("mpsc_producerConsumerThreads_testInOrder", passAcross(mpsc::addAll, mpsc::drain));
+
+			//two producers: each one's batches arrive whole and in its order
+			IUMpscRingQueue<Integer> shared = new IUMpscRingQueue<Integer>(16);
+			List<Integer> received = new ArrayList<Integer>();
+			Runnable[] tasks = new Runnable[3];
+			for (int t = 0; t < 2; t++) {
+				Integer[] mine = range(t * 1000000, 10000).toArray(new Integer[0]);
+				tasks[t] = () -> {
+					int sent = 0;
+					while (sent < mine.length) {
+						int added = shared.addAll(mine, sent, 4);
+						sent += added;
+						if (added == 0) {
+							Thread.yield();
+						}
+					}
+				};
+			}
+			tasks[2] = () -> {
+				while (received.size() < 20000) {
+					if (shared.drain(received::add, 16) == 0) {
+						Thread.yield();
+					}
+				}
+			};
+			boolean clean = runThreads(tasks);
+			int[] next = {0, 1000000};
+			boolean fifo = true;
+			for (Integer element : received) {
+				int producer = element / 1000000;
+				fifo &= element == next[producer]++;
+			}
+			printTest("mpsc_twoProducers_testFifoPerProducer", clean && fifo && received.size() == 20000);
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE %s***\n", "test_RingQueues");
+			e.printStackTrace();
+		} finally {
+			if (printSectionSummaries) {
+				printSectionSummary();
+			}
+		}
+	}
+
+	/**
+	 * Subscriber that applies every change it is sent to a mirror list,
+	 * asking for one batch at a time
+	 */
+	private static class MirrorSubscriber implements Flow.Subscriber<List<ChangeFeed.Change<Integer>>> {
+		final IUDoubleLinkedList<Integer> mirror;
+		final CountDownLatch completed = new CountDownLatch(1);
+		volatile Throwable error;
+		private Flow.Subscription subscription;
+
+		/**
+		 * @param list list whose elements the mirror starts with
+		 */
+		MirrorSubscriber(IUDoubleLinkedList<Integer> list) {
+			mirror = new IUDoubleLinkedList<Integer>();
+			list.forEach(mirror::addToRear);
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(1);
+		}
+
+		@Override
+		public void onNext(List<ChangeFeed.Change<Integer>> batch) {
+			for (ChangeFeed.Change<Integer> change : batch) {
+				change.applyTo(mirror);
+			}
+			subscription.request(1);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+			completed.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			completed.countDown();
+		}
+
+		/**
+		 * Waits for the feed to complete
+		 * @param list list being mirrored
+		 * @return true if the feed completed without error and the mirror
+		 *  equals list
+		 */
+		boolean mirrors(IUDoubleLinkedList<Integer> list) throws InterruptedException {
+			return completed.await(10, TimeUnit.SECONDS) && error == null && sameByIndex(list, drain(mirror.iterator()));
+		}
+	}
+
+	/** run change feed tests, mirroring lists through random changes */
+	private void test_ChangeFeed() {
+		System.out.println("\nChange Feed Tests\n");
+		try {
+			for (int mode = 0; mode < 4; mode++) {
+				String name = "skip" + ((mode & 1) != 0) + "Hash" + ((mode & 2) != 0);
+				IUDoubleLinkedList<Integer> list = new IUDoubleLinkedList<Integer>((mode & 1) != 0, (mode & 2) != 0);
+				for (int i = 0; i < 50; i++) {
+					list.add(i);
+				}
+				MirrorSubscriber early = new MirrorSubscriber(list);
+				list.changes().subscribe(early);
+				MirrorSubscriber late = null;
+				Random random = new Random(mode);
+				for (int op = 0; op < 4000; op++) {
+					int n = list.size();
+					Integer value = op % 100;
+					switch ((n == 0) ? 0 : random.nextInt(12)) {
+					case 0: list.add(random.nextInt(n + 1), value); break;
+					case 1: list.addToFront(value); break;
+					case 2: list.addAfter(value, list.get(random.nextInt(n))); break;
+					case 3: list.remove(random.nextInt(n)); break;
+					case 4: list.remove(list.get(random.nextInt(n))); break;
+					case 5: list.removeLast(); break;
+					case 6: list.set(random.nextInt(n), -op); break;
+					case 7: {
+						ListIterator<Integer> it = list.listIterator(random.nextInt(n + 1));
+						it.add(value);
+						if (it.hasNext()) {
+							it.next();
+							it.remove();
+						}
+						break;
+					}
+					case 8: {
+						int k = random.nextInt(n + 1);
+						list.insertAll(random.nextInt(k + 1), list.splitAt(k));
+						break;
+					}
+					case 9: if (op % 10 == 0) { list.sort(null); } break;
+					case 10: if (op % 10 == 0) { list.parallelSort(Comparator.reverseOrder()); } break;
+					default: list.removeFirst();
+					}
+					if (op == 2000) {
+						late = new MirrorSubscriber(list);
+						list.changes().subscribe(late);
+					}
+				}
+				list.changes().close();
+				printTest(name + "_randomChanges_testMirrorEqual", early.mirrors(list));
+				printTest(name + "_subscribedHalfway_testMirrorEqual", late.mirrors(list));
+			}
+
+			IUDoubleLinkedList<Integer> big = rangeList(false, false, false, 0, 10000);
+			MirrorSubscriber subscriber = new MirrorSubscriber(big);
+			big.changes().subscribe(subscriber);
+			big.parallelSort(Comparator.reverseOrder());
+			big.changes().close();
+			printTest("0to9999_parallelSortSplitIntoRuns_testMirrorEqual", subscriber.mirrors(big) && big.first() == 9999);
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE %s***\n", "test_ChangeFeed");
+			e.printStackTrace();
+		} finally {
+			if (printSectionSummaries) {
+				printSectionSummary();
+			}
+		}
+	}
+
+	/**
+	 * Deletes directory and the files in it
+	 * @param directory directory without subdirectories
+	 */
+	private static void deleteDirectory(Path directory) throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+
+	/**
+	 * @param directory directory of an IUDurableList
+	 * @return names of the log files in it
+	 */
+	private static List<String> logNames(Path directory) throws IOException {
+		List<String> retVal = new ArrayList<String>();
+		try (DirectoryStream<Path> logs = Files.newDirectoryStream(directory, "wal-*")) {
+			for (Path log : logs) {
+				retVal.add(log.getFileName().toString());
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Opens the list stored in directory, checks it holds expected, and
+	 * closes it again
+	 * @param directory directory of an IUDurableList of Integers
+	 * @param expected what the list should hold
+	 * @return true if it held expected
+	 */
+	private static boolean reopensAs(Path directory, List<Integer> expected) throws IOException {
+		try (IUDurableList<Integer> reopened = new IUDurableList<Integer>(directory, ElementCodec.INTEGER)) {
+			return sameByIndex(reopened, expected);
+		}
+	}
+
+	/** run IUDurableList tests on recovery, torn logs and checkpoints */
+	private void test_DurableList() {
+		System.out.println("\nIUDurableList Tests\n");
+		try {
+			for (IUDurableList.SyncPolicy policy : IUDurableList.SyncPolicy.values()) {
+				Path directory = Files.createTempDirectory("ListTester");
+				IUDurableList<Integer> list = new IUDurableList<Integer>(directory, ElementCodec.INTEGER, policy, 16);
+				boolean matched = fuzzAgainstReference(list, new Random(20), 2000);
+				List<Integer> expected = drain(list.iterator());
+				list.close();
+				printTest(policy + "_fuzzThenReopen_testSameList", matched && reopensAs(directory, expected));
+				deleteDirectory(directory);
+			}
+
+			Path directory = Files.createTempDirectory("ListTester");
+			IUDurableList<Integer> list = new IUDurableList<Integer>(directory, ElementCodec.INTEGER);
+			for (int i = 0; i < 10; i++) {
+				list.addToRear(i);
+			}
+			list.close();
+			Path log = directory.resolve("wal-0");
+			long logSize = Files.size(log);
+			Files.write(log, new byte[] {5, 0, 0, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+			printTest("0to9_garbageAfterLog_testTailDropped", reopensAs(directory, range(0, 10)) && Files.size(log) == logSize);
+			list = new IUDurableList<Integer>(directory, ElementCodec.INTEGER);
+			list.addToRear(10);
+			list.close();
+			try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+				channel.truncate(Files.size(log) - 3);
+			}
+			printTest("0to10_lastRecordTorn_testLastChangeLost", reopensAs(directory, range(0, 10)));
+			byte[] bytes = Files.readAllBytes(log);
+			bytes[bytes.length - 1] ^= 1;
+			Files.write(log, bytes);
+			printTest("0to9_lastRecordCorrupt_testLastChangeLost", reopensAs(directory, range(0, 9)));
+
+			list = new IUDurableList<Integer>(directory, ElementCodec.INTEGER);
+			list.checkpoint();
+			list.addToRear(9);
+			list.close();
+			printTest("0to8_checkpoint_testNewGeneration", logNames(directory).equals(List.of("wal-1"))
+					&& Files.exists(directory.resolve("checkpoint")) && reopensAs(directory, range(0, 10)));
+
+			list = new IUDurableList<Integer>(directory, ElementCodec.INTEGER, IUDurableList.SyncPolicy.NONE, 1);
+			for (int i = 10; i < 100000; i++) {
+				list.addToRear(i);
+			}
+			List<String> rolledLogs = logNames(directory);
+			list.close();
+			printTest("0to99999_logOutgrowsCheckpoint_testRolledOver", rolledLogs.size() == 1 && !rolledLogs.contains("wal-1")
+					&& reopensAs(directory, range(0, 100000)));
+			byte[] checkpoint = Files.readAllBytes(directory.resolve("checkpoint"));
+			checkpoint[0] ^= 1;
+			Files.write(directory.resolve("checkpoint"), checkpoint);
+			printTest("corruptCheckpoint_open_testIOException", throwsException(UncheckedIOException.class, () -> {
+				try {
+					reopensAs(directory, range(0, 0));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}));
+			deleteDirectory(directory);
+
+			Path crashDirectory = Files.createTempDirectory("ListTester");
+			IUDurableList<Integer> crashed = new IUDurableList<Integer>(crashDirectory, ElementCodec.INTEGER, IUDurableList.SyncPolicy.NONE, 64);
+			for (int i = 0; i < 100; i++) {
+				crashed.addToRear(i);
+			}
+			printTest("NONE_reopenWithoutClose_testEveryChangeKept", Files.size(crashDirectory.resolve("wal-0")) > 0
+					&& reopensAs(crashDirectory, range(0, 100)));
+			crashed.close();
+			deleteDirectory(crashDirectory);
+
+			Path smallDirectory = Files.createTempDirectory("ListTester");
+			IUDurableList<Integer> small = new IUDurableList<Integer>(smallDirectory, ElementCodec.INTEGER);
+			small.addToRear(1);
+			printTest("1_addToRearNull_testNPE", throwsException(NullPointerException.class, () -> small.addToRear(null)));
+			printTest("1_setNull_testNPE", throwsException(NullPointerException.class, () -> small.set(0, null)));
+			small.close();
+			printTest("1_nullsRefused_testNothingLogged", small.size() == 1 && reopensAs(smallDirectory, range(1, 1)));
+			printTest("closed_addToRear_testIllegalState", throwsException(IllegalStateException.class, () -> small.addToRear(2)));
+			printTest("closed_read_testStillReadable", small.size() == 1 && small.first() == 1);
+			deleteDirectory(smallDirectory);
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE %s***\n", "test_DurableList");
+			e.printStackTrace();
+		} finally {
+			if (printSectionSummaries) {
+				printSectionSummary();
+			}
+		}
+	}
+
+	/**
+	 * @param list list to save
+	 * @param codec codec for its elements
+	 * @param compress true to compress blocks
+	 * @return bytes writeTo wrote
+	 */
+	private static <T> byte[] written(IUDoubleLinkedList<T> list, ElementCodec<T> codec, boolean compress) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		list.writeTo(Channels.newChannel(bytes), codec, compress);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @param bytes bytes writeTo wrote
+	 * @param codec codec for the elements
+	 * @param list list to load them into
+	 * @return true if readFrom threw IOException
+	 */
+	private static <T> boolean readFails(byte[] bytes, ElementCodec<T> codec, IUDoubleLinkedList<T> list) {
+		try {
+			list.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes)), codec);
+			return false;
+		} catch (IOException e) {
+			return true;
+		}
+	}
+
+	/** run writeTo and readFrom tests, compressed and not */
+	private void test_BinarySnapshot() {
+		System.out.println("\nBinary Snapshot Tests\n");
+		try {
+			IUDoubleLinkedList<Integer> ints = rangeList(false, false, false, 0, 100000);
+			IUDoubleLinkedList<String> strings = new IUDoubleLinkedList<String>();
+			Random random = new Random(22);
+			for (int i = 0; i < 5000; i++) {
+				strings.addToRear("s" + random.nextInt(100) + "-".repeat(random.nextInt(40)));
+			}
+			strings.add(2500, "");
+			for (boolean compress : new boolean[] {false, true}) {
+				String name = compress ? "compressed" : "uncompressed";
+				IUDoubleLinkedList<Integer> intCopy = new IUDoubleLinkedList<Integer>(true, true);
+				intCopy.readFrom(Channels.newChannel(new ByteArrayInputStream(written(ints, ElementCodec.INTEGER, compress))), ElementCodec.INTEGER);
+				printTest(name + "_0to99999Integers_testRoundTrip", sameByIndex(intCopy, range(0, 100000))
+						&& intCopy.indexOf(99999) == 99999);
+				IUDoubleLinkedList<String> stringCopy = new IUDoubleLinkedList<String>();
+				stringCopy.addToRear("kept");
+				stringCopy.readFrom(Channels.newChannel(new ByteArrayInputStream(written(strings, ElementCodec.STRING, compress))), ElementCodec.STRING);
+				boolean same = stringCopy.size() == strings.size() + 1 && stringCopy.removeFirst().equals("kept");
+				Iterator<String> expected = strings.iterator();
+				for (String element : stringCopy) {
+					same &= element.equals(expected.next());
+				}
+				printTest(name + "_5001Strings_testAppendedRoundTrip", same);
+				IUDoubleLinkedList<Integer> emptyCopy = new IUDoubleLinkedList<Integer>();
+				emptyCopy.readFrom(Channels.newChannel(new ByteArrayInputStream(written(new IUDoubleLinkedList<Integer>(), ElementCodec.INTEGER, compress))), ElementCodec.INTEGER);
+				printTest(name + "_empty_testRoundTrip", emptyCopy.isEmpty());
+			}
+
+			IUDoubleLinkedList<Integer> repeats = new IUDoubleLinkedList<Integer>();
+			for (int i = 0; i < 50000; i++) {
+				repeats.addToRear(i % 16);
+			}
+			byte[] plain = written(repeats, ElementCodec.INTEGER, false);
+			byte[] packed = written(repeats, ElementCodec.INTEGER, true);
+			printTest("repetitive_compress_testMuchSmaller", packed.length * 4 < plain.length);
+
+			for (boolean compress : new boolean[] {false, true}) {
+				String name = compress ? "compressed" : "uncompressed";
+				byte[] bytes = written(ints, ElementCodec.INTEGER, compress);
+				boolean rejected = true;
+				IUDoubleLinkedList<Integer> target = rangeList(false, false, false, 0, 3);
+				for (int at = 0; at < bytes.length; at += 1 + bytes.length / 40) {
+					bytes[at] ^= 0x10;
+					rejected &= readFails(bytes, ElementCodec.INTEGER, target);
+					bytes[at] ^= 0x10;
+				}
+				printTest(name + "_oneByteCorrupted_testIOException", rejected);
+				printTest(name + "_truncated_testIOException", readFails(Arrays.copyOf(bytes, bytes.length - 5), ElementCodec.INTEGER, target)
+						&& readFails(Arrays.copyOf(bytes, 8), ElementCodec.INTEGER, target));
+				printTest(name + "_rejectedSnapshots_testListUnchanged", sameByIndex(target, range(0, 3)));
+			}
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE %s***\n", "test_BinarySnapshot");
+			e.printStackTrace();
+		} finally {
+			if (printSectionSummaries) {
+				printSectionSummary();
+			}
+		}
+	}
+
+	/** run sort and parallelSort tests on stability, indexes and rollback */
+	private void test_Sort() {
+		System.out.println("\nSort Tests\n");
+		try {
+			//elements are key * 100000 + insertion number, compared by key alone
+			Comparator<Integer> byKey = Comparator.comparing(element -> element / 100000);
+			for (int count : new int[] {0, 1, 2, 17, 1000, 20000}) {
+				Random random = new Random(count);
+				IUDoubleLinkedList<Integer> sorted = new IUDoubleLinkedList<Integer>(true, true);
+				IUDoubleLinkedList<Integer> parallel = new IUDoubleLinkedList<Integer>(true, true, true);
+				List<Integer> expected = new ArrayList<Integer>();
+				for (int i = 0; i < count; i++) {
+					int element = random.nextInt(50) * 100000 + i;
+					sorted.addToRear(element);
+					parallel.addToRear(element);
+					expected.add(element);
+				}
+				expected.sort(byKey);
+				sorted.sort(byKey);
+				parallel.parallelSort(byKey);
+				boolean found = true;
+				for (int i = 0; i < count; i += 1 + count / 50) {
+					found &= sorted.indexOf(expected.get(i)) == i && parallel.indexOf(expected.get(i)) == i;
+				}
+				printTest(count + "_sortByKey_testStable", sameByIndex(sorted, expected));
+				printTest(count + "_parallelSortByKey_testStable", sameByIndex(parallel, expected)
+						&& drain(parallel.iterator()).equals(expected));
+				printTest(count + "_sorted_testIndexesRebuilt", found);
+			}
+
+			IUDoubleLinkedList<Integer> natural = rangeList(false, false, false, 0, 100);
+			natural.sort(Comparator.reverseOrder());
+			natural.sort(null);
+			printTest("0to99_reverseThenNatural_testAscending", sameByIndex(natural, range(0, 100)));
+
+			for (int count : new int[] {100, 20000}) {
+				IUDoubleLinkedList<Integer> list = new IUDoubleLinkedList<Integer>(true, true);
+				List<Integer> before = new ArrayList<Integer>();
+				Random random = new Random(23);
+				for (int i = 0; i < count; i++) {
+					Integer element = random.nextInt();
+					list.addToRear(element);
+					before.add(element);
+				}
+				AtomicInteger calls = new AtomicInteger();
+				Comparator<Integer> failing = (a, b) -> {
+					if (calls.incrementAndGet() == count) {
+						throw new IllegalStateException("comparator failed");
+					}
+					return a.compareTo(b);
+				};
+				printTest(count + "_sortComparatorThrows_testThrown", throwsException(IllegalStateException.class, () -> list.sort(failing)));
+				printTest(count + "_sortComparatorThrows_testRolledBack", sameByIndex(list, before)
+						&& list.indexOf(before.get(count / 2)) == before.indexOf(before.get(count / 2)));
+				calls.set(0);
+				printTest(count + "_parallelSortComparatorThrows_testThrown", throwsException(IllegalStateException.class, () -> list.parallelSort(failing)));
+				printTest(count + "_parallelSortComparatorThrows_testRolledBack", sameByIndex(list, before));
+				list.addToRear(0);
+				list.removeLast();
+				list.sort(null);
+				before.sort(null);
+				printTest(count + "_afterRollback_testSortsNormally", sameByIndex(list, before));
+			}
+
+			IUDoubleLinkedList<Object> mixed = new IUDoubleLinkedList<Object>();
+			mixed.addToRear(1);
+			mixed.addToRear("one");
+			mixed.addToRear(2);
+			printTest("mixedTypes_naturalSort_testClassCast", throwsException(ClassCastException.class, () -> mixed.sort(null))
+					&& mixed.size() == 3 && mixed.get(1).equals("one"));
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE %s***\n", "test_Sort");
+			e.printStackTrace();
+		} finally {
+			if (printSectionSummaries) {
+				printSectionSummary();
+			}
+		}
+	}
+
+	/**
+	 * @param list list to render
+	 * @param maxElements most elements to show
+	 * @return what renderTo wrote
+	 */
+	private static String rendered(IUDoubleLinkedList<Integer> list, int maxElements) throws IOException {
+		StringBuilder out = new StringBuilder();
+		list.renderTo(out, maxElements);
+		return out.toString();
+	}
+
+	/** run toString and renderTo tests on how long lists are cut short */
+	private void test_Render() {
+		System.out.println("\nRender Tests\n");
+		try {
+			IUDoubleLinkedList<Integer> hundred = rangeList(false, false, false, 0, 100);
+			printTest("0to99_renderMax4_testTwoEachEnd", rendered(hundred, 4).equals("[0, 1, ... 96 more ..., 98, 99]"));
+			printTest("0to99_renderMax3_testTwoThenOne", rendered(hundred, 3).equals("[0, 1, ... 97 more ..., 99]"));
+			printTest("0to99_renderMax1_testFirstOnly", rendered(hundred, 1).equals("[0, ... 99 more ...]"));
+			printTest("0to99_renderMax0_testCountOnly", rendered(hundred, 0).equals("[... 100 more ...]"));
+			printTest("0to99_renderMax100_testEverything", rendered(hundred, 100).equals(range(0, 100).toString()));
+			printTest("empty_renderMax0_testBrackets", rendered(new IUDoubleLinkedList<Integer>(), 0).equals("[]"));
+			printTest("0to99_renderMaxNegative_testIllegalArgument", throwsException(IllegalArgumentException.class, () -> {
+				try {
+					rendered(hundred, -1);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}));
+
+			int limit = IUDoubleLinkedList.TO_STRING_LIMIT;
+			IUDoubleLinkedList<Integer> list = rangeList(false, false, false, 0, limit);
+			printTest("limitElements_toString_testEverything", list.toString().equals(range(0, limit).toString()));
+			list.addToRear(limit);
+			printTest("limitPlusOne_toString_testOneLeftOut", list.toString().equals(rendered(list, limit))
+					&& list.toString().contains(", " + (limit / 2 - 1) + ", ... 1 more ..., " + (limit / 2 + 1) + ", "));
+			IUDoubleLinkedList<Integer> big = rangeList(false, false, false, 0, 200000);
+			String shown = big.toString();
+			printTest("0to199999_toString_testCapped", shown.length() < 10 * limit && shown.startsWith("[0, 1, ")
+					&& shown.endsWith(", 199999]") && shown.contains("... " + (200000 - limit) + " more ..."));
+
+			List<Integer> lengths = new ArrayList<Integer>();
+			StringBuilder whole = new StringBuilder();
+			Appendable counting = new Appendable() {
+				@Override
+				public Appendable append(CharSequence chars) {
+					lengths.add(chars.length());
+					whole.append(chars);
+					return this;
+				}
+
+				@Override
+				public Appendable append(CharSequence chars, int start, int end) {
+					return append(chars.subSequence(start, end));
+				}
+
+				@Override
+				public Appendable append(char c) {
+					return append(String.valueOf(c));
+				}
+			};
+			big.renderTo(counting, Integer.MAX_VALUE);
+			printTest("0to199999_renderAll_testEverything", whole.toString().equals(range(0, 200000).toString()));
+			printTest("0to199999_renderAll_testWrittenInChunks", lengths.size() > 100 && Collections.max(lengths) < 10000);
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE %s***\n", "test_Render");
+			e.printStackTrace();
+		} finally {
+			if (printSectionSummaries) {
+				printSectionSummary();
+			}
+		}
+	}
+
+	/**
+	 * Fills a cache of 100 with keys 0 to 99, reads each of them five
+	 * times, then puts 1000 keys that are never read
+	 * @param policy eviction policy
+	 * @return how many of keys 0 to 99 are still cached
+	 */
+	private static int keptThroughScan(BoundedCache.Policy policy) {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<Integer, Integer>(100, policy);
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, i);
+		}
+		for (int round = 0; round < 5; round++) {
+			for (int i = 0; i < 100; i++) {
+				cache.get(i);
+			}
+		}
+		for (int i = 1000; i < 2000; i++) {
+			cache.put(i, i);
+		}
+		int retVal = 0;
+		for (int i = 0; i < 100; i++) {
+			if (cache.containsKey(i)) {
+				retVal++;
+			}
+		}
+		return retVal;
+	}
+
+	/** run BoundedCache tests on eviction order, counts and the listener */
+	private void test_BoundedCache() {
+		System.out.println("\nBoundedCache Tests\n");
+		try {
+			BoundedCache<String, Integer> lru = new BoundedCache<String, Integer>(3);
+			List<String> evicted = new ArrayList<String>();
+			lru.setEvictionListener((key, value) -> evicted.add(key + "=" + value));
+			lru.put("a", 1);
+			lru.put("b", 2);
+			lru.put("c", 3);
+			lru.get("a");
+			lru.put("d", 4);
+			printTest("lru_abcReadAThenD_testEvictsB", evicted.equals(List.of("b=2")) && !lru.containsKey("b") && lru.size() == 3);
+			printTest("lru_putExistingKey_testReplacedNoEviction", lru.put("c", 30) == 3 && lru.get("c") == 30 && evicted.size() == 1);
+			lru.put("e", 5);
+			printTest("lru_thenE_testEvictsLeastRecent", evicted.equals(List.of("b=2", "a=1")));
+			printTest("lru_removeD_testListenerNotTold", lru.remove("d") == 4 && lru.remove("d") == null && evicted.size() == 2);
+			printTest("lru_getMissing_testNull", lru.get("b") == null);
+			printTest("lru_counts_testHitsMissesEvictions", lru.hitCount() == 2 && lru.missCount() == 1 && lru.evictionCount() == 2
+					&& Math.abs(lru.hitRate() - 2.0 / 3) < 1e-9);
+			printTest("lru_containsKey_testNotCounted", lru.containsKey("c") && !lru.containsKey("z") && lru.hitCount() == 2 && lru.missCount() == 1);
+
+			BoundedCache<Integer, Integer> slru = new BoundedCache<Integer, Integer>(5, BoundedCache.Policy.SEGMENTED_LRU);
+			List<Integer> slruEvicted = new ArrayList<Integer>();
+			slru.setEvictionListener((key, value) -> slruEvicted.add(key));
+			for (int i = 1; i <= 5; i++) {
+				slru.put(i, i);
+			}
+			slru.get(1);
+			slru.get(2);
+			for (int i = 6; i <= 10; i++) {
+				slru.put(i, i);
+			}
+			printTest("slru_twoReadThenScan_testOnlyProbationEvicted", slruEvicted.equals(List.of(3, 4, 5, 6, 7))
+					&& slru.containsKey(1) && slru.containsKey(2));
+			BoundedCache<Integer, Integer> demoting = new BoundedCache<Integer, Integer>(5, BoundedCache.Policy.SEGMENTED_LRU);
+			List<Integer> demotedEvicted = new ArrayList<Integer>();
+			demoting.setEvictionListener((key, value) -> demotedEvicted.add(key));
+			for (int i = 1; i <= 5; i++) {
+				demoting.put(i, i);
+			}
+			for (int i = 1; i <= 5; i++) {
+				demoting.get(i);
+			}
+			demoting.put(6, 6);
+			printTest("slru_protectedOverflows_testOldestDemotedThenEvicted", demotedEvicted.equals(List.of(1)));
+
+			printTest("lru_hotKeysThenScan_testAllFlushed", keptThroughScan(BoundedCache.Policy.LRU) == 0);
+			printTest("slru_hotKeysThenScan_testProtectedKept", keptThroughScan(BoundedCache.Policy.SEGMENTED_LRU) == 80);
+			printTest("wTinyLfu_hotKeysThenScan_testMostKept", keptThroughScan(BoundedCache.Policy.WINDOW_TINY_LFU) >= 90);
+
+			for (BoundedCache.Policy policy : BoundedCache.Policy.values()) {
+				BoundedCache<Integer, Integer> cache = new BoundedCache<Integer, Integer>(10, policy);
+				AtomicInteger told = new AtomicInteger();
+				cache.setEvictionListener((key, value) -> told.incrementAndGet());
+				Random random = new Random(25);
+				for (int i = 0; i < 1000; i++) {
+					int key = random.nextInt(30);
+					if (cache.get(key) == null) {
+						cache.put(key, key);
+					}
+				}
+				printTest(policy + "_randomUse_testCountsAgree", cache.size() == 10 && cache.hitCount() + cache.missCount() == 1000
+						&& told.get() == cache.evictionCount() && cache.evictionCount() == cache.missCount() - 10);
+			}
+
+			printTest("capacity0_new_testIllegalArgument", throwsException(IllegalArgumentException.class, () -> new BoundedCache<Integer, Integer>(0)));
+			printTest("lru_putNullValue_testNPE", throwsException(NullPointerException.class, () -> lru.put("f", null)));
+			printTest("lru_getNullKey_testNPE", throwsException(NullPointerException.class, () -> lru.get(null)));
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE %s***\n", "test_BoundedCache");
+			e.printStackTrace();
+		} finally {
+			if (printSectionSummaries) {
+				printSectionSummary();
+			}
+		}
+	}
 }// end class IndexedUnsortedListTester
 
 /** Interface for builder method Lambda references used above */
 interface Scenario<T> {
 	IndexedUnsortedList<T> build();
-}
\ No newline at end of file
+}
+/**
+ * Presents an IntDoubleLinkedList as an IndexedUnsortedList<Integer> so the
+ * scenario suite above can run against it. Values are boxed and unboxed only
+ * here, at the boundary; the list itself stores plain ints.
+ */
+class IntListAdapter implements IndexedUnsortedList<Integer> {
+	private final IntDoubleLinkedList list = new IntDoubleLinkedList();
+
+	public void addToFront(Integer element) { list.addToFront(element); }
+	public void addToRear(Integer element) { list.addToRear(element); }
+	public void add(Integer element) { list.add(element.intValue()); }
+	public void addAfter(Integer element, Integer target) {
+		if (target == null) { throw new NoSuchElementException(); }
+		list.addAfter(element, target);
+	}
+	public void add(int index, Integer element) { list.add(index, element.intValue()); }
+	public Integer removeFirst() { return list.removeFirst(); }
+	public Integer removeLast() { return list.removeLast(); }
+	public Integer remove(Integer element) {
+		if (element == null) { throw new NoSuchElementException(); } //an int list never holds null
+		return list.removeElement(element);
+	}
+	public Integer remove(int index) { return list.remove(index); }
+	public void set(int index, Integer element) { list.set(index, element); }
+	public Integer get(int index) { return list.get(index); }
+	public int indexOf(Integer element) { return (element == null) ? -1 : list.indexOf(element); }
+	public Integer first() { return list.first(); }
+	public Integer last() { return list.last(); }
+	public boolean contains(Integer target) { return (target != null) && list.contains(target); }
+	public boolean isEmpty() { return list.isEmpty(); }
+	public int size() { return list.size(); }
+	public String toString() { return list.toString(); }
+	public Iterator<Integer> iterator() { return listIterator(); }
+	public ListIterator<Integer> listIterator() { return listIterator(0); }
+
+	public ListIterator<Integer> listIterator(int startingIndex) {
+		final IntDoubleLinkedList.IntListIterator it = list.listIterator(startingIndex);
+		return new ListIterator<Integer>() {
+			public boolean hasNext() { return it.hasNext(); }
+			public Integer next() { return it.nextInt(); }
+			public boolean hasPrevious() { return it.hasPrevious(); }
+			public Integer previous() { return it.previousInt(); }
+			public int nextIndex() { return it.nextIndex(); }
+			public int previousIndex() { return it.previousIndex(); }
+			public void remove() { it.remove(); }
+			public void set(Integer element) { it.set(element); }
+			public void add(Integer element) { it.add(element); }
+		};
+	}
+}
+
+/**
+ * Presents a LongDoubleLinkedList as an IndexedUnsortedList<Integer> so the
+ * scenario suite above can run against it. Test values are small ints, so
+ * they widen to long going in and narrow back coming out.
+ */
+class LongListAdapter implements IndexedUnsortedList<Integer> {
+	private final LongDoubleLinkedList list = new LongDoubleLinkedList();
+
+	public void addToFront(Integer element) { list.addToFront(element); }
+	public void addToRear(Integer element) { list.addToRear(element); }
+	public void add(Integer element) { list.add(element.longValue()); }
+	public void addAfter(Integer element, Integer target) {
+		if (target == null) { throw new NoSuchElementException(); }
+		list.addAfter(element, target);
+	}
+	public void add(int index, Integer element) { list.add(index, element.longValue()); }
+	public Integer removeFirst() { return (int) list.removeFirst(); }
+	public Integer removeLast() { return (int) list.removeLast(); }
+	public Integer remove(Integer element) {
+		if (element == null) { throw new NoSuchElementException(); } //a long list never holds null
+		return (int) list.removeElement(element);
+	}
+	public Integer remove(int index) { return (int) list.remove(index); }
+	public void set(int index, Integer element) { list.set(index, element); }
+	public Integer get(int index) { return (int) list.get(index); }
+	public int indexOf(Integer element) { return (element == null) ? -1 : list.indexOf(element); }
+	public Integer first() { return (int) list.first(); }
+	public Integer last() { return (int) list.last(); }
+	public boolean contains(Integer target) { return (target != null) && list.contains(target); }
+	public boolean isEmpty() { return list.isEmpty(); }
+	public int size() { return list.size(); }
+	public String toString() { return list.toString(); }
+	public Iterator<Integer> iterator() { return listIterator(); }
+	public ListIterator<Integer> listIterator() { return listIterator(0); }
+
+	public ListIterator<Integer> listIterator(int startingIndex) {
+		final LongDoubleLinkedList.LongListIterator it = list.listIterator(startingIndex);
+		return new ListIterator<Integer>() {
+			public boolean hasNext() { return it.hasNext(); }
+			public Integer next() { return (int) it.nextLong(); }
+			public boolean hasPrevious() { return it.hasPrevious(); }
+			public Integer previous() { return (int) it.previousLong(); }
+			public int nextIndex() { return it.nextIndex(); }
+			public int previousIndex() { return it.previousIndex(); }
+			public void remove() { it.remove(); }
+			public void set(Integer element) { it.set(element); }
+			public void add(Integer element) { it.add(element); }
+		};
+	}
+}
@@ -0,0 +1,319 @@
+/**
+ * Indexable skip list laid over the LinearNode chain of an IUDoubleLinkedList.
+ * Each entry points at a list node and records the span (number of positions)
+ * to the next entry on its level, so an index can be reached in O(log n)
+ * expected steps. Level 1 is the lowest index level; below it the list's own
+ * chain is walked for the last few steps, so there is no entry per element.
+ *
+ * The owning list reports every insertion and removal by index, so this class
+ * never needs to look at the chain except to finish a lookup.
+ *
+ * @author seema
+ *
+ * @param <T> type stored in the owning list
+ */
+class SkipListIndex<T> {
+	private static final int MAX_LEVEL = 16; //4^16 elements before levels stop paying off
+
+	private Entry<T> top; //header entry of the highest level, sits before index 0
+	private int levels;
+	private int seed; //xorshift state for level choice
+
+	public SkipListIndex() {
+		top = new Entry<T>(null);
+		levels = 1;
+		seed = System.identityHashCode(this) | 1;
+	}
+
+	/**
+	 * Finds the node at the given index.
+	 * @param index valid index into the owning list
+	 * @param head first node of the owning list
+	 * @return node at index
+	 */
+	public LinearNode<T> find(int index, LinearNode<T> head) {
+		Entry<T> entry = top;
+		int position = -1;
+		while(true) {
+			while(entry.right != null && position + entry.span <= index) {
+				position += entry.span;
+				entry = entry.right;
+			}
+			if(entry.down == null) {
+				break;
+			}
+			entry = entry.down;
+		}
+		LinearNode<T> current = entry.node;
+		if(current == null) { //still on the header
+			current = head;
+			position = 0;
+		}
+		while(position < index) {
+			current = current.getNext();
+			position++;
+		}
+		return current;
+	}
+
+	/**
+	 * Finds the index of a node of a hash-indexed list, descending by the
+	 * HashNodeIndex labels instead of by position. The node may be linked
+	 * into the chain before it has been reported with inserted().
+	 * @param node node of the owning list, labeled by its HashNodeIndex
+	 * @param head first node of the owning list
+	 * @return index of node
+	 */
+	public int indexOf(LinearNode<T> node, LinearNode<T> head) {
+		long order = HashNodeIndex.order(node);
+		Entry<T> entry = top;
+		int position = -1;
+		while(true) {
+			while(entry.right != null && HashNodeIndex.order(entry.right.node) <= order) {
+				position += entry.span;
+				entry = entry.right;
+			}
+			if(entry.down == null) {
+				break;
+			}
+			entry = entry.down;
+		}
+		LinearNode<T> current = entry.node;
+		if(current == null) { //still on the header
+			current = head;
+			position = 0;
+		}
+		while(current != node) {
+			current = current.getNext();
+			position++;
+		}
+		return position;
+	}
+
+	/**
+	 * Records that node has been linked into the list at index,
+	 * shifting everything previously at index and beyond up by one.
+	 * @param node newly linked node
+	 * @param index index node now occupies
+	 */
+	public void inserted(LinearNode<T> node, int index) {
+		int height = randomLevel();
+		while(levels < height) {
+			Entry<T> header = new Entry<T>(null);
+			header.down = top;
+			top = header;
+			levels++;
+		}
+		Entry<T> entry = top;
+		Entry<T> above = null;
+		int position = -1;
+		int level = levels;
+		while(entry != null) {
+			//stop on the last entry before index
+			while(entry.right != null && position + entry.span < index) {
+				position += entry.span;
+				entry = entry.right;
+			}
+			if(level <= height) {
+				Entry<T> newEntry = new Entry<T>(node);
+				if(entry.right != null) {
+					newEntry.right = entry.right;
+					newEntry.span = position + entry.span + 1 - index;
+				}
+				entry.right = newEntry;
+				entry.span = index - position;
+				if(above != null) {
+					above.down = newEntry;
+				}
+				above = newEntry;
+			} else if(entry.right != null) {
+				entry.span++;
+			}
+			entry = entry.down;
+			level--;
+		}
+	}
+
+	/**
+	 * Records that the node at index has been unlinked from the list,
+	 * shifting everything after it down by one.
+	 * @param index index the removed node occupied
+	 */
+	public void removed(int index) {
+		Entry<T> entry = top;
+		int position = -1;
+		while(entry != null) {
+			while(entry.right != null && position + entry.span < index) {
+				position += entry.span;
+				entry = entry.right;
+			}
+			if(entry.right != null) {
+				if(position + entry.span == index) { //removed node has an entry on this level
+					Entry<T> removed = entry.right;
+					if(removed.right != null) {
+						entry.span += removed.span - 1;
+					} else {
+						entry.span = 0;
+					}
+					entry.right = removed.right;
+				} else {
+					entry.span--;
+				}
+			}
+			entry = entry.down;
+		}
+		trim();
+	}
+
+	/**
+	 * Cuts the index in two at index, the way the owning list's chain is
+	 * cut by IUDoubleLinkedList.splitAt. Costs O(log n) expected.
+	 * @param index first index to move out, 0 <= index <= size
+	 * @return index over the moved nodes, numbered from 0
+	 */
+	public SkipListIndex<T> split(int index) {
+		SkipListIndex<T> rest = new SkipListIndex<T>();
+		rest.levels = levels;
+		Entry<T> entry = top;
+		Entry<T> above = null;
+		int position = -1;
+		while(entry != null) {
+			while(entry.right != null && position + entry.span < index) {
+				position += entry.span;
+				entry = entry.right;
+			}
+			Entry<T> header = new Entry<T>(null);
+			if(entry.right != null) {
+				header.right = entry.right;
+				header.span = position + entry.span - index + 1;
+				entry.right = null;
+				entry.span = 0;
+			}
+			if(above == null) {
+				rest.top = header;
+			} else {
+				above.down = header;
+			}
+			above = header;
+			entry = entry.down;
+		}
+		trim();
+		rest.trim();
+		return rest;
+	}
+
+	/**
+	 * Joins other onto the end of this index, the way the owning list's
+	 * chain is joined by IUDoubleLinkedList.insertAll. Costs O(log n)
+	 * expected. other must not be used afterwards.
+	 * @param other index over the nodes linked after this index's nodes
+	 * @param size number of nodes this index covers
+	 */
+	public void append(SkipListIndex<T> other, int size) {
+		while(levels < other.levels) {
+			Entry<T> header = new Entry<T>(null);
+			header.down = top;
+			top = header;
+			levels++;
+		}
+		Entry<T> entry = top;
+		Entry<T> otherHeader = other.top;
+		int position = -1;
+		for(int level = levels; level > 0; level--) {
+			while(entry.right != null) {
+				position += entry.span;
+				entry = entry.right;
+			}
+			if(level <= other.levels) {
+				if(otherHeader.right != null) {
+					entry.right = otherHeader.right;
+					entry.span = size - 1 - position + otherHeader.span;
+				}
+				otherHeader = otherHeader.down;
+			}
+			entry = entry.down;
+		}
+	}
+
+	/**
+	 * Throws away all entries and indexes count nodes from first afresh,
+	 * in O(count) time
+	 * @param first first node of the owning list
+	 * @param count number of nodes to index
+	 */
+	public void rebuild(LinearNode<T> first, int count) {
+		@SuppressWarnings("unchecked")
+		Entry<T>[] last = (Entry<T>[]) new Entry<?>[MAX_LEVEL + 1]; //last entry on each level, by level
+		int[] lastPosition = new int[MAX_LEVEL + 1];
+		top = new Entry<T>(null);
+		levels = 1;
+		last[1] = top;
+		lastPosition[1] = -1;
+		LinearNode<T> current = first;
+		for(int position = 0; position < count; position++) {
+			int height = randomLevel();
+			while(levels < height) {
+				Entry<T> header = new Entry<T>(null);
+				header.down = top;
+				top = header;
+				levels++;
+				last[levels] = header;
+				lastPosition[levels] = -1;
+			}
+			Entry<T> below = null;
+			for(int level = 1; level <= height; level++) {
+				Entry<T> newEntry = new Entry<T>(current);
+				newEntry.down = below;
+				last[level].right = newEntry;
+				last[level].span = position - lastPosition[level];
+				last[level] = newEntry;
+				lastPosition[level] = position;
+				below = newEntry;
+			}
+			current = current.getNext();
+		}
+	}
+
+	/**
+	 * Drops empty levels from the top
+	 */
+	private void trim() {
+		while(levels > 1 && top.right == null) {
+			top = top.down;
+			levels--;
+		}
+	}
+
+	/**
+	 * Picks how many levels a new node is promoted to. Each level
+	 * keeps a quarter of the entries of the level below it.
+	 * @return number of levels, usually 0
+	 */
+	private int randomLevel() {
+		int x = seed;
+		x ^= x << 13;
+		x ^= x >>> 17;
+		x ^= x << 5;
+		seed = x;
+		int level = 0;
+		while((x & 3) == 0 && level < MAX_LEVEL) {
+			level++;
+			x >>>= 2;
+		}
+		return level;
+	}
+
+	/**
+	 * One entry on one level of the index
+	 */
+	private static class Entry<T> {
+		private LinearNode<T> node; //null for headers
+		private Entry<T> right;
+		private Entry<T> down; //null on level 1
+		private int span; //positions from this entry to right, unused when right is null
+
+		public Entry(LinearNode<T> node) {
+			this.node = node;
+		}
+	}
+}
@@ -0,0 +1,208 @@
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.TreeMap;
+
+/**
+ * Version clock and history keeper for an IUDoubleLinkedList that hands
+ * out snapshot iterators.
+ *
+ * Every node of such a list is a VersionedNode. Besides the links the list
+ * itself uses, it keeps a chain of immutable states, each holding the
+ * node's next node and element from the version it was written at. The
+ * owning list reports every node whose next or element it changes, and
+ * the list's head through a front sentinel, then publishes the new
+ * version once the whole change is in place. A reader pins the current
+ * version and follows the newest state no later than it from node to
+ * node. It sees the list exactly as it was, from any thread, while the
+ * writer carries on.
+ *
+ * States older than the oldest pinned version are cut off, so unlinked
+ * nodes become garbage once no pinned reader can still reach them. A pin
+ * is released when its iterator runs out, or when the iterator is
+ * collected without having run out.
+ *
+ * Lists split from one another share one SnapshotVersions, and only one
+ * thread may change any of them at a time.
+ *
+ * @author seema
+ *
+ * @param <T> type stored in the owning lists
+ */
+class SnapshotVersions<T> {
+	private long current; //last published version, guarded by this
+	private long pending; //version the writer's changes are tagged with
+	private long oldest; //no reader needs anything older than this version
+	private final TreeMap<Long, Integer> pinned; //pin count for each pinned version
+	private final HashSet<Pin> pins; //keeps each Pin reachable until it is released
+	private final ReferenceQueue<Object> abandoned; //pins whose holders were collected
+	private final ArrayDeque<VersionedNode<T>> retained; //nodes holding older states
+
+	public SnapshotVersions() {
+		current = 0;
+		pending = 1;
+		oldest = 0;
+		pinned = new TreeMap<Long, Integer>();
+		pins = new HashSet<Pin>();
+		abandoned = new ReferenceQueue<Object>();
+		retained = new ArrayDeque<VersionedNode<T>>();
+	}
+
+	/**
+	 * Creates the sentinel whose next node is a list's head, for a list
+	 * that is empty as of the current version
+	 * @return new front sentinel
+	 */
+	public synchronized VersionedNode<T> newFront() {
+		VersionedNode<T> front = new VersionedNode<T>(null);
+		front.state = new State<T>(current, null, null, null);
+		return front;
+	}
+
+	/**
+	 * Records that node now has the given next node and element, as of
+	 * the version being written. The state readers of older versions
+	 * see is kept behind the new one.
+	 * @param node node that changed, or a front sentinel
+	 * @param next node's next node, or a list's head for a sentinel
+	 * @param element node's element
+	 */
+	public void changed(VersionedNode<T> node, LinearNode<T> next, T element) {
+		State<T> state = node.state;
+		State<T> older = state;
+		if(state != null && state.since == pending) { //already changed in this version
+			older = state.older;
+		}
+		node.state = new State<T>(pending, next, element, older);
+		if(older != null) {
+			trim(older);
+			if(!node.retained) {
+				node.retained = true;
+				retained.add(node);
+			}
+		}
+	}
+
+	/**
+	 * Makes every change recorded since the last publish visible to new
+	 * readers, and drops history that no pinned reader needs any more
+	 */
+	public synchronized void publish() {
+		current = pending;
+		pending++;
+		Object pin;
+		while((pin = abandoned.poll()) != null) {
+			release((Pin) pin);
+		}
+		long needed = pinned.isEmpty() ? current : Math.min(pinned.firstKey(), current);
+		if(needed > oldest) {
+			oldest = needed;
+			for(int i = retained.size(); i > 0; i--) {
+				VersionedNode<T> node = retained.poll();
+				trim(node.state);
+				if(node.state.older == null) {
+					node.retained = false;
+				} else {
+					retained.add(node);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Pins the current version until the returned Pin is released or
+	 * holder is collected
+	 * @param holder reader the pin belongs to
+	 * @return pin holding the current version
+	 */
+	public synchronized Pin pin(Object holder) {
+		Pin pin = new Pin(holder, current, abandoned);
+		pins.add(pin);
+		pinned.merge(current, 1, Integer::sum);
+		return pin;
+	}
+
+	/**
+	 * Releases pin, if it has not been released already
+	 * @param pin pin to release
+	 */
+	public synchronized void release(Pin pin) {
+		if(pins.remove(pin)) {
+			pin.clear();
+			if(pinned.merge(pin.version, -1, Integer::sum) == 0) {
+				pinned.remove(pin.version);
+			}
+		}
+	}
+
+	/**
+	 * Cuts the chain after the first state no later than oldest, which
+	 * is the oldest one any reader can still ask for
+	 * @param state newest state of the chain to trim
+	 */
+	private void trim(State<T> state) {
+		while(state.since > oldest && state.older != null) {
+			state = state.older;
+		}
+		state.older = null;
+	}
+
+	/**
+	 * Version held by one reader
+	 */
+	static class Pin extends WeakReference<Object> {
+		final long version;
+
+		private Pin(Object holder, long version, ReferenceQueue<Object> queue) {
+			super(holder, queue);
+			this.version = version;
+		}
+	}
+
+	/**
+	 * A node's next node and element from version since on. Fields other
+	 * than older are final, so a state is complete for any thread that
+	 * reaches it.
+	 */
+	static class State<T> {
+		final long since;
+		final LinearNode<T> next;
+		final T element;
+		State<T> older; //state before since, cut once no reader needs it
+
+		private State(long since, LinearNode<T> next, T element, State<T> older) {
+			this.since = since;
+			this.next = next;
+			this.element = element;
+			this.older = older;
+		}
+	}
+
+	/**
+	 * Node of a list that hands out snapshot iterators. It extends
+	 * OrderedNode so the list can also be hash-indexed.
+	 */
+	static class VersionedNode<T> extends HashNodeIndex.OrderedNode<T> {
+		private volatile State<T> state; //newest state, written only by the writer
+		private boolean retained; //true while queued in retained
+
+		public VersionedNode(T elem) {
+			super(elem);
+		}
+
+		/**
+		 * Returns this node's state as of version, which must be pinned
+		 * and no earlier than the version the node was linked at
+		 * @param version pinned version
+		 * @return newest state no later than version
+		 */
+		public State<T> stateAt(long version) {
+			State<T> state = this.state;
+			while(state.since > version) {
+				state = state.older;
+			}
+			return state;
+		}
+	}
+}